@@ -0,0 +1,28 @@
+package org.pscode.unicodeglyphs;
+
+import java.awt.Component;
+import javax.swing.*;
+
+class CodePointListCellRenderer extends DefaultListCellRenderer {
+
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public Component getListCellRendererComponent(
+            JList<?> list,
+            Object value,
+            int index,
+            boolean isSelected,
+            boolean cellHasFocus) {
+
+        JLabel l = (JLabel) super.getListCellRendererComponent(
+                list, value, index, isSelected, cellHasFocus);
+        Integer i = (Integer) value;
+        String s = new String(
+                Character.toChars(i))
+                + " - " + UnicodeDatabase.nameOf(i.intValue());
+        l.setText(s);
+
+        return l;
+    }
+}
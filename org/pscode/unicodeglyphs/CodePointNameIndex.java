@@ -0,0 +1,783 @@
+package org.pscode.unicodeglyphs;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * An inverted index over code point names. Every name is split into its
+ * space separated tokens, and each distinct token maps to a sorted posting
+ * list of the names containing it. Since a filter part never contains a
+ * space, a name contains the part exactly when one of its tokens does, so
+ * substring queries only need to find the matching tokens. A small n-gram
+ * index over the vocabulary does that without scanning every name.
+ * <p>
+ * Postings hold ordinals (positions in {@link #getCodePoints()}) rather than
+ * code points, so the per-query bitsets only span the named code points.
+ * The tokens of each name, in name order, let a small set of earlier
+ * matches be narrowed without touching the postings at all, and give the
+ * word positions {@link #searchRanked(String, int)} scores.
+ */
+class CodePointNameIndex {
+
+    private static final int GRAM_LENGTH = 3;
+    private static final int[] NO_TOKENS = new int[0];
+    private final int[] codePoints;
+    private final String[] vocabulary;
+    private final int[] postingOffsets;
+    private final int[] postings;
+    private final int[] nameTokenOffsets;
+    private final int[] nameTokens;
+    /**
+     * The 1 to 3 character grams of the vocabulary, packed into longs by
+     * {@link #getGramKey(String, int, int)} and sorted, so the gram index
+     * is a few arrays that are saved and loaded as they are.
+     */
+    private long[] gramKeys;
+    /** The tokens containing each gram. */
+    private int[][] gramTokens;
+
+    CodePointNameIndex(
+            int[] codePoints,
+            String[] vocabulary,
+            int[] postingOffsets,
+            int[] postings,
+            int[] nameTokenOffsets,
+            int[] nameTokens) {
+        this(codePoints, vocabulary, postingOffsets, postings,
+                nameTokenOffsets, nameTokens, null, null);
+    }
+
+    private CodePointNameIndex(
+            int[] codePoints,
+            String[] vocabulary,
+            int[] postingOffsets,
+            int[] postings,
+            int[] nameTokenOffsets,
+            int[] nameTokens,
+            long[] gramKeys,
+            int[][] gramTokens) {
+        this.codePoints = codePoints;
+        this.vocabulary = vocabulary;
+        this.postingOffsets = postingOffsets;
+        this.postings = postings;
+        this.nameTokenOffsets = nameTokenOffsets;
+        this.nameTokens = nameTokens;
+        this.gramKeys = gramKeys;
+        this.gramTokens = gramTokens;
+        if (gramKeys == null) {
+            indexGrams();
+        }
+    }
+
+    private void indexGrams() {
+        HashMap<Long, IntList> gramLists = new HashMap<Long, IntList>();
+        for (int token = 0; token < vocabulary.length; token++) {
+            String word = vocabulary[token];
+            HashSet<Long> seen = new HashSet<Long>();
+            for (int length = 1; length <= GRAM_LENGTH; length++) {
+                for (int ii = 0; ii + length <= word.length(); ii++) {
+                    Long gram = getGramKey(word, ii, ii + length);
+                    if (seen.add(gram)) {
+                        IntList list = gramLists.get(gram);
+                        if (list == null) {
+                            list = new IntList();
+                            gramLists.put(gram, list);
+                        }
+                        list.add(token);
+                    }
+                }
+            }
+        }
+        gramKeys = new long[gramLists.size()];
+        int next = 0;
+        for (Long gram : gramLists.keySet()) {
+            gramKeys[next++] = gram;
+        }
+        Arrays.sort(gramKeys);
+        gramTokens = new int[gramKeys.length][];
+        for (int ii = 0; ii < gramKeys.length; ii++) {
+            gramTokens[ii] = gramLists.get(gramKeys[ii]).toArray();
+        }
+    }
+
+    /** The length and up to 3 characters of a gram, 16 bits each. */
+    private static long getGramKey(String s, int start, int end) {
+        long key = end - start;
+        for (int ii = start; ii < end; ii++) {
+            key = (key << 16) | s.charAt(ii);
+        }
+        return key;
+    }
+
+    /**
+     * @return the tokens containing the gram <code>s[start, end)</code>, or
+     * <code>null</code> for none. Do not modify.
+     */
+    private int[] getGramTokens(String s, int start, int end) {
+        int gram = Arrays.binarySearch(gramKeys, getGramKey(s, start, end));
+        return gram < 0 ? null : gramTokens[gram];
+    }
+
+    /** The indexed code points, in ascending order. Do not modify. */
+    public int[] getCodePoints() {
+        return codePoints;
+    }
+
+    public int size() {
+        return codePoints.length;
+    }
+
+    /** The distinct name tokens, sorted. Do not modify. */
+    public String[] getVocabulary() {
+        return vocabulary;
+    }
+
+    /** The number of names that contain the token. */
+    public int getTokenFrequency(int token) {
+        return postingOffsets[token + 1] - postingOffsets[token];
+    }
+
+    /**
+     * Completes a name token. The vocabulary is sorted, so the tokens
+     * starting with the prefix are one range of it, found by binary search;
+     * the most frequent of them are picked with a heap over their posting
+     * counts.
+     *
+     * @return the ids of up to n tokens starting with the (case
+     * insensitive) prefix, the most frequent first, ties alphabetically
+     */
+    public int[] complete(String prefix, int n) {
+        String p = prefix.toUpperCase();
+        int from = Arrays.binarySearch(vocabulary, p);
+        if (from < 0) {
+            from = -from - 1;
+        }
+        int to = Arrays.binarySearch(vocabulary, p + Character.MAX_VALUE);
+        if (to < 0) {
+            to = -to - 1;
+        }
+        TopK top = new TopK(Math.max(0, Math.min(n, to - from)));
+        for (int token = from; token < to; token++) {
+            top.offer(getTokenFrequency(token), token);
+        }
+        return top.drain();
+    }
+
+    /**
+     * Finds the code points whose (upper case) names contain every space
+     * separated part of the filter, as the name filter always has.
+     *
+     * @return the matching code points in ascending order. A blank filter
+     * returns {@link #getCodePoints()} itself.
+     */
+    public int[] search(String filter) {
+        String[] parts = filter.toUpperCase().trim().split(" ");
+        long[] matches = null;
+        for (String part : parts) {
+            if (part.length() == 0) {
+                continue;
+            }
+            long[] partMatches = new long[(codePoints.length + 63) >> 6];
+            for (int token : findTokens(part)) {
+                for (int ii = postingOffsets[token];
+                        ii < postingOffsets[token + 1]; ii++) {
+                    int ordinal = postings[ii];
+                    partMatches[ordinal >> 6] |= 1L << ordinal;
+                }
+            }
+            if (matches == null) {
+                matches = partMatches;
+            } else {
+                for (int ii = 0; ii < matches.length; ii++) {
+                    matches[ii] &= partMatches[ii];
+                }
+            }
+        }
+        if (matches == null) {
+            return codePoints;
+        }
+        IntList result = new IntList();
+        for (int word = 0; word < matches.length; word++) {
+            long bits = matches[word];
+            while (bits != 0) {
+                int ordinal = (word << 6) + Long.numberOfTrailingZeros(bits);
+                result.add(codePoints[ordinal]);
+                bits &= bits - 1;
+            }
+        }
+        return result.toArray();
+    }
+
+    /**
+     * Keeps the code points whose names contain every part of the filter,
+     * checking the tokens of each name rather than searching the postings,
+     * so the cost is proportional to the number of code points given.
+     *
+     * @param codePoints indexed code points in ascending order
+     * @return the matching code points in ascending order
+     */
+    public int[] refine(int[] codePoints, String filter) {
+        ArrayList<long[]> partTokens = new ArrayList<long[]>();
+        for (String part : filter.toUpperCase().trim().split(" ")) {
+            if (part.length() == 0) {
+                continue;
+            }
+            long[] tokens = new long[(vocabulary.length + 63) >> 6];
+            for (int token : findTokens(part)) {
+                tokens[token >> 6] |= 1L << token;
+            }
+            partTokens.add(tokens);
+        }
+        IntList result = new IntList();
+        int from = 0;
+        for (int codePoint : codePoints) {
+            int ordinal = Arrays.binarySearch(
+                    this.codePoints, from, this.codePoints.length, codePoint);
+            if (ordinal < 0) {
+                continue;
+            }
+            from = ordinal + 1;
+            boolean containsAll = true;
+            for (long[] tokens : partTokens) {
+                boolean contains = false;
+                for (int ii = nameTokenOffsets[ordinal];
+                        ii < nameTokenOffsets[ordinal + 1]; ii++) {
+                    int token = nameTokens[ii];
+                    if ((tokens[token >> 6] & (1L << token)) != 0) {
+                        contains = true;
+                        break;
+                    }
+                }
+                if (!contains) {
+                    containsAll = false;
+                    break;
+                }
+            }
+            if (containsAll) {
+                result.add(codePoint);
+            }
+        }
+        return result.toArray();
+    }
+
+    /**
+     * Ranks the names against the filter, tolerating typos, and returns the
+     * best k. Each part of the filter scores the tokens it matches:
+     * <ul>
+     * <li>1 for the token itself,
+     * <li>.8 to 1 for a token it is a prefix of, more when it covers more,
+     * <li>.6 for one edit (insertion, deletion, substitution or swapped
+     * neighbours) from a token, .4 for two; parts of 4 or more letters may
+     * have one edit, of 8 or more two,
+     * <li>.3 to .5 for a token it is inside of.
+     * </ul>
+     * A name scores the sum over the parts of their best token, boosted by
+     * up to 1.5 for the first word of the name, and loses a little for
+     * every word no part matched, so the shortest fitting name comes first.
+     * Names missing a part are not ranked at all.
+     * <p>
+     * Only names containing a match for the most selective part are
+     * scored, and only the best k are kept, in a heap, so the cost does not
+     * depend on how many names match.
+     *
+     * @return up to k code points, best first; ties by code point
+     */
+    public int[] searchRanked(String filter, int k) {
+        ArrayList<float[]> partScores = new ArrayList<float[]>();
+        ArrayList<int[]> partTokens = new ArrayList<int[]>();
+        for (String part : filter.toUpperCase().trim().split(" ")) {
+            if (part.length() == 0) {
+                continue;
+            }
+            float[] scores = new float[vocabulary.length];
+            partTokens.add(scoreTokens(part, scores));
+            partScores.add(scores);
+        }
+        if (partScores.isEmpty() || k <= 0) {
+            return NO_TOKENS;
+        }
+        // the part whose tokens are in the fewest names bounds the candidates
+        int[] rarest = null;
+        long rarestPostings = Long.MAX_VALUE;
+        for (int[] tokens : partTokens) {
+            long count = 0;
+            for (int token : tokens) {
+                count += getTokenFrequency(token);
+            }
+            if (count < rarestPostings) {
+                rarestPostings = count;
+                rarest = tokens;
+            }
+        }
+        long[] candidates = new long[(codePoints.length + 63) >> 6];
+        for (int token : rarest) {
+            for (int ii = postingOffsets[token];
+                    ii < postingOffsets[token + 1]; ii++) {
+                int ordinal = postings[ii];
+                candidates[ordinal >> 6] |= 1L << ordinal;
+            }
+        }
+        TopK top = new TopK(k);
+        for (int word = 0; word < candidates.length; word++) {
+            long bits = candidates[word];
+            while (bits != 0) {
+                int ordinal = (word << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                float score = scoreName(ordinal, partScores);
+                if (score > 0) {
+                    top.offer(score, ordinal);
+                }
+            }
+        }
+        int[] ordinals = top.drain();
+        for (int ii = 0; ii < ordinals.length; ii++) {
+            ordinals[ii] = codePoints[ordinals[ii]];
+        }
+        return ordinals;
+    }
+
+    /**
+     * Fills scores (by token id) with how well the part matches each token.
+     *
+     * @return the ids of the tokens with a score
+     */
+    private int[] scoreTokens(String part, float[] scores) {
+        IntList matched = new IntList();
+        for (int token : findTokens(part)) {
+            String word = vocabulary[token];
+            float coverage = (float) part.length() / word.length();
+            if (word.length() == part.length()) {
+                scores[token] = 1f;
+            } else if (word.startsWith(part)) {
+                scores[token] = .8f + .2f * coverage;
+            } else {
+                scores[token] = .3f + .2f * coverage;
+            }
+            matched.add(token);
+        }
+        int maxEdits = part.length() >= 8 ? 2 : part.length() >= 4 ? 1 : 0;
+        if (maxEdits > 0) {
+            // a token within the edits shares at least one bigram with the part
+            for (int ii = 0; ii + 2 <= part.length(); ii++) {
+                int[] tokens = getGramTokens(part, ii, ii + 2);
+                if (tokens == null) {
+                    continue;
+                }
+                for (int token : tokens) {
+                    String word = vocabulary[token];
+                    if (scores[token] != 0 || Math.abs(
+                            word.length() - part.length()) > maxEdits) {
+                        continue;
+                    }
+                    int edits = getEditDistance(part, word, maxEdits);
+                    if (edits <= maxEdits) {
+                        scores[token] = .8f - .2f * edits;
+                        matched.add(token);
+                    } else {
+                        // not a match; marks the token as already tried
+                        scores[token] = -1f;
+                    }
+                }
+            }
+        }
+        return matched.toArray();
+    }
+
+    private float scoreName(int ordinal, ArrayList<float[]> partScores) {
+        int start = nameTokenOffsets[ordinal];
+        int end = nameTokenOffsets[ordinal + 1];
+        float total = 0;
+        for (float[] scores : partScores) {
+            float best = 0;
+            for (int ii = start; ii < end; ii++) {
+                float score = scores[nameTokens[ii]];
+                if (score > 0) {
+                    best = Math.max(best, score * (1 + .5f / (ii - start + 1)));
+                }
+            }
+            if (best == 0) {
+                return 0;
+            }
+            total += best;
+        }
+        // longer names rank lower, but a name matching every part keeps a
+        // positive score however long it is
+        int unmatched = Math.max(0, end - start - partScores.size());
+        return total / (1 + .05f * unmatched);
+    }
+
+    /**
+     * The optimal string alignment distance: edits are insertions,
+     * deletions, substitutions and swaps of neighbours.
+     *
+     * @return the distance, or max + 1 once it must exceed max
+     */
+    static int getEditDistance(String a, String b, int max) {
+        int[] previous2 = new int[b.length() + 1];
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int jj = 0; jj <= b.length(); jj++) {
+            previous[jj] = jj;
+        }
+        for (int ii = 1; ii <= a.length(); ii++) {
+            current[0] = ii;
+            int rowMin = ii;
+            for (int jj = 1; jj <= b.length(); jj++) {
+                int cost = a.charAt(ii - 1) == b.charAt(jj - 1) ? 0 : 1;
+                int d = Math.min(Math.min(
+                        previous[jj] + 1, current[jj - 1] + 1),
+                        previous[jj - 1] + cost);
+                if (ii > 1 && jj > 1
+                        && a.charAt(ii - 1) == b.charAt(jj - 2)
+                        && a.charAt(ii - 2) == b.charAt(jj - 1)) {
+                    d = Math.min(d, previous2[jj - 2] + 1);
+                }
+                current[jj] = d;
+                rowMin = Math.min(rowMin, d);
+            }
+            if (rowMin > max) {
+                return max + 1;
+            }
+            int[] recycled = previous2;
+            previous2 = previous;
+            previous = current;
+            current = recycled;
+        }
+        return Math.min(previous[b.length()], max + 1);
+    }
+
+    /**
+     * The k best (score, ordinal) pairs seen, in a min heap on primitive
+     * arrays so the worst kept is at the root.
+     */
+    private static class TopK {
+
+        private final float[] scores;
+        private final int[] ordinals;
+        private int size;
+
+        TopK(int k) {
+            scores = new float[k];
+            ordinals = new int[k];
+        }
+
+        /** Whether (s1, o1) ranks below (s2, o2). */
+        private static boolean worse(float s1, int o1, float s2, int o2) {
+            return s1 < s2 || (s1 == s2 && o1 > o2);
+        }
+
+        void offer(float score, int ordinal) {
+            if (size < scores.length) {
+                int ii = size++;
+                while (ii > 0) {
+                    int parent = (ii - 1) >> 1;
+                    if (!worse(score, ordinal, scores[parent], ordinals[parent])) {
+                        break;
+                    }
+                    scores[ii] = scores[parent];
+                    ordinals[ii] = ordinals[parent];
+                    ii = parent;
+                }
+                scores[ii] = score;
+                ordinals[ii] = ordinal;
+            } else if (size > 0
+                    && worse(scores[0], ordinals[0], score, ordinal)) {
+                siftDown(score, ordinal);
+            }
+        }
+
+        private void siftDown(float score, int ordinal) {
+            int ii = 0;
+            while (true) {
+                int child = 2 * ii + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && worse(scores[child + 1],
+                        ordinals[child + 1], scores[child], ordinals[child])) {
+                    child++;
+                }
+                if (!worse(scores[child], ordinals[child], score, ordinal)) {
+                    break;
+                }
+                scores[ii] = scores[child];
+                ordinals[ii] = ordinals[child];
+                ii = child;
+            }
+            scores[ii] = score;
+            ordinals[ii] = ordinal;
+        }
+
+        /** Empties the heap, best first. */
+        int[] drain() {
+            int[] best = new int[size];
+            for (int ii = best.length - 1; ii >= 0; ii--) {
+                best[ii] = ordinals[0];
+                size--;
+                if (size > 0) {
+                    siftDown(scores[size], ordinals[size]);
+                }
+            }
+            return best;
+        }
+    }
+
+    /**
+     * @return the ids of the vocabulary tokens containing the part
+     */
+    int[] findTokens(String part) {
+        if (part.length() <= GRAM_LENGTH) {
+            int[] tokens = getGramTokens(part, 0, part.length());
+            return tokens == null ? NO_TOKENS : tokens;
+        }
+        // start from the rarest trigram, then intersect with the others
+        int[] candidates = null;
+        for (int ii = 0; ii + GRAM_LENGTH <= part.length(); ii++) {
+            int[] tokens = getGramTokens(part, ii, ii + GRAM_LENGTH);
+            if (tokens == null) {
+                return NO_TOKENS;
+            }
+            if (candidates == null || tokens.length < candidates.length) {
+                candidates = tokens;
+            }
+        }
+        IntList result = new IntList();
+        for (int token : candidates) {
+            if (vocabulary[token].contains(part)) {
+                result.add(token);
+            }
+        }
+        return result.toArray();
+    }
+
+    /**
+     * Writes the arrays of the index, gram index included, for
+     * {@link #read(ByteBuffer)}.
+     */
+    void write(DataOutputStream out) throws IOException {
+        writeInts(out, codePoints);
+        out.writeInt(vocabulary.length);
+        for (String token : vocabulary) {
+            byte[] bytes = token.getBytes(StandardCharsets.UTF_8);
+            out.writeShort(bytes.length);
+            out.write(bytes);
+        }
+        // keeps the int arrays that follow aligned, so they read in bulk
+        out.write(new byte[(4 - out.size() % 4) % 4]);
+        writeInts(out, postingOffsets);
+        writeInts(out, postings);
+        writeInts(out, nameTokenOffsets);
+        writeInts(out, nameTokens);
+        out.writeInt(gramKeys.length);
+        for (long gram : gramKeys) {
+            out.writeLong(gram);
+        }
+        int[] gramOffsets = new int[gramTokens.length + 1];
+        for (int ii = 0; ii < gramTokens.length; ii++) {
+            gramOffsets[ii + 1] = gramOffsets[ii] + gramTokens[ii].length;
+        }
+        writeInts(out, gramOffsets);
+        out.writeInt(gramOffsets[gramTokens.length]);
+        for (int[] tokens : gramTokens) {
+            for (int token : tokens) {
+                out.writeInt(token);
+            }
+        }
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values)
+            throws IOException {
+        out.writeInt(values.length);
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    /**
+     * Reads an index written by {@link #write(DataOutputStream)}, from the
+     * buffer's position. Buffer positions must match the offsets in the
+     * stream it was written to, e.g. both from the start of the same file.
+     * Every length is checked against what is left of the buffer, and
+     * every offset and id against the array it points into, so a corrupt
+     * snapshot is rejected here rather than failing a later search.
+     *
+     * @throws java.nio.BufferUnderflowException if the buffer is truncated
+     * @throws IllegalArgumentException if the arrays are inconsistent
+     */
+    static CodePointNameIndex read(ByteBuffer buffer) {
+        int[] codePoints = readInts(buffer);
+        String[] vocabulary = new String[readLength(buffer, 2)];
+        for (int ii = 0; ii < vocabulary.length; ii++) {
+            byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+            buffer.get(bytes);
+            vocabulary[ii] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        buffer.position(buffer.position() + (4 - buffer.position() % 4) % 4);
+        int[] postingOffsets = readInts(buffer);
+        int[] postings = readInts(buffer);
+        int[] nameTokenOffsets = readInts(buffer);
+        int[] nameTokens = readInts(buffer);
+        long[] gramKeys = new long[readLength(buffer, 8)];
+        buffer.asLongBuffer().get(gramKeys);
+        buffer.position(buffer.position() + 8 * gramKeys.length);
+        int[] gramOffsets = readInts(buffer);
+        int[] allGramTokens = readInts(buffer);
+
+        checkAscending(codePoints, 0, UnicodeExplorer.numberUnicodes);
+        checkOffsets(postingOffsets, vocabulary.length, postings.length);
+        checkIds(postings, codePoints.length);
+        checkOffsets(nameTokenOffsets, codePoints.length, nameTokens.length);
+        checkIds(nameTokens, vocabulary.length);
+        checkOffsets(gramOffsets, gramKeys.length, allGramTokens.length);
+        checkIds(allGramTokens, vocabulary.length);
+        int[][] gramTokens = new int[gramKeys.length][];
+        for (int ii = 0; ii < gramKeys.length; ii++) {
+            gramTokens[ii] = Arrays.copyOfRange(
+                    allGramTokens, gramOffsets[ii], gramOffsets[ii + 1]);
+        }
+        return new CodePointNameIndex(codePoints, vocabulary,
+                postingOffsets, postings, nameTokenOffsets, nameTokens,
+                gramKeys, gramTokens);
+    }
+
+    private static int[] readInts(ByteBuffer buffer) {
+        int[] values = new int[readLength(buffer, 4)];
+        IntBuffer ints = buffer.asIntBuffer();
+        ints.get(values);
+        buffer.position(buffer.position() + 4 * values.length);
+        return values;
+    }
+
+    /**
+     * @return a length read from the buffer, checked to fit in what is
+     * left of it at the given bytes per element
+     */
+    private static int readLength(ByteBuffer buffer, int elementBytes) {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining() / elementBytes) {
+            throw new IllegalArgumentException("Bad length " + length
+                    + " with " + buffer.remaining() + " bytes left");
+        }
+        return length;
+    }
+
+    /** Checks the values strictly ascend within [from, to). */
+    private static void checkAscending(int[] values, int from, int to) {
+        int previous = from - 1;
+        for (int value : values) {
+            if (value <= previous || value >= to) {
+                throw new IllegalArgumentException("Bad value " + value);
+            }
+            previous = value;
+        }
+    }
+
+    /**
+     * Checks the offsets of count lists into an array of the given total
+     * length: count + 1 of them, ascending from 0 to the total.
+     */
+    private static void checkOffsets(int[] offsets, int count, int total) {
+        if (offsets.length != count + 1 || offsets[0] != 0
+                || offsets[count] != total) {
+            throw new IllegalArgumentException("Bad offsets for " + count
+                    + " lists of " + total);
+        }
+        for (int ii = 0; ii < count; ii++) {
+            if (offsets[ii] > offsets[ii + 1]) {
+                throw new IllegalArgumentException("Bad offset " + ii);
+            }
+        }
+    }
+
+    /** Checks every id is in [0, bound). */
+    private static void checkIds(int[] ids, int bound) {
+        for (int id : ids) {
+            if (id < 0 || id >= bound) {
+                throw new IllegalArgumentException("Bad id " + id);
+            }
+        }
+    }
+
+    /**
+     * Collects names in code point order and builds the index.
+     */
+    static class Builder {
+
+        private final IntList codePoints = new IntList(1024);
+        private final HashMap<String, Integer> tokenIds =
+                new HashMap<String, Integer>();
+        private final ArrayList<String> tokens = new ArrayList<String>();
+        private final ArrayList<IntList> tokenPostings = new ArrayList<IntList>();
+        private final IntList nameTokenOffsets = new IntList(1024);
+        /** Token ids in the order first seen, until they are sorted. */
+        private final IntList nameTokens = new IntList(4096);
+
+        Builder() {
+            nameTokenOffsets.add(0);
+        }
+
+        public void add(int codePoint, String name) {
+            int ordinal = codePoints.size();
+            codePoints.add(codePoint);
+            for (String token : name.toUpperCase().split(" ")) {
+                if (token.length() == 0) {
+                    continue;
+                }
+                Integer id = tokenIds.get(token);
+                if (id == null) {
+                    id = tokens.size();
+                    tokenIds.put(token, id);
+                    tokens.add(token);
+                    tokenPostings.add(new IntList(4));
+                }
+                IntList list = tokenPostings.get(id);
+                // a token repeated within one name is only posted once
+                if (list.size() == 0
+                        || list.get(list.size() - 1) != ordinal) {
+                    list.add(ordinal);
+                }
+                nameTokens.add(id);
+            }
+            nameTokenOffsets.add(nameTokens.size());
+        }
+
+        public int size() {
+            return codePoints.size();
+        }
+
+        public int getCodePoint(int ordinal) {
+            return codePoints.get(ordinal);
+        }
+
+        public CodePointNameIndex build() {
+            String[] vocabulary = tokens.toArray(new String[tokens.size()]);
+            Arrays.sort(vocabulary);
+            int[] sortedIds = new int[vocabulary.length];
+            for (int ii = 0; ii < vocabulary.length; ii++) {
+                sortedIds[tokenIds.get(vocabulary[ii])] = ii;
+            }
+            int[] postingOffsets = new int[vocabulary.length + 1];
+            for (int ii = 0; ii < vocabulary.length; ii++) {
+                postingOffsets[ii + 1] = postingOffsets[ii]
+                        + tokenPostings.get(tokenIds.get(vocabulary[ii])).size();
+            }
+            int[] postings = new int[postingOffsets[vocabulary.length]];
+            for (int ii = 0; ii < vocabulary.length; ii++) {
+                IntList list = tokenPostings.get(tokenIds.get(vocabulary[ii]));
+                for (int jj = 0; jj < list.size(); jj++) {
+                    postings[postingOffsets[ii] + jj] = list.get(jj);
+                }
+            }
+            int[] names = nameTokens.toArray();
+            for (int ii = 0; ii < names.length; ii++) {
+                names[ii] = sortedIds[names[ii]];
+            }
+            return new CodePointNameIndex(
+                    codePoints.toArray(), vocabulary, postingOffsets, postings,
+                    nameTokenOffsets.toArray(), names);
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package org.pscode.unicodeglyphs;
+
+import java.awt.Font;
+import java.util.*;
+
+/**
+ * Parses and evaluates code point queries. Every predicate becomes a
+ * {@link CodePointSet}, and the operators combine the sets a word at a time.
+ * <pre>
+ * query   := or
+ * or      := and ('|' and)*
+ * and     := not ('&amp;'? not)*     adjacent terms are and-ed too
+ * not     := '!' not | '(' or ')' | term
+ * term    := defined | letter | digit | alphabetic | ideographic
+ *          | control | mirrored | space | whitespace | lower | upper | title
+ *          | category:Lu | block:GREEK | script:GREEK | name:TEXT
+ *          | font | font:FAMILY | anyfont
+ * </pre>
+ * Values can be quoted to include spaces, e.g. <code>font:"DejaVu Sans"</code>.
+ * <code>font</code> alone is the current display font, <code>anyfont</code>
+ * any of the explorer's fonts. For example, the Greek letters the current
+ * font cannot display are <code>letter block:GREEK !font</code>.
+ */
+class CodePointQuery {
+
+    private static final HashMap<String, Integer> FLAGS =
+            new HashMap<String, Integer>();
+
+    static {
+        FLAGS.put("defined", UnicodeProperties.DEFINED);
+        FLAGS.put("control", UnicodeProperties.ISO_CONTROL);
+        FLAGS.put("mirrored", UnicodeProperties.MIRRORED);
+        FLAGS.put("digit", UnicodeProperties.DIGIT);
+        FLAGS.put("letter", UnicodeProperties.LETTER);
+        FLAGS.put("alphabetic", UnicodeProperties.ALPHABETIC);
+        FLAGS.put("ideographic", UnicodeProperties.IDEOGRAPHIC);
+        FLAGS.put("space", UnicodeProperties.SPACE_CHAR);
+        FLAGS.put("whitespace", UnicodeProperties.WHITESPACE);
+        FLAGS.put("lower", UnicodeProperties.LOWER_CASE);
+        FLAGS.put("title", UnicodeProperties.TITLE_CASE);
+        FLAGS.put("upper", UnicodeProperties.UPPER_CASE);
+    }
+
+    /**
+     * What the font and name predicates are evaluated against. Any of these
+     * may be <code>null</code>, in which case the predicates that need them
+     * are slower (fonts) or unavailable (names).
+     */
+    static class Context {
+
+        Font displayFont;
+        Font[] fonts;
+        FontCoverageIndex fontCoverageIndex;
+        CodePointNameIndex nameIndex;
+    }
+
+    private final String query;
+    private final Context context;
+    private int pos;
+
+    private CodePointQuery(String query, Context context) {
+        this.query = query;
+        this.context = context;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the query does not parse, or
+     * names an unknown block, script, category or predicate
+     */
+    public static CodePointSet evaluate(String query, Context context) {
+        CodePointQuery q = new CodePointQuery(query, context);
+        CodePointSet result = q.parseOr();
+        q.skipSpaces();
+        if (q.pos < query.length()) {
+            throw q.error("Unexpected '" + query.charAt(q.pos) + "'");
+        }
+        return result;
+    }
+
+    private CodePointSet parseOr() {
+        CodePointSet result = parseAnd();
+        while (peek() == '|') {
+            pos++;
+            result.or(parseAnd());
+        }
+        return result;
+    }
+
+    private CodePointSet parseAnd() {
+        CodePointSet result = parseNot();
+        while (true) {
+            char c = peek();
+            if (c == '&') {
+                pos++;
+            } else if (c == 0 || c == '|' || c == ')') {
+                return result;
+            }
+            result.and(parseNot());
+        }
+    }
+
+    private CodePointSet parseNot() {
+        char c = peek();
+        if (c == '!') {
+            pos++;
+            return parseNot().not();
+        }
+        if (c == '(') {
+            pos++;
+            CodePointSet result = parseOr();
+            if (peek() != ')') {
+                throw error("Missing ')'");
+            }
+            pos++;
+            return result;
+        }
+        return parseTerm();
+    }
+
+    private CodePointSet parseTerm() {
+        String word = readWord().toLowerCase(Locale.ROOT);
+        if (word.length() == 0) {
+            throw error("Expected a term");
+        }
+        String value = null;
+        if (pos < query.length() && query.charAt(pos) == ':') {
+            pos++;
+            value = readValue();
+        }
+        Integer flag = FLAGS.get(word);
+        if (flag != null && value == null) {
+            return CodePointSet.withProperties(flag, flag);
+        }
+        if (word.equals("category") && value != null) {
+            int category = Arrays.asList(
+                    UnicodeProperties.CATEGORY_NAMES).indexOf(value);
+            if (category < 0 || value.length() == 0) {
+                throw error("Unknown category " + value);
+            }
+            return CodePointSet.withProperties(
+                    UnicodeProperties.CATEGORY_MASK,
+                    category << UnicodeProperties.CATEGORY_SHIFT);
+        }
+        if (word.equals("block") && value != null) {
+            UnicodeBlocks blocks = UnicodeBlocks.getInstance();
+            int index;
+            try {
+                index = blocks.indexOf(Character.UnicodeBlock.forName(value));
+            } catch (IllegalArgumentException e) {
+                index = -1;
+            }
+            if (index < 0) {
+                throw error("Unknown block " + value);
+            }
+            return CodePointSet.range(
+                    blocks.getStart(index), blocks.getEnd(index));
+        }
+        if (word.equals("script") && value != null) {
+            try {
+                return CodePointSet.inScript(
+                        Character.UnicodeScript.forName(value));
+            } catch (IllegalArgumentException e) {
+                throw error("Unknown script " + value);
+            }
+        }
+        if (word.equals("name") && value != null) {
+            if (context.nameIndex == null) {
+                throw error("Names are still loading");
+            }
+            return CodePointSet.of(context.nameIndex.search(value));
+        }
+        if (word.equals("font")) {
+            Font font;
+            try {
+                font = value == null
+                        ? context.displayFont
+                        : FontCatalog.getFont(value);
+            } catch (IllegalArgumentException e) {
+                throw error("Unknown font " + value);
+            }
+            if (font == null) {
+                throw error("No display font");
+            }
+            return getCoverage(font);
+        }
+        if (word.equals("anyfont") && value == null) {
+            CodePointSet result = new CodePointSet();
+            if (context.fonts != null) {
+                for (Font font : context.fonts) {
+                    result.or(getCoverage(font));
+                }
+            }
+            return result;
+        }
+        throw error("Unknown term " + word + (value == null ? "" : ":" + value));
+    }
+
+    private CodePointSet getCoverage(Font font) {
+        FontCoverageIndex index = context.fontCoverageIndex;
+        int fontIndex = index == null ? -1 : index.getFontIndex(font);
+        return fontIndex < 0
+                ? CodePointSet.displayableBy(font)
+                : index.getCoverage(fontIndex);
+    }
+
+    private char peek() {
+        skipSpaces();
+        return pos < query.length() ? query.charAt(pos) : 0;
+    }
+
+    private void skipSpaces() {
+        while (pos < query.length()
+                && Character.isWhitespace(query.charAt(pos))) {
+            pos++;
+        }
+    }
+
+    private String readWord() {
+        skipSpaces();
+        int start = pos;
+        while (pos < query.length()
+                && Character.isLetterOrDigit(query.charAt(pos))) {
+            pos++;
+        }
+        return query.substring(start, pos);
+    }
+
+    private String readValue() {
+        if (pos < query.length() && query.charAt(pos) == '"') {
+            int end = query.indexOf('"', pos + 1);
+            if (end < 0) {
+                throw error("Missing '\"'");
+            }
+            String value = query.substring(pos + 1, end);
+            pos = end + 1;
+            return value;
+        }
+        int start = pos;
+        while (pos < query.length()
+                && "&|()! \t".indexOf(query.charAt(pos)) < 0) {
+            pos++;
+        }
+        return query.substring(start, pos);
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at " + pos);
+    }
+}
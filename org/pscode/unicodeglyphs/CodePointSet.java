@@ -0,0 +1,187 @@
+package org.pscode.unicodeglyphs;
+
+import java.util.Arrays;
+
+/**
+ * A set of code points as a bitset over the whole code point range. The
+ * set operations work a 64 bit word at a time and modify this set in
+ * place, returning it so they can be chained.
+ */
+class CodePointSet {
+
+    public static final int WORDS = (UnicodeExplorer.numberUnicodes + 63) >> 6;
+    private final long[] bits;
+
+    CodePointSet() {
+        bits = new long[WORDS];
+    }
+
+    private CodePointSet(long[] bits) {
+        this.bits = bits;
+    }
+
+    public static CodePointSet all() {
+        long[] bits = new long[WORDS];
+        Arrays.fill(bits, -1L);
+        int extra = WORDS * 64 - UnicodeExplorer.numberUnicodes;
+        if (extra > 0) {
+            bits[WORDS - 1] >>>= extra;
+        }
+        return new CodePointSet(bits);
+    }
+
+    public static CodePointSet of(int[] codePoints) {
+        CodePointSet set = new CodePointSet();
+        for (int codePoint : codePoints) {
+            set.add(codePoint);
+        }
+        return set;
+    }
+
+    /** The code points whose properties, masked, equal the value. */
+    public static CodePointSet withProperties(int mask, int value) {
+        CodePointSet set = new CodePointSet();
+        UnicodeProperties properties = UnicodeProperties.getInstance();
+        int[] page = new int[64];
+        for (int word = 0; word < WORDS; word++) {
+            int start = word << 6;
+            int end = Math.min(start + 64, UnicodeExplorer.numberUnicodes);
+            properties.getProperties(start, end, page, 0);
+            long w = 0;
+            for (int ii = 0; ii < end - start; ii++) {
+                if ((page[ii] & mask) == value) {
+                    w |= 1L << ii;
+                }
+            }
+            set.bits[word] = w;
+        }
+        return set;
+    }
+
+    /** The code points in <code>[start, end)</code>. */
+    public static CodePointSet range(int start, int end) {
+        CodePointSet set = new CodePointSet();
+        set.addRange(start, end);
+        return set;
+    }
+
+    public static CodePointSet inScript(Character.UnicodeScript script) {
+        CodePointSet set = new CodePointSet();
+        UnicodeProperties properties = UnicodeProperties.getInstance();
+        int ordinal = script.ordinal();
+        for (int codePoint = 0; codePoint < UnicodeExplorer.numberUnicodes;
+                codePoint++) {
+            if (properties.getScriptOrdinal(codePoint) == ordinal) {
+                set.add(codePoint);
+            }
+        }
+        return set;
+    }
+
+    /** The code points the font can display, asking the font directly. */
+    public static CodePointSet displayableBy(java.awt.Font font) {
+        CodePointSet set = new CodePointSet();
+        UnicodeProperties properties = UnicodeProperties.getInstance();
+        for (int codePoint = 0; codePoint < UnicodeExplorer.numberUnicodes;
+                codePoint++) {
+            if (properties.is(codePoint, UnicodeProperties.DEFINED)
+                    && font.canDisplay(codePoint)) {
+                set.add(codePoint);
+            }
+        }
+        return set;
+    }
+
+    long[] words() {
+        return bits;
+    }
+
+    public void add(int codePoint) {
+        bits[codePoint >> 6] |= 1L << codePoint;
+    }
+
+    public void addRange(int start, int end) {
+        for (int codePoint = start; codePoint < end;) {
+            if ((codePoint & 63) == 0 && codePoint + 64 <= end) {
+                bits[codePoint >> 6] = -1L;
+                codePoint += 64;
+            } else {
+                add(codePoint++);
+            }
+        }
+    }
+
+    public boolean contains(int codePoint) {
+        return codePoint >= 0 && codePoint < UnicodeExplorer.numberUnicodes
+                && (bits[codePoint >> 6] & (1L << codePoint)) != 0;
+    }
+
+    public CodePointSet and(CodePointSet other) {
+        for (int ii = 0; ii < WORDS; ii++) {
+            bits[ii] &= other.bits[ii];
+        }
+        return this;
+    }
+
+    public CodePointSet or(CodePointSet other) {
+        for (int ii = 0; ii < WORDS; ii++) {
+            bits[ii] |= other.bits[ii];
+        }
+        return this;
+    }
+
+    public CodePointSet andNot(CodePointSet other) {
+        for (int ii = 0; ii < WORDS; ii++) {
+            bits[ii] &= ~other.bits[ii];
+        }
+        return this;
+    }
+
+    public CodePointSet not() {
+        for (int ii = 0; ii < WORDS; ii++) {
+            bits[ii] = ~bits[ii];
+        }
+        int extra = WORDS * 64 - UnicodeExplorer.numberUnicodes;
+        if (extra > 0) {
+            bits[WORDS - 1] &= -1L >>> extra;
+        }
+        return this;
+    }
+
+    public int cardinality() {
+        int count = 0;
+        for (long word : bits) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /** The code points in the set, in ascending order. */
+    public int[] toArray() {
+        int[] codePoints = new int[cardinality()];
+        int next = 0;
+        for (int word = 0; word < WORDS; word++) {
+            long w = bits[word];
+            while (w != 0) {
+                codePoints[next++] = (word << 6) + Long.numberOfTrailingZeros(w);
+                w &= w - 1;
+            }
+        }
+        return codePoints;
+    }
+
+    /** Keeps the code points of the array that are in this set. */
+    public int[] retain(int[] codePoints) {
+        IntList kept = new IntList(Math.max(codePoints.length / 4, 16));
+        for (int codePoint : codePoints) {
+            if (contains(codePoint)) {
+                kept.add(codePoint);
+            }
+        }
+        return kept.toArray();
+    }
+
+    public CodePointSet copy() {
+        return new CodePointSet(bits.clone());
+    }
+}
@@ -0,0 +1,44 @@
+package org.pscode.unicodeglyphs;
+
+import java.awt.*;
+import javax.swing.JTable;
+import javax.swing.table.TableCellRenderer;
+
+/**
+ * Passes cells to the renderer without going through
+ * {@link CodePointTableModel#getValueAt(int, int)}, so painting does not box
+ * a value per cell. The renderer reads the code point from the model.
+ */
+class CodePointTable extends JTable {
+
+    private static final long serialVersionUID = 1L;
+
+    CodePointTable(CodePointTableModel model) {
+        super(model);
+    }
+
+    /** Times each paint, so scrolling frame times show in the metrics. */
+    @Override
+    protected void paintComponent(Graphics g) {
+        long start = Metrics.start();
+        super.paintComponent(g);
+        Metrics.TABLE_FRAME.stop(start);
+    }
+
+    @Override
+    public Component prepareRenderer(
+            TableCellRenderer renderer, int row, int column) {
+        boolean isSelected = false;
+        boolean hasFocus = false;
+        if (!isPaintingForPrint()) {
+            isSelected = isCellSelected(row, column);
+            boolean rowIsLead =
+                    selectionModel.getLeadSelectionIndex() == row;
+            boolean colIsLead = columnModel.getSelectionModel()
+                    .getLeadSelectionIndex() == column;
+            hasFocus = rowIsLead && colIsLead && isFocusOwner();
+        }
+        return renderer.getTableCellRendererComponent(
+                this, null, isSelected, hasFocus, row, column);
+    }
+}
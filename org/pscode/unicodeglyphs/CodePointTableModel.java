@@ -0,0 +1,136 @@
+package org.pscode.unicodeglyphs;
+
+import java.util.logging.*;
+import javax.swing.SwingWorker;
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * A virtual model over the code point range. Cells are computed from the
+ * current {@link CodePointView}, nothing is stored per cell. By default the
+ * view is the whole range, with rows in which no code point is defined
+ * collapsed; it can be switched to a block, a script or a query result.
+ * The collapsed rows of the whole range are found off the EDT, and until
+ * they are every row is shown.
+ */
+class CodePointTableModel extends AbstractTableModel {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final String[] COLUMN_NAMES = {
+        "0", "1", "2", "3", "4", "5", "6", "7", "8", "9",
+        "A", "B", "C", "D", "E", "F"
+    };
+    private final int cols;
+    private final CodePointView allCodePoints;
+    private CodePointView view;
+    private Runnable whenCollapsed;
+
+    public CodePointTableModel(int numberCodePoints, int cols) {
+        this.cols = cols;
+        final CodePointView.Range range =
+                new CodePointView.Range(0, numberCodePoints, cols);
+        allCodePoints = range;
+        view = allCodePoints;
+        new SwingWorker<int[], Void>() {
+
+            @Override
+            protected int[] doInBackground() {
+                return range.computeRowStarts();
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    range.setRowStarts(get());
+                } catch (Exception e) {
+                    Logger.getLogger(CodePointTableModel.class.getName()).log(
+                            Level.WARNING, "Rows not collapsed", e);
+                    return;
+                }
+                if (view == range) {
+                    fireTableDataChanged();
+                    if (whenCollapsed != null) {
+                        whenCollapsed.run();
+                    }
+                }
+            }
+        }.execute();
+    }
+
+    /**
+     * @param whenCollapsed run on the EDT when the whole range's rows are
+     * collapsed while it is shown, e.g. to restore the selection
+     */
+    public void setWhenCollapsed(Runnable whenCollapsed) {
+        this.whenCollapsed = whenCollapsed;
+    }
+
+    /**
+     * @param view the view to show, or <code>null</code> to show the whole
+     * range again
+     */
+    public void setView(CodePointView view) {
+        this.view = view == null ? allCodePoints : view;
+        fireTableDataChanged();
+    }
+
+    public CodePointView getView() {
+        return view;
+    }
+
+    /**
+     * Shows the code points, in ascending order, packed into rows.
+     * <code>null</code> shows the whole range again.
+     */
+    public void setCodePoints(int[] codePoints) {
+        setView(codePoints == null
+                ? null : new CodePointView.Packed(codePoints, cols));
+    }
+
+    public boolean isFiltered() {
+        return view != allCodePoints;
+    }
+
+    @Override
+    public int getRowCount() {
+        return view.getRowCount();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return cols;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    /**
+     * @return the code point of the cell, or -1 for an empty cell
+     */
+    public int getCodePointAt(int row, int col) {
+        return view.getCodePointAt(row, col);
+    }
+
+    /**
+     * @return the row showing the code point, or the next row after it when
+     * the view does not show it
+     */
+    public int getRowForCodePoint(int codePoint) {
+        return view.getRowForCodePoint(codePoint);
+    }
+
+    public int getColumnForCodePoint(int codePoint) {
+        return view.getColumnForCodePoint(codePoint);
+    }
+
+    /**
+     * Boxes the code point, for callers other than the table. The table
+     * itself renders from {@link #getCodePointAt(int, int)}.
+     */
+    @Override
+    public Object getValueAt(int row, int col) {
+        return getCodePointAt(row, col);
+    }
+}
@@ -0,0 +1,254 @@
+package org.pscode.unicodeglyphs;
+
+import java.util.*;
+
+/**
+ * What the code point table shows: a layout of code points into rows of a
+ * fixed number of columns. Views are cheap to create; per-row state that
+ * takes a scan of the whole range is computed off the EDT.
+ */
+abstract class CodePointView {
+
+    final int cols;
+
+    CodePointView(int cols) {
+        this.cols = cols;
+    }
+
+    public abstract int getRowCount();
+
+    /**
+     * @return the code point of the cell, or -1 for an empty cell
+     */
+    public abstract int getCodePointAt(int row, int col);
+
+    /**
+     * @return the row showing the code point, or the nearest row after it
+     * when the view does not show it
+     */
+    public abstract int getRowForCodePoint(int codePoint);
+
+    public abstract int getColumnForCodePoint(int codePoint);
+
+    public abstract boolean contains(int codePoint);
+
+    /** Approximate heap retained by the view, in bytes. */
+    public abstract long getMemoryUsage();
+
+    /**
+     * The code points of <code>[start, end)</code> in rows aligned to the
+     * column count. Rows in which no code point is defined can be
+     * collapsed; the only per-row state is then the first code point of
+     * each visible row. Finding those rows checks every code point, so it
+     * is done by {@link #computeRowStarts()} off the EDT, and until
+     * {@link #setRowStarts(int[])} is called every row is shown.
+     */
+    static class Range extends CodePointView {
+
+        final int start;
+        final int end;
+        private final int firstRowStart;
+        /** The start of each visible row, or <code>null</code> for all. */
+        private volatile int[] rowStarts;
+
+        Range(int start, int end, int cols) {
+            super(cols);
+            this.start = start;
+            this.end = end;
+            firstRowStart = start - (start % cols);
+        }
+
+        /** @return the start of each row with a defined code point */
+        public int[] computeRowStarts() {
+            UnicodeProperties properties = UnicodeProperties.getInstance();
+            IntList starts = new IntList(64);
+            for (int rowStart = firstRowStart; rowStart < end;
+                    rowStart += cols) {
+                int rowEnd = Math.min(rowStart + cols, end);
+                for (int codePoint = Math.max(rowStart, start);
+                        codePoint < rowEnd; codePoint++) {
+                    if (properties.is(codePoint, UnicodeProperties.DEFINED)) {
+                        starts.add(rowStart);
+                        break;
+                    }
+                }
+            }
+            return starts.toArray();
+        }
+
+        /**
+         * Collapses the rows to those given by {@link #computeRowStarts()}.
+         * Call it on the EDT, and tell the table its rows changed.
+         */
+        public void setRowStarts(int[] rowStarts) {
+            this.rowStarts = rowStarts;
+        }
+
+        public boolean isCollapsed() {
+            return rowStarts != null;
+        }
+
+        @Override
+        public int getRowCount() {
+            int[] starts = rowStarts;
+            return starts != null
+                    ? starts.length : (end - firstRowStart + cols - 1) / cols;
+        }
+
+        @Override
+        public int getCodePointAt(int row, int col) {
+            int[] starts = rowStarts;
+            int codePoint = (starts != null
+                    ? starts[row] : firstRowStart + row * cols) + col;
+            return codePoint >= start && codePoint < end ? codePoint : -1;
+        }
+
+        @Override
+        public int getRowForCodePoint(int codePoint) {
+            int[] starts = rowStarts;
+            if (starts == null) {
+                int row = (codePoint - firstRowStart) / cols;
+                return Math.max(0, Math.min(row, getRowCount() - 1));
+            }
+            int row = Arrays.binarySearch(starts, codePoint - (codePoint % cols));
+            if (row < 0) {
+                row = Math.min(-row - 1, starts.length - 1);
+            }
+            return row;
+        }
+
+        @Override
+        public int getColumnForCodePoint(int codePoint) {
+            return codePoint % cols;
+        }
+
+        @Override
+        public boolean contains(int codePoint) {
+            return codePoint >= start && codePoint < end;
+        }
+
+        @Override
+        public long getMemoryUsage() {
+            int[] starts = rowStarts;
+            return 32 + (starts == null ? 0 : 16 + 4L * starts.length);
+        }
+    }
+
+    /**
+     * An ascending list of code points packed into rows; the cells after
+     * the last code point are empty.
+     */
+    static class Packed extends CodePointView {
+
+        private final int[] codePoints;
+
+        Packed(int[] codePoints, int cols) {
+            super(cols);
+            this.codePoints = codePoints;
+        }
+
+        @Override
+        public int getRowCount() {
+            return (codePoints.length + cols - 1) / cols;
+        }
+
+        @Override
+        public int getCodePointAt(int row, int col) {
+            int index = row * cols + col;
+            return index < codePoints.length ? codePoints[index] : -1;
+        }
+
+        /**
+         * @return the index of the code point in the list, or of the next
+         * one after it when it is not listed
+         */
+        private int getListIndex(int codePoint) {
+            int index = Arrays.binarySearch(codePoints, codePoint);
+            if (index < 0) {
+                index = Math.min(-index - 1, codePoints.length - 1);
+            }
+            return Math.max(index, 0);
+        }
+
+        @Override
+        public int getRowForCodePoint(int codePoint) {
+            return getListIndex(codePoint) / cols;
+        }
+
+        @Override
+        public int getColumnForCodePoint(int codePoint) {
+            return getListIndex(codePoint) % cols;
+        }
+
+        @Override
+        public boolean contains(int codePoint) {
+            return Arrays.binarySearch(codePoints, codePoint) >= 0;
+        }
+
+        @Override
+        public long getMemoryUsage() {
+            return 48 + 4L * codePoints.length;
+        }
+    }
+
+    /**
+     * Views of blocks and scripts, created on first use and kept for the
+     * most recently used {@link #MAX_VIEWS} keys, so revisiting a block is
+     * instant but memory stays flat however many are visited.
+     */
+    static class Cache {
+
+        static final int MAX_VIEWS = 32;
+        private final int cols;
+        private final LinkedHashMap<String, CodePointView> views =
+                new LinkedHashMap<String, CodePointView>(MAX_VIEWS, .75f, true) {
+
+                    @Override
+                    protected boolean removeEldestEntry(
+                            Map.Entry<String, CodePointView> eldest) {
+                        return size() > MAX_VIEWS;
+                    }
+                };
+
+        Cache(int cols) {
+            this.cols = cols;
+        }
+
+        public synchronized CodePointView getBlockView(int blockIndex) {
+            String key = "block:" + blockIndex;
+            CodePointView view = views.get(key);
+            if (view == null) {
+                UnicodeBlocks blocks = UnicodeBlocks.getInstance();
+                Range range = new Range(
+                        blocks.getStart(blockIndex),
+                        blocks.getEnd(blockIndex),
+                        cols);
+                // a block is small enough to collapse right away
+                range.setRowStarts(range.computeRowStarts());
+                view = range;
+                views.put(key, view);
+            }
+            return view;
+        }
+
+        public synchronized CodePointView getScriptView(
+                Character.UnicodeScript script) {
+            String key = "script:" + script;
+            CodePointView view = views.get(key);
+            if (view == null) {
+                view = new Packed(
+                        CodePointSet.inScript(script).toArray(), cols);
+                views.put(key, view);
+            }
+            return view;
+        }
+
+        public synchronized long getMemoryUsage() {
+            long bytes = 0;
+            for (CodePointView view : views.values()) {
+                bytes += view.getMemoryUsage();
+            }
+            return bytes;
+        }
+    }
+}
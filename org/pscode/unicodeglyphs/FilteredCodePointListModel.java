@@ -0,0 +1,337 @@
+package org.pscode.unicodeglyphs;
+
+import java.awt.event.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.swing.*;
+
+/**
+ * The named code points, filtered by name and optionally restricted to a
+ * {@link CodePointSet}. {@link #setFilter(String)} filters on the calling
+ * thread; {@link #setFilterLater(String, Runnable)} debounces keystrokes and
+ * filters on a background thread, where a newer filter cancels an older
+ * one and at most one filter waits to run. A filter that only narrows the
+ * previous one (every old part is contained in a new part) is answered by
+ * checking the previous matches rather than searching again. Either way the
+ * matches replace the list contents in one event on the EDT.
+ * <p>
+ * In ranked mode the filter tolerates typos and the list shows the
+ * {@link #TOP_K} best matches, best first, as ranked by
+ * {@link CodePointNameIndex#searchRanked(String, int)}.
+ * <p>
+ * Code points are kept as int arrays throughout, and only boxed one at a
+ * time as the list asks for them. Once the name index is set the elements
+ * are the index's own code points, so the list holds no copy of them.
+ */
+class FilteredCodePointListModel extends AbstractListModel<Integer> {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final int DEBOUNCE_MILLIS = 150;
+    /**
+     * With a name index, previous matches up to this size are refined by
+     * checking their tokens; larger ones are searched again, which the
+     * postings do faster.
+     */
+    static final int REFINE_LIMIT = 4096;
+    public static final int TOP_K = 100;
+    private static final ExecutorService filterExecutor = new ThreadPoolExecutor(
+            1, 1, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<Runnable>(1),
+            new ThreadFactory() {
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "Name filter");
+                    t.setDaemon(true);
+                    return t;
+                }
+            },
+            new ThreadPoolExecutor.DiscardOldestPolicy());
+    private static final int[] NONE = new int[0];
+    public String filter = "";
+    /** The code points shown: the matches, after the restriction. */
+    private int[] shown = NONE;
+    /** The elements added before there is a name index. */
+    private IntList elements = new IntList();
+    private int[] elementsArray;
+    private CodePointNameIndex nameIndex;
+    private CodePointSet restriction;
+    /** The unrestricted matches of {@link #matchedFilter}. */
+    private int[] matches;
+    private String matchedFilter;
+    private final AtomicInteger generation = new AtomicInteger();
+    private final javax.swing.Timer debounce;
+    private Runnable whenFiltered;
+    private boolean ranked;
+
+    FilteredCodePointListModel() {
+        debounce = new javax.swing.Timer(DEBOUNCE_MILLIS, new ActionListener() {
+
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                filterLater();
+            }
+        });
+        debounce.setRepeats(false);
+    }
+
+    /**
+     * Limits the list to code points in the set, on top of the name
+     * filter. <code>null</code> lifts the restriction.
+     */
+    public void setRestriction(CodePointSet restriction) {
+        this.restriction = restriction;
+        if (matches != null && filter.equals(matchedFilter)) {
+            publish(matches);
+        } else {
+            refresh();
+        }
+    }
+
+    /**
+     * Once set, filters are answered from the index rather than by scanning
+     * the name of every element. The index must cover the same elements.
+     */
+    public void setNameIndex(CodePointNameIndex nameIndex) {
+        this.nameIndex = nameIndex;
+        elements = new IntList();
+        elementsArray = null;
+    }
+
+    /**
+     * Adds code points, in ascending order after those already added. They
+     * are shown on the next {@link #refresh()}.
+     */
+    public void add(int[] codePoints) {
+        for (int codePoint : codePoints) {
+            elements.add(codePoint);
+        }
+        elementsArray = null;
+    }
+
+    /**
+     * Switches between exact filtering in code point order and typo
+     * tolerant, ranked filtering. Ranking needs the name index; until it is
+     * set, filters are exact.
+     */
+    public void setRanked(boolean ranked) {
+        if (this.ranked != ranked) {
+            this.ranked = ranked;
+            refresh();
+        }
+    }
+
+    public boolean isRanked() {
+        return ranked;
+    }
+
+    /** Filters on the calling thread, cancelling any pending filter. */
+    public void setFilter(String filter) {
+        debounce.stop();
+        this.filter = filter;
+        int current = generation.incrementAndGet();
+        publish(match(filter, getCodePoints(), nameIndex, ranked,
+                matchedFilter, matches, generation, current));
+    }
+
+    /**
+     * Filters on a background thread once the filter has not changed for
+     * {@link #DEBOUNCE_MILLIS}. The runnable is called on the EDT after the
+     * matches are shown.
+     */
+    public void setFilterLater(String filter, Runnable whenFiltered) {
+        this.filter = filter;
+        this.whenFiltered = whenFiltered;
+        generation.incrementAndGet();
+        debounce.restart();
+    }
+
+    /**
+     * Re-applies the current filter after elements were added, and tells
+     * the list that its contents changed.
+     */
+    public void refresh() {
+        debounce.stop();
+        // the elements changed, so the last matches cannot be refined
+        matches = null;
+        matchedFilter = null;
+        filterLater();
+    }
+
+    private void filterLater() {
+        final String f = filter;
+        final int[] codePoints = getCodePoints();
+        final CodePointNameIndex index = nameIndex;
+        final boolean rankedFilter = ranked;
+        final String previousFilter = matchedFilter;
+        final int[] previous = matches;
+        final int current = generation.incrementAndGet();
+        final Runnable done = whenFiltered;
+        whenFiltered = null;
+        filterExecutor.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                final int[] result = match(f, codePoints, index, rankedFilter,
+                        previousFilter, previous, generation, current);
+                if (result == null) {
+                    return;
+                }
+                SwingUtilities.invokeLater(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        if (generation.get() == current) {
+                            publish(result);
+                            if (done != null) {
+                                done.run();
+                            }
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * @return the elements, copied from the added ones only when more were
+     * added since the last call
+     */
+    private int[] getCodePoints() {
+        if (nameIndex != null) {
+            return nameIndex.getCodePoints();
+        }
+        if (elementsArray == null) {
+            elementsArray = elements.toArray();
+        }
+        return elementsArray;
+    }
+
+    /**
+     * Shows the matches, after the restriction, in one event.
+     */
+    private void publish(int[] result) {
+        long start = Metrics.start();
+        int oldSize = getSize();
+        matches = result;
+        matchedFilter = filter;
+        shown = restriction == null ? result : restriction.retain(result);
+        // removals and additions, so the list trims its selection
+        if (oldSize > shown.length) {
+            fireIntervalRemoved(this, shown.length, oldSize - 1);
+        } else if (shown.length > oldSize) {
+            fireIntervalAdded(this, oldSize, shown.length - 1);
+        }
+        int changed = Math.min(oldSize, shown.length);
+        if (changed > 0) {
+            fireContentsChanged(this, 0, changed - 1);
+        }
+        Metrics.FILTER.stop(start);
+    }
+
+    /**
+     * Finds the code points whose (upper case) names contain every space
+     * separated part of the filter.
+     *
+     * @param codePoints the code points to filter, in ascending order
+     * @param ranked whether to rank the best {@link #TOP_K} matches rather
+     * than find them all, when there is a name index
+     * @param previousFilter the filter previous matches are for, or
+     * <code>null</code>
+     * @param previous the matches for previousFilter in the same mode, or
+     * <code>null</code>. Unranked matches are in ascending order, which
+     * refining them with {@link CodePointNameIndex#refine(int[], String)}
+     * relies on; ranked ones are only ever reused for the same filter.
+     * @return the matches, best first when ranked with a name index and
+     * otherwise in ascending order, or <code>null</code> when the
+     * generation moved on before the filter was done
+     */
+    static int[] match(
+            String filter, int[] codePoints, CodePointNameIndex nameIndex,
+            boolean ranked, String previousFilter, int[] previous,
+            AtomicInteger generation, int current) {
+        if (filter.trim().length() == 0) {
+            return codePoints;
+        }
+        if (previous != null && filter.equals(previousFilter)) {
+            return previous;
+        }
+        if (ranked && nameIndex != null) {
+            return nameIndex.searchRanked(filter, TOP_K);
+        }
+        String[] parts = filter.toUpperCase().trim().split(" ");
+        if (previous != null && isNarrowing(previousFilter, filter)) {
+            if (nameIndex == null) {
+                return matchNames(parts, previous, generation, current);
+            }
+            if (previous.length <= REFINE_LIMIT) {
+                return nameIndex.refine(previous, filter);
+            }
+        }
+        if (nameIndex != null) {
+            return nameIndex.search(filter);
+        }
+        return matchNames(parts, codePoints, generation, current);
+    }
+
+    private static int[] matchNames(String[] parts, int[] codePoints,
+            AtomicInteger generation, int current) {
+        IntList result = new IntList();
+        for (int ii = 0; ii < codePoints.length; ii++) {
+            if ((ii & 255) == 0 && generation.get() != current) {
+                return null;
+            }
+            String name = UnicodeDatabase.nameOf(codePoints[ii]).toUpperCase();
+            boolean containsAll = true;
+            for (String part : parts) {
+                if (name.indexOf(part) < 0) {
+                    containsAll = false;
+                    break;
+                }
+            }
+            if (containsAll) {
+                result.add(codePoints[ii]);
+            }
+        }
+        return result.toArray();
+    }
+
+    /**
+     * @return whether every name matching next also matches previous, i.e.
+     * each part of previous is contained in some part of next
+     */
+    static boolean isNarrowing(String previous, String next) {
+        if (previous == null) {
+            return false;
+        }
+        String[] nextParts = next.toUpperCase().trim().split(" ");
+        for (String part : previous.toUpperCase().trim().split(" ")) {
+            boolean contained = false;
+            for (String nextPart : nextParts) {
+                if (nextPart.contains(part)) {
+                    contained = true;
+                    break;
+                }
+            }
+            if (!contained) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int getSize() {
+        return shown.length;
+    }
+
+    public int getCodePointAt(int index) {
+        return shown[index];
+    }
+
+    @Override
+    public Integer getElementAt(int index) {
+        return shown[index];
+    }
+}
@@ -0,0 +1,57 @@
+package org.pscode.unicodeglyphs;
+
+import java.awt.*;
+import java.util.*;
+
+/**
+ * The fonts the explorer works with: the logical fonts first, then every
+ * installed family, without duplicates.
+ */
+class FontCatalog {
+
+    public static final String[] LOGICAL_FONTS = {
+        Font.DIALOG, Font.DIALOG_INPUT,
+        Font.MONOSPACED,
+        Font.SANS_SERIF, Font.SERIF
+    };
+
+    public static String[] getFamilyNames() {
+        LinkedHashSet<String> names = new LinkedHashSet<String>(
+                Arrays.asList(LOGICAL_FONTS));
+        names.addAll(Arrays.asList(GraphicsEnvironment
+                .getLocalGraphicsEnvironment().getAvailableFontFamilyNames()));
+        return names.toArray(new String[names.size()]);
+    }
+
+    /**
+     * @return a size 1, plain font for each family name, in any case
+     * @throws IllegalArgumentException for a family that is not installed,
+     * which {@link Font} would silently replace by Dialog
+     */
+    public static Font[] getFonts(String[] familyNames) {
+        TreeMap<String, String> known =
+                new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
+        for (String name : getFamilyNames()) {
+            known.put(name, name);
+        }
+        Font[] fonts = new Font[familyNames.length];
+        for (int ii = 0; ii < familyNames.length; ii++) {
+            String name = known.get(familyNames[ii]);
+            if (name == null) {
+                throw new IllegalArgumentException(
+                        "Unknown font " + familyNames[ii]);
+            }
+            fonts[ii] = new Font(name, Font.PLAIN, 1);
+        }
+        return fonts;
+    }
+
+    /** As {@link #getFonts(String[])}, for one family. */
+    public static Font getFont(String familyName) {
+        return getFonts(new String[]{familyName})[0];
+    }
+
+    public static Font[] getFonts() {
+        return getFonts(getFamilyNames());
+    }
+}
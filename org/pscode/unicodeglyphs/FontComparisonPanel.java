@@ -0,0 +1,428 @@
+package org.pscode.unicodeglyphs;
+
+import java.awt.*;
+import java.awt.font.*;
+import java.awt.image.*;
+import java.util.*;
+import java.util.concurrent.*;
+import javax.swing.*;
+import javax.swing.event.*;
+
+/**
+ * Shows a code point, or a short string, in every font at once, as a grid
+ * of fixed size cells. The grid is a wrapping {@link JList}, so only the
+ * visible cells are painted, and a cell that is not drawn yet shows a
+ * placeholder while a background pool draws it. Samples are drawn by text
+ * and font into a bounded LRU cache, so going back to an earlier text, or
+ * scrolling back, does not draw them again. A sample keeps only its ink,
+ * at a byte per pixel, so the cache holds a few samples of every font.
+ * <p>
+ * A drawing request is dropped when it is dequeued for a text that is no
+ * longer shown, or a cell scrolled well out of view, so fast typing or
+ * scrolling through a thousand fonts only draws what ends up on screen.
+ */
+class FontComparisonPanel extends JPanel {
+
+    private static final long serialVersionUID = 1L;
+
+    static final int CELL_WIDTH = 160;
+    static final int CELL_HEIGHT = 80;
+    static final float SAMPLE_SIZE = 32;
+    /** Cells off screen that are still worth drawing, when scrolling. */
+    static final int MARGIN_CELLS = 16;
+    public static final int CACHE_BUDGET_KB =
+            Integer.getInteger("uglys.comparisonCacheKB", 16 * 1024);
+    private static final FontRenderContext RENDER_CONTEXT =
+            new FontRenderContext(null, true, true);
+    private static final int SAMPLE_WIDTH = CELL_WIDTH - 8;
+    private static final int SAMPLE_HEIGHT = CELL_HEIGHT - 24;
+    private static final Icon PLACEHOLDER = new Icon() {
+
+        @Override
+        public void paintIcon(Component c, Graphics g, int x, int y) {
+            g.setColor(Color.LIGHT_GRAY);
+            g.drawRect(x + SAMPLE_WIDTH / 4, y + 4,
+                    SAMPLE_WIDTH / 2, SAMPLE_HEIGHT - 8);
+        }
+
+        @Override
+        public int getIconWidth() {
+            return SAMPLE_WIDTH;
+        }
+
+        @Override
+        public int getIconHeight() {
+            return SAMPLE_HEIGHT;
+        }
+    };
+    private final JTextField text = new JTextField(12);
+    private final JCheckBox follow = new JCheckBox("Follow selection", true);
+    private final FontListModel fontsModel = new FontListModel();
+    private final JList<Font> fontList;
+    private final JLabel status = new JLabel(" ");
+    /** The table's renderer, whose coloring rule samples follow. */
+    private final FontTableCellRenderer renderer;
+    private final SampleCache cache =
+            new SampleCache(CACHE_BUDGET_KB * 1024L);
+    private final Set<String> pending =
+            Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final ExecutorService executor;
+    /** What the visible cells show, read by the drawing threads. */
+    private volatile String sample = "";
+    private volatile int firstVisible;
+    private volatile int lastVisible = -1;
+
+    FontComparisonPanel(FontTableCellRenderer renderer) {
+        super(new BorderLayout(3, 3));
+        this.renderer = renderer;
+
+        executor = Executors.newFixedThreadPool(
+                Runtime.getRuntime().availableProcessors(),
+                new ThreadFactory() {
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, "Font comparison");
+                        t.setDaemon(true);
+                        t.setPriority(Thread.MIN_PRIORITY);
+                        return t;
+                    }
+                });
+
+        fontList = new JList<Font>(fontsModel) {
+
+            @Override
+            protected void paintComponent(Graphics g) {
+                firstVisible = getFirstVisibleIndex();
+                lastVisible = getLastVisibleIndex();
+                super.paintComponent(g);
+            }
+        };
+        fontList.setLayoutOrientation(JList.HORIZONTAL_WRAP);
+        fontList.setVisibleRowCount(-1);
+        // fixed cells, so the list never asks the renderer for a size
+        fontList.setFixedCellWidth(CELL_WIDTH);
+        fontList.setFixedCellHeight(CELL_HEIGHT);
+        fontList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        fontList.setCellRenderer(new SampleCellRenderer());
+
+        text.getDocument().addDocumentListener(new DocumentListener() {
+
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                setSample(text.getText());
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                setSample(text.getText());
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                setSample(text.getText());
+            }
+        });
+
+        JPanel controls = new JPanel(new FlowLayout(FlowLayout.LEADING));
+        controls.add(new JLabel("Text"));
+        controls.add(text);
+        controls.add(follow);
+        controls.add(status);
+        add(controls, BorderLayout.PAGE_START);
+        add(new JScrollPane(fontList), BorderLayout.CENTER);
+    }
+
+    public JList<Font> getFontList() {
+        return fontList;
+    }
+
+    public void setFonts(Font[] fonts) {
+        fontsModel.setFonts(fonts, fonts.length);
+        status.setText(fonts.length + " fonts");
+    }
+
+    /** Shows the code point, unless the text is not following selection. */
+    public void showCodePoint(int codePoint) {
+        if (follow.isSelected()) {
+            text.setText(UnicodeUtil.getCodePointString(codePoint));
+        }
+    }
+
+    /**
+     * Drops the drawn samples, for when the coloring rule changes, as when
+     * the fonts have been verified.
+     */
+    public void invalidateSamples() {
+        cache.clear();
+        fontList.repaint();
+    }
+
+    private void setSample(String s) {
+        sample = s;
+        fontList.repaint();
+    }
+
+    private static String getKey(String s, Font font) {
+        return font.getName() + '\u0000' + s;
+    }
+
+    /**
+     * @return the cached sample, or <code>null</code> after asking for it
+     * to be drawn
+     */
+    private Icon getSample(String s, Font font, int index) {
+        String key = getKey(s, font);
+        Icon icon = cache.get(key);
+        if (icon == null && pending.add(key)) {
+            executor.execute(new SampleTask(s, font, index, key));
+        }
+        return icon;
+    }
+
+    /** Draws one sample, if its cell is still wanted. */
+    private class SampleTask implements Runnable {
+
+        private final String s;
+        private final Font font;
+        private final int index;
+        private final String key;
+
+        SampleTask(String s, Font font, int index, String key) {
+            this.s = s;
+            this.font = font;
+            this.index = index;
+            this.key = key;
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (!s.equals(sample)
+                        || index < firstVisible - MARGIN_CELLS
+                        || index > lastVisible + MARGIN_CELLS) {
+                    return;
+                }
+                cache.put(key, drawSample(font, s, getSampleColor(font, s)));
+            } finally {
+                pending.remove(key);
+            }
+            SwingUtilities.invokeLater(new Runnable() {
+
+                @Override
+                public void run() {
+                    Rectangle bounds = index < fontsModel.getSize()
+                            ? fontList.getCellBounds(index, index) : null;
+                    if (bounds != null) {
+                        fontList.repaint(bounds);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * The color of the code point table for each code point of the text,
+     * the first that is not black: so a sample is blue or red when any of
+     * its code points would be in the table.
+     */
+    private Color getSampleColor(Font font, String s) {
+        for (int ii = 0; ii < s.length(); ) {
+            int codePoint = s.codePointAt(ii);
+            Color color = renderer.getGlyphColor(font, codePoint);
+            if (!Color.BLACK.equals(color)) {
+                return color;
+            }
+            ii += Character.charCount(codePoint);
+        }
+        return Color.BLACK;
+    }
+
+    /**
+     * Draws the text centered in a sample sized cell, shaped as a
+     * {@link TextLayout} so that complex scripts join, and keeps the part
+     * of the cell that has ink.
+     */
+    static Sample drawSample(Font font, String s, Color color) {
+        long start = Metrics.start();
+        Sample sample = Sample.EMPTY;
+        if (s.length() > 0) {
+            Font sampleFont = font.deriveFont(SAMPLE_SIZE);
+            TextLayout layout = new TextLayout(s, sampleFont, RENDER_CONTEXT);
+            float x = Math.max(0, (SAMPLE_WIDTH - layout.getAdvance()) / 2);
+            float y = (SAMPLE_HEIGHT - layout.getAscent()
+                    - layout.getDescent()) / 2 + layout.getAscent();
+            // a pixel around the ink, for antialiasing
+            Rectangle ink = layout.getPixelBounds(RENDER_CONTEXT, x, y);
+            ink.grow(1, 1);
+            ink = ink.intersection(
+                    new Rectangle(0, 0, SAMPLE_WIDTH, SAMPLE_HEIGHT));
+            if (!ink.isEmpty()) {
+                BufferedImage image = new BufferedImage(
+                        ink.width, ink.height, BufferedImage.TYPE_INT_ARGB);
+                Graphics2D g = image.createGraphics();
+                g.setRenderingHint(
+                        RenderingHints.KEY_TEXT_ANTIALIASING,
+                        RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+                g.setRenderingHint(
+                        RenderingHints.KEY_FRACTIONALMETRICS,
+                        RenderingHints.VALUE_FRACTIONALMETRICS_ON);
+                g.setColor(color);
+                layout.draw(g, x - ink.x, y - ink.y);
+                g.dispose();
+                sample = new Sample(toAlphaMask(image, color), ink.x, ink.y);
+            }
+        }
+        Metrics.COMPARISON_SAMPLE.stop(start);
+        return sample;
+    }
+
+    /**
+     * The image in a single color, as a byte of alpha per pixel rather
+     * than four bytes of color.
+     */
+    private static BufferedImage toAlphaMask(BufferedImage image,
+            Color color) {
+        byte[] r = new byte[256];
+        byte[] g = new byte[256];
+        byte[] b = new byte[256];
+        byte[] a = new byte[256];
+        for (int ii = 0; ii < 256; ii++) {
+            r[ii] = (byte) color.getRed();
+            g[ii] = (byte) color.getGreen();
+            b[ii] = (byte) color.getBlue();
+            a[ii] = (byte) ii;
+        }
+        BufferedImage mask = new BufferedImage(
+                image.getWidth(), image.getHeight(),
+                BufferedImage.TYPE_BYTE_INDEXED,
+                new IndexColorModel(8, 256, r, g, b, a));
+        WritableRaster src = image.getAlphaRaster();
+        WritableRaster dest = mask.getRaster();
+        int[] row = new int[image.getWidth()];
+        for (int y = 0; y < image.getHeight(); y++) {
+            src.getSamples(0, y, row.length, 1, 0, row);
+            dest.setSamples(0, y, row.length, 1, 0, row);
+        }
+        return mask;
+    }
+
+    /**
+     * A drawn sample: the ink of the text and where it is in the cell.
+     */
+    static class Sample implements Icon {
+
+        static final Sample EMPTY = new Sample(null, 0, 0);
+        final BufferedImage image;
+        final int x;
+        final int y;
+        final int bytes;
+
+        Sample(BufferedImage image, int x, int y) {
+            this.image = image;
+            this.x = x;
+            this.y = y;
+            bytes = image == null
+                    ? 64 : 64 + image.getWidth() * image.getHeight();
+        }
+
+        @Override
+        public void paintIcon(Component c, Graphics g, int x, int y) {
+            if (image != null) {
+                g.drawImage(image, x + this.x, y + this.y, null);
+            }
+        }
+
+        @Override
+        public int getIconWidth() {
+            return SAMPLE_WIDTH;
+        }
+
+        @Override
+        public int getIconHeight() {
+            return SAMPLE_HEIGHT;
+        }
+    }
+
+    /**
+     * The font name under its sample, or under a placeholder until the
+     * sample is drawn. Names are in the list's own font, so painting a cell
+     * never derives a font on the EDT.
+     */
+    private class SampleCellRenderer extends DefaultListCellRenderer {
+
+        private static final long serialVersionUID = 1L;
+
+        SampleCellRenderer() {
+            setHorizontalAlignment(SwingConstants.CENTER);
+            setHorizontalTextPosition(SwingConstants.CENTER);
+            setVerticalTextPosition(SwingConstants.BOTTOM);
+        }
+
+        @Override
+        public Component getListCellRendererComponent(
+                JList<?> list,
+                Object value,
+                int index,
+                boolean isSelected,
+                boolean cellHasFocus) {
+            Font font = (Font) value;
+            JLabel label = (JLabel) super.getListCellRendererComponent(
+                    list, font.getName(), index, isSelected, cellHasFocus);
+            Icon icon = getSample(sample, font, index);
+            label.setIcon(icon == null ? PLACEHOLDER : icon);
+            label.setToolTipText(font.toString());
+            return label;
+        }
+    }
+
+    /**
+     * The least recently used samples are dropped once their images exceed
+     * the budget, as in {@link GlyphCache}.
+     */
+    static class SampleCache {
+
+        private final LinkedHashMap<String, Sample> samples =
+                new LinkedHashMap<String, Sample>(256, .75f, true);
+        private final long budgetBytes;
+        private long usedBytes;
+
+        SampleCache(long budgetBytes) {
+            this.budgetBytes = budgetBytes;
+        }
+
+        public synchronized Sample get(String key) {
+            return samples.get(key);
+        }
+
+        public synchronized void put(String key, Sample sample) {
+            Sample old = samples.put(key, sample);
+            if (old != null) {
+                usedBytes -= old.bytes;
+            }
+            usedBytes += sample.bytes;
+            Iterator<Sample> it = samples.values().iterator();
+            while (usedBytes > budgetBytes && it.hasNext()) {
+                Sample eldest = it.next();
+                if (eldest == sample) {
+                    break;
+                }
+                usedBytes -= eldest.bytes;
+                it.remove();
+            }
+        }
+
+        public synchronized void clear() {
+            samples.clear();
+            usedBytes = 0;
+        }
+
+        public synchronized int size() {
+            return samples.size();
+        }
+
+        public synchronized long getUsedBytes() {
+            return usedBytes;
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package org.pscode.unicodeglyphs;
+
+import java.awt.Font;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.*;
+
+/**
+ * Precomputed glyph coverage for a set of fonts. Each font gets one bitmap
+ * over the code point range, so 'can this font display that code point' is a
+ * bit lookup instead of a call to {@link Font#canDisplay(int)}.
+ * <p>
+ * Bitmaps are split into pages of {@link #PAGE_SIZE} code points. Pages
+ * that a font does not cover at all are stored as <code>null</code>, pages
+ * it covers completely share one constant, so sparse fonts stay small.
+ */
+class FontCoverageIndex {
+
+    static final int PAGE_SHIFT = 8;
+    static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    static final int WORDS_PER_PAGE = PAGE_SIZE / 64;
+    private static final long[] FULL_PAGE = new long[WORDS_PER_PAGE];
+
+    static {
+        Arrays.fill(FULL_PAGE, -1L);
+    }
+    private final Font[] fonts;
+    private final long[][][] coverage;
+    private final HashMap<String, Integer> fontIndexByName =
+            new HashMap<String, Integer>();
+    private final int numberCodePoints;
+    private long buildTimeNanos;
+
+    private FontCoverageIndex(Font[] fonts, int numberCodePoints) {
+        this.fonts = fonts;
+        this.numberCodePoints = numberCodePoints;
+        this.coverage = new long[fonts.length][][];
+        for (int ii = 0; ii < fonts.length; ii++) {
+            fontIndexByName.put(fonts[ii].getName(), ii);
+        }
+    }
+
+    /**
+     * Scans every font over <code>[0, numberCodePoints)</code>, one task per
+     * font spread over the available processors. Intended to be called off
+     * the EDT.
+     */
+    public static FontCoverageIndex build(Font[] fonts, int numberCodePoints) {
+        long start = System.nanoTime();
+        final FontCoverageIndex index =
+                new FontCoverageIndex(fonts, numberCodePoints);
+        final boolean[] definedPages = getDefinedPages(numberCodePoints);
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Runtime.getRuntime().availableProcessors());
+        try {
+            ArrayList<Future<?>> futures = new ArrayList<Future<?>>();
+            for (int ii = 0; ii < fonts.length; ii++) {
+                final int fontIndex = ii;
+                futures.add(executor.submit(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        index.coverage[fontIndex] = index.scanFont(
+                                index.fonts[fontIndex], definedPages);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Coverage build interrupted");
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+        index.buildTimeNanos = System.nanoTime() - start;
+
+        Logger.getLogger(FontCoverageIndex.class.getName()).log(
+                Level.INFO, index.toString());
+        return index;
+    }
+
+    /**
+     * @return for each page, whether any of its code points is defined.
+     * Pages with nothing defined (most of the supplementary planes) are not
+     * scanned.
+     */
+    private static boolean[] getDefinedPages(int numberCodePoints) {
+        int pageCount = (numberCodePoints + PAGE_SIZE - 1) >> PAGE_SHIFT;
+        boolean[] definedPages = new boolean[pageCount];
+        for (int codePoint = 0; codePoint < numberCodePoints; codePoint++) {
+            if (Character.isDefined(codePoint)) {
+                definedPages[codePoint >> PAGE_SHIFT] = true;
+                // skip to the next page
+                codePoint |= PAGE_SIZE - 1;
+            }
+        }
+        return definedPages;
+    }
+
+    private long[][] scanFont(Font font, boolean[] definedPages) {
+        int pageCount = definedPages.length;
+        long[][] pages = new long[pageCount][];
+        for (int page = 0; page < pageCount; page++) {
+            if (!definedPages[page]) {
+                continue;
+            }
+            long[] words = new long[WORDS_PER_PAGE];
+            int base = page << PAGE_SHIFT;
+            int end = Math.min(base + PAGE_SIZE, numberCodePoints);
+            int covered = 0;
+            for (int codePoint = base; codePoint < end; codePoint++) {
+                if (font.canDisplay(codePoint)) {
+                    int bit = codePoint - base;
+                    words[bit >> 6] |= 1L << bit;
+                    covered++;
+                }
+            }
+            if (covered == PAGE_SIZE) {
+                pages[page] = FULL_PAGE;
+            } else if (covered > 0) {
+                pages[page] = words;
+            }
+        }
+        return pages;
+    }
+
+    public Font[] getFonts() {
+        return fonts;
+    }
+
+    public int getFontIndex(Font font) {
+        Integer index = fontIndexByName.get(font.getName());
+        return index == null ? -1 : index.intValue();
+    }
+
+    public boolean canDisplay(int fontIndex, int codePoint) {
+        if (codePoint < 0 || codePoint >= numberCodePoints) {
+            return false;
+        }
+        long[] words = coverage[fontIndex][codePoint >> PAGE_SHIFT];
+        if (words == null) {
+            return false;
+        }
+        int bit = codePoint & (PAGE_SIZE - 1);
+        return (words[bit >> 6] & (1L << bit)) != 0;
+    }
+
+    /**
+     * Falls back to {@link Font#canDisplay(int)} for fonts (or code points)
+     * that are not part of this index.
+     */
+    public boolean canDisplay(Font font, int codePoint) {
+        int fontIndex = getFontIndex(font);
+        if (fontIndex < 0 || codePoint >= numberCodePoints) {
+            return font.canDisplay(codePoint);
+        }
+        return canDisplay(fontIndex, codePoint);
+    }
+
+    /**
+     * Copies the fonts that can display the code point into
+     * <code>dest</code>, in index order.
+     *
+     * @return the number of fonts copied
+     */
+    public int getSupportedFonts(int codePoint, Font[] dest) {
+        int count = 0;
+        for (int ii = 0; ii < fonts.length; ii++) {
+            if (canDisplay(ii, codePoint)) {
+                dest[count++] = fonts[ii];
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the code points the font can display, as a set
+     */
+    public CodePointSet getCoverage(int fontIndex) {
+        CodePointSet set = new CodePointSet();
+        long[] words = set.words();
+        long[][] pages = coverage[fontIndex];
+        for (int page = 0; page < pages.length; page++) {
+            if (pages[page] != null) {
+                System.arraycopy(pages[page], 0,
+                        words, page * WORDS_PER_PAGE, WORDS_PER_PAGE);
+            }
+        }
+        return set;
+    }
+
+    /** Approximate heap retained by the bitmaps, in bytes. */
+    public long getMemoryUsage() {
+        long bytes = 0;
+        for (long[][] pages : coverage) {
+            bytes += 16 + 8L * pages.length;
+            for (long[] words : pages) {
+                if (words != null && words != FULL_PAGE) {
+                    bytes += 16 + 8 * WORDS_PER_PAGE;
+                }
+            }
+        }
+        return bytes;
+    }
+
+    public long getBuildTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(buildTimeNanos);
+    }
+
+    @Override
+    public String toString() {
+        return "FontCoverageIndex fonts: " + fonts.length
+                + " code points: " + numberCodePoints
+                + " memory: " + (getMemoryUsage() / 1024) + "KB"
+                + " build: " + getBuildTimeMillis() + "ms";
+    }
+}
@@ -0,0 +1,236 @@
+package org.pscode.unicodeglyphs;
+
+import java.awt.Font;
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Headless report of how many defined code points of each Unicode block
+ * every font can display.
+ * <p>
+ * Usage:
+ * <pre>
+ * java org.pscode.unicodeglyphs.FontCoverageReport
+ *     [-f csv|json] [-o file] [font family ...]
+ * </pre>
+ * With no families, every installed font is reported. Each font is one
+ * fork-join task, split further over ranges of blocks, and rows are written
+ * in font order as soon as they are complete, so the whole matrix is never
+ * held in memory.
+ */
+public class FontCoverageReport {
+
+    /** Blocks are scanned directly once a task has no more than this many. */
+    private static final int BLOCK_THRESHOLD = 8;
+    private final UnicodeBlocks blocks;
+    private final long[] defined;
+
+    FontCoverageReport(UnicodeBlocks blocks) {
+        this.blocks = blocks;
+        int numberCodePoints = UnicodeExplorer.numberUnicodes;
+        defined = new long[(numberCodePoints + 63) >> 6];
+        for (int codePoint = 0; codePoint < numberCodePoints; codePoint++) {
+            if (Character.isDefined(codePoint)) {
+                defined[codePoint >> 6] |= 1L << codePoint;
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        System.setProperty("java.awt.headless", "true");
+
+        String format = "csv";
+        String out = null;
+        ArrayList<String> families = new ArrayList<String>();
+        for (int ii = 0; ii < args.length; ii++) {
+            if (args[ii].equals("-f")) {
+                format = args[++ii];
+            } else if (args[ii].equals("-o")) {
+                out = args[++ii];
+            } else {
+                families.add(args[ii]);
+            }
+        }
+        Font[] fonts;
+        try {
+            fonts = families.isEmpty()
+                    ? FontCatalog.getFonts()
+                    : FontCatalog.getFonts(
+                    families.toArray(new String[families.size()]));
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+            return;
+        }
+
+        Writer writer = out == null
+                ? new OutputStreamWriter(System.out, "UTF-8")
+                : new OutputStreamWriter(new FileOutputStream(out), "UTF-8");
+        PrintWriter pw = new PrintWriter(new BufferedWriter(writer));
+        long start = System.nanoTime();
+        FontCoverageReport report =
+                new FontCoverageReport(UnicodeBlocks.getInstance());
+        if (format.equals("json")) {
+            report.writeJson(fonts, pw);
+        } else {
+            report.writeCsv(fonts, pw);
+        }
+        pw.flush();
+        if (out != null) {
+            pw.close();
+        }
+        System.err.println(fonts.length + " fonts x " + report.blocks.size()
+                + " blocks in "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+                + "ms");
+    }
+
+    /**
+     * Counts, for each block, the defined code points the font can display.
+     */
+    class FontTask extends RecursiveTask<int[]> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Font font;
+        private final int fromBlock;
+        private final int toBlock;
+
+        FontTask(Font font, int fromBlock, int toBlock) {
+            this.font = font;
+            this.fromBlock = fromBlock;
+            this.toBlock = toBlock;
+        }
+
+        @Override
+        protected int[] compute() {
+            if (toBlock - fromBlock > BLOCK_THRESHOLD) {
+                int mid = (fromBlock + toBlock) >>> 1;
+                FontTask low = new FontTask(font, fromBlock, mid);
+                FontTask high = new FontTask(font, mid, toBlock);
+                low.fork();
+                int[] counts = high.compute();
+                int[] lowCounts = low.join();
+                for (int ii = fromBlock; ii < mid; ii++) {
+                    counts[ii] = lowCounts[ii];
+                }
+                return counts;
+            }
+            int[] counts = new int[blocks.size()];
+            for (int block = fromBlock; block < toBlock; block++) {
+                int end = blocks.getEnd(block);
+                for (int codePoint = blocks.getStart(block);
+                        codePoint < end; codePoint++) {
+                    if ((defined[codePoint >> 6] & (1L << codePoint)) != 0
+                            && font.canDisplay(codePoint)) {
+                        counts[block]++;
+                    }
+                }
+            }
+            return counts;
+        }
+    }
+
+    /**
+     * Forks a task per font up front, so the pool stays busy while the rows
+     * are joined (and written) in order.
+     */
+    private ArrayList<FontTask> forkAll(Font[] fonts) {
+        ArrayList<FontTask> tasks = new ArrayList<FontTask>();
+        for (Font font : fonts) {
+            FontTask task = new FontTask(font, 0, blocks.size());
+            ForkJoinPool.commonPool().execute(task);
+            tasks.add(task);
+        }
+        return tasks;
+    }
+
+    void writeCsv(Font[] fonts, PrintWriter pw) {
+        StringBuilder sb = new StringBuilder("font,total");
+        for (int ii = 0; ii < blocks.size(); ii++) {
+            sb.append(',').append(blocks.getBlock(ii));
+        }
+        pw.println(sb);
+        sb.setLength(0);
+        sb.append("(defined),");
+        int allDefined = 0;
+        for (int ii = 0; ii < blocks.size(); ii++) {
+            allDefined += blocks.getDefinedCount(ii);
+        }
+        sb.append(allDefined);
+        for (int ii = 0; ii < blocks.size(); ii++) {
+            sb.append(',').append(blocks.getDefinedCount(ii));
+        }
+        pw.println(sb);
+
+        ArrayList<FontTask> tasks = forkAll(fonts);
+        for (int ii = 0; ii < fonts.length; ii++) {
+            int[] counts = tasks.get(ii).join();
+            sb.setLength(0);
+            sb.append(csvField(fonts[ii].getName())).append(',')
+                    .append(sum(counts));
+            for (int count : counts) {
+                sb.append(',').append(count);
+            }
+            pw.println(sb);
+            tasks.set(ii, null);
+        }
+    }
+
+    void writeJson(Font[] fonts, PrintWriter pw) {
+        pw.println("{\"blocks\": [");
+        for (int ii = 0; ii < blocks.size(); ii++) {
+            pw.print("  {\"block\": \"" + blocks.getBlock(ii) + "\""
+                    + ", \"start\": " + blocks.getStart(ii)
+                    + ", \"end\": " + (blocks.getEnd(ii) - 1)
+                    + ", \"defined\": " + blocks.getDefinedCount(ii) + "}");
+            pw.println(ii < blocks.size() - 1 ? "," : "");
+        }
+        pw.println("], \"fonts\": [");
+
+        ArrayList<FontTask> tasks = forkAll(fonts);
+        StringBuilder sb = new StringBuilder();
+        for (int ii = 0; ii < fonts.length; ii++) {
+            int[] counts = tasks.get(ii).join();
+            sb.setLength(0);
+            sb.append("  {\"font\": \"")
+                    .append(jsonString(fonts[ii].getName()))
+                    .append("\", \"total\": ").append(sum(counts))
+                    .append(", \"coverage\": {");
+            boolean first = true;
+            for (int block = 0; block < counts.length; block++) {
+                // blocks the font does not touch are left out
+                if (counts[block] > 0) {
+                    sb.append(first ? "" : ", ").append('"')
+                            .append(blocks.getBlock(block)).append("\": ")
+                            .append(counts[block]);
+                    first = false;
+                }
+            }
+            sb.append("}}").append(ii < fonts.length - 1 ? "," : "");
+            pw.println(sb);
+            tasks.set(ii, null);
+        }
+        pw.println("]}");
+    }
+
+    private static int sum(int[] counts) {
+        int total = 0;
+        for (int count : counts) {
+            total += count;
+        }
+        return total;
+    }
+
+    private static String csvField(String s) {
+        if (s.indexOf(',') < 0 && s.indexOf('"') < 0) {
+            return s;
+        }
+        return '"' + s.replace("\"", "\"\"") + '"';
+    }
+
+    private static String jsonString(String s) {
+        return s.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+}
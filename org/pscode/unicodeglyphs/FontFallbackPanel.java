@@ -0,0 +1,202 @@
+package org.pscode.unicodeglyphs;
+
+import java.awt.*;
+import java.awt.event.*;
+import java.io.*;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.logging.*;
+import javax.swing.*;
+
+/**
+ * Takes text (typed, pasted or loaded from a file) and shows the fallback
+ * chain of fonts needed to display it, and the code points no font covers.
+ * Resolving runs in a SwingWorker; starting a new one cancels the last.
+ * <p>
+ * A file is streamed off the EDT, collecting its distinct code points as
+ * it is read, and resolved from those. Only its first
+ * {@link #PREVIEW_CHARS} characters are shown, as a text area lays out all
+ * of its text on the EDT.
+ */
+class FontFallbackPanel extends JPanel {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final int PREVIEW_CHARS = 64 * 1024;
+
+    private final JTextArea text = new JTextArea(6, 30);
+    private final DefaultListModel<FontFallbackResolver.Step> chainModel =
+            new DefaultListModel<FontFallbackResolver.Step>();
+    private final DefaultListModel<Integer> uncoveredModel =
+            new DefaultListModel<Integer>();
+    private final JLabel status = new JLabel(" ");
+    private Font[] fonts = new Font[0];
+    private FontCoverageIndex fontCoverageIndex;
+    private SwingWorker<FontFallbackResolver.Result, Void> worker;
+
+    FontFallbackPanel() {
+        super(new BorderLayout(3, 3));
+
+        text.setLineWrap(true);
+        JButton resolve = new JButton("Resolve");
+        resolve.addActionListener(new ActionListener() {
+
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                resolve(text.getText());
+            }
+        });
+        JButton open = new JButton("Open File...");
+        open.addActionListener(new ActionListener() {
+
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                openFile();
+            }
+        });
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.LEADING));
+        buttons.add(resolve);
+        buttons.add(open);
+        buttons.add(status);
+
+        JPanel input = new JPanel(new BorderLayout(3, 3));
+        input.add(new JScrollPane(text), BorderLayout.CENTER);
+        input.add(buttons, BorderLayout.PAGE_END);
+
+        JList<FontFallbackResolver.Step> chain =
+                new JList<FontFallbackResolver.Step>(chainModel);
+        chain.setVisibleRowCount(5);
+        JList<Integer> uncovered = new JList<Integer>(uncoveredModel);
+        uncovered.setCellRenderer(new CodePointListCellRenderer());
+        uncovered.setVisibleRowCount(5);
+
+        JPanel chainPanel = new JPanel(new BorderLayout());
+        chainPanel.add(new JLabel("Fallback chain"), BorderLayout.PAGE_START);
+        chainPanel.add(new JScrollPane(chain), BorderLayout.CENTER);
+        JPanel uncoveredPanel = new JPanel(new BorderLayout());
+        uncoveredPanel.add(new JLabel("Uncovered"), BorderLayout.PAGE_START);
+        uncoveredPanel.add(new JScrollPane(uncovered), BorderLayout.CENTER);
+        JSplitPane results = new JSplitPane(
+                JSplitPane.HORIZONTAL_SPLIT, chainPanel, uncoveredPanel);
+        results.setResizeWeight(.5d);
+
+        JSplitPane split = new JSplitPane(
+                JSplitPane.HORIZONTAL_SPLIT, input, results);
+        split.setResizeWeight(.5d);
+        add(split, BorderLayout.CENTER);
+    }
+
+    public void setFonts(Font[] fonts, FontCoverageIndex fontCoverageIndex) {
+        this.fonts = fonts;
+        this.fontCoverageIndex = fontCoverageIndex;
+    }
+
+    private void openFile() {
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        final File file = chooser.getSelectedFile();
+        status.setText("Reading " + file.getName() + "...");
+        SwingWorker<int[], Void> reader = new SwingWorker<int[], Void>() {
+
+            private final StringBuilder preview = new StringBuilder();
+            private long length;
+
+            @Override
+            protected int[] doInBackground() throws IOException {
+                FontFallbackResolver.CodePointCollector collector =
+                        new FontFallbackResolver.CodePointCollector();
+                try (Reader in = new InputStreamReader(
+                        new FileInputStream(file), StandardCharsets.UTF_8)) {
+                    char[] buffer = new char[8192];
+                    int n;
+                    while ((n = in.read(buffer)) > 0) {
+                        collector.add(CharBuffer.wrap(buffer, 0, n));
+                        preview.append(buffer, 0, Math.min(
+                                n, PREVIEW_CHARS - preview.length()));
+                        length += n;
+                    }
+                }
+                return collector.toArray();
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    int[] codePoints = get();
+                    text.setText(preview.toString());
+                    text.setCaretPosition(0);
+                    resolve(null, codePoints, length > PREVIEW_CHARS
+                            ? file.getName() + ", first " + PREVIEW_CHARS
+                            + " of " + length + " characters shown"
+                            : file.getName());
+                } catch (Exception e) {
+                    status.setText("Could not read " + file.getName());
+                    Logger.getLogger(FontFallbackPanel.class.getName()).log(
+                            Level.WARNING, "Could not read " + file, e);
+                }
+            }
+        };
+        reader.execute();
+    }
+
+    public void resolve(String s) {
+        resolve(s, null, null);
+    }
+
+    /**
+     * Resolves either the text or, when it is <code>null</code>, the
+     * distinct code points already collected from it.
+     *
+     * @param source what was resolved, for the status, or <code>null</code>
+     */
+    private void resolve(final String s, final int[] codePoints,
+            final String source) {
+        if (worker != null) {
+            worker.cancel(true);
+        }
+        final FontFallbackResolver resolver =
+                new FontFallbackResolver(fonts, fontCoverageIndex);
+        final long start = System.nanoTime();
+        status.setText("Resolving...");
+        worker = new SwingWorker<FontFallbackResolver.Result, Void>() {
+
+            @Override
+            protected FontFallbackResolver.Result doInBackground() {
+                return s != null
+                        ? resolver.resolve(s) : resolver.resolve(codePoints);
+            }
+
+            @Override
+            protected void done() {
+                if (isCancelled()) {
+                    return;
+                }
+                FontFallbackResolver.Result result;
+                try {
+                    result = get();
+                } catch (Exception e) {
+                    status.setText("Not resolved");
+                    Logger.getLogger(FontFallbackPanel.class.getName()).log(
+                            Level.WARNING, "Fallback not resolved", e);
+                    return;
+                }
+                chainModel.clear();
+                for (FontFallbackResolver.Step step : result.chain) {
+                    chainModel.addElement(step);
+                }
+                uncoveredModel.clear();
+                for (int codePoint : result.uncovered) {
+                    uncoveredModel.addElement(codePoint);
+                }
+                status.setText((source == null ? "" : source + ": ")
+                        + result.codePoints.length + " code points, "
+                        + result.chain.size() + " fonts, "
+                        + result.uncovered.length + " uncovered in "
+                        + (System.nanoTime() - start) / 1000000 + "ms");
+            }
+        };
+        worker.execute();
+    }
+}
@@ -0,0 +1,252 @@
+package org.pscode.unicodeglyphs;
+
+import java.awt.Font;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Finds a small set of fonts that together display every code point of a
+ * text. The coverage of each font over the distinct code points is computed
+ * in parallel, then fonts are picked greedily: each step takes the font
+ * covering the most code points not yet covered, earlier fonts winning ties.
+ * Greedy set cover is not always minimal, but it is within a log factor of
+ * it and the chain it gives is ranked by usefulness.
+ */
+class FontFallbackResolver {
+
+    /** Fonts per task, below which coverage is computed directly. */
+    private static final int FONT_THRESHOLD = 16;
+    private final Font[] fonts;
+    private final FontCoverageIndex fontCoverageIndex;
+
+    /**
+     * @param fontCoverageIndex used for the coverage lookups when it covers
+     * the fonts, may be <code>null</code>
+     */
+    FontFallbackResolver(Font[] fonts, FontCoverageIndex fontCoverageIndex) {
+        this.fonts = fonts;
+        this.fontCoverageIndex = fontCoverageIndex;
+    }
+
+    /** One font in the fallback chain. */
+    static class Step {
+
+        final Font font;
+        /** Code points this font adds to those covered by earlier fonts. */
+        final int newlyCovered;
+        /** Code points of the text this font can display on its own. */
+        final int covered;
+
+        Step(Font font, int newlyCovered, int covered) {
+            this.font = font;
+            this.newlyCovered = newlyCovered;
+            this.covered = covered;
+        }
+
+        @Override
+        public String toString() {
+            return font.getName() + " +" + newlyCovered + " (" + covered + ")";
+        }
+    }
+
+    static class Result {
+
+        final int[] codePoints;
+        final List<Step> chain;
+        final int[] uncovered;
+
+        Result(int[] codePoints, List<Step> chain, int[] uncovered) {
+            this.codePoints = codePoints;
+            this.chain = chain;
+            this.uncovered = uncovered;
+        }
+    }
+
+    /**
+     * Collects the distinct code points of a text that arrives in chunks,
+     * as read from a file, without keeping the text. A surrogate pair split
+     * between two chunks counts as the one code point.
+     */
+    static class CodePointCollector {
+
+        private final long[] seen =
+                new long[(UnicodeExplorer.numberUnicodes + 63) >> 6];
+        private int count;
+        /** A high surrogate ending the last chunk, or 0. */
+        private char pending;
+
+        public void add(CharSequence text) {
+            int ii = 0;
+            if (pending != 0 && text.length() > 0) {
+                char low = text.charAt(0);
+                if (Character.isLowSurrogate(low)) {
+                    add(Character.toCodePoint(pending, low));
+                    ii = 1;
+                } else {
+                    add(pending);
+                }
+                pending = 0;
+            }
+            while (ii < text.length()) {
+                char c = text.charAt(ii);
+                if (ii == text.length() - 1 && Character.isHighSurrogate(c)) {
+                    pending = c;
+                    return;
+                }
+                int codePoint = Character.codePointAt(text, ii);
+                ii += Character.charCount(codePoint);
+                add(codePoint);
+            }
+        }
+
+        private void add(int codePoint) {
+            if (Character.isISOControl(codePoint)) {
+                return;
+            }
+            long bit = 1L << codePoint;
+            if ((seen[codePoint >> 6] & bit) == 0) {
+                seen[codePoint >> 6] |= bit;
+                count++;
+            }
+        }
+
+        /**
+         * @return the distinct code points so far in ascending order, not
+         * counting control characters, which no font is expected to draw
+         */
+        public int[] toArray() {
+            if (pending != 0) {
+                add(pending);
+                pending = 0;
+            }
+            int[] codePoints = new int[count];
+            int next = 0;
+            for (int word = 0; word < seen.length; word++) {
+                long bits = seen[word];
+                while (bits != 0) {
+                    codePoints[next++] =
+                            (word << 6) + Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                }
+            }
+            return codePoints;
+        }
+    }
+
+    /**
+     * @return the distinct code points of the text in ascending order, not
+     * counting control characters, which no font is expected to draw
+     */
+    static int[] getDistinctCodePoints(CharSequence text) {
+        CodePointCollector collector = new CodePointCollector();
+        collector.add(text);
+        return collector.toArray();
+    }
+
+    public Result resolve(CharSequence text) {
+        return resolve(getDistinctCodePoints(text));
+    }
+
+    /**
+     * @param codePoints distinct code points, in ascending order
+     */
+    public Result resolve(int[] codePoints) {
+        int words = (codePoints.length + 63) >> 6;
+        long[][] coverage = new long[fonts.length][];
+        ForkJoinPool.commonPool().invoke(
+                new CoverageTask(codePoints, coverage, 0, fonts.length));
+
+        long[] uncovered = new long[words];
+        for (int ii = 0; ii < codePoints.length; ii++) {
+            uncovered[ii >> 6] |= 1L << ii;
+        }
+        ArrayList<Step> chain = new ArrayList<Step>();
+        boolean[] used = new boolean[fonts.length];
+        while (true) {
+            int best = -1;
+            int bestCount = 0;
+            for (int font = 0; font < fonts.length; font++) {
+                if (used[font]) {
+                    continue;
+                }
+                int count = 0;
+                long[] fontCoverage = coverage[font];
+                for (int word = 0; word < words; word++) {
+                    count += Long.bitCount(fontCoverage[word] & uncovered[word]);
+                }
+                if (count > bestCount) {
+                    best = font;
+                    bestCount = count;
+                }
+            }
+            if (best < 0) {
+                break;
+            }
+            used[best] = true;
+            int covered = 0;
+            for (int word = 0; word < words; word++) {
+                covered += Long.bitCount(coverage[best][word]);
+                uncovered[word] &= ~coverage[best][word];
+            }
+            chain.add(new Step(fonts[best], bestCount, covered));
+        }
+
+        IntList missing = new IntList();
+        for (int word = 0; word < words; word++) {
+            long bits = uncovered[word];
+            while (bits != 0) {
+                missing.add(codePoints[
+                        (word << 6) + Long.numberOfTrailingZeros(bits)]);
+                bits &= bits - 1;
+            }
+        }
+        return new Result(codePoints, chain, missing.toArray());
+    }
+
+    /**
+     * Fills in the coverage bitsets (over positions in the code point
+     * array) of a range of fonts.
+     */
+    private class CoverageTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int[] codePoints;
+        private final long[][] coverage;
+        private final int from;
+        private final int to;
+
+        CoverageTask(int[] codePoints, long[][] coverage, int from, int to) {
+            this.codePoints = codePoints;
+            this.coverage = coverage;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > FONT_THRESHOLD) {
+                int mid = (from + to) >>> 1;
+                invokeAll(
+                        new CoverageTask(codePoints, coverage, from, mid),
+                        new CoverageTask(codePoints, coverage, mid, to));
+                return;
+            }
+            for (int font = from; font < to; font++) {
+                long[] bits = new long[(codePoints.length + 63) >> 6];
+                int fontIndex = fontCoverageIndex == null
+                        ? -1 : fontCoverageIndex.getFontIndex(fonts[font]);
+                for (int ii = 0; ii < codePoints.length; ii++) {
+                    boolean canDisplay = fontIndex < 0
+                            ? fonts[font].canDisplay(codePoints[ii])
+                            : fontCoverageIndex.canDisplay(
+                            fontIndex, codePoints[ii]);
+                    if (canDisplay) {
+                        bits[ii >> 6] |= 1L << ii;
+                    }
+                }
+                coverage[font] = bits;
+            }
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package org.pscode.unicodeglyphs;
+
+import java.awt.Font;
+import java.util.Arrays;
+import javax.swing.AbstractListModel;
+
+/**
+ * A list model over an array of fonts that can be swapped in one event,
+ * rather than building a new model for every selection.
+ */
+class FontListModel extends AbstractListModel<Font> {
+
+    private static final long serialVersionUID = 1L;
+
+    private Font[] fonts = new Font[0];
+    private int size;
+
+    public void setFonts(Font[] source, int count) {
+        if (fonts.length < count) {
+            fonts = new Font[Math.max(count, source.length)];
+        }
+        System.arraycopy(source, 0, fonts, 0, count);
+        int oldSize = size;
+        size = count;
+        if (oldSize > count) {
+            Arrays.fill(fonts, count, oldSize, null);
+            fireIntervalRemoved(this, count, oldSize - 1);
+        } else if (count > oldSize) {
+            fireIntervalAdded(this, oldSize, count - 1);
+        }
+        int changed = Math.min(oldSize, count);
+        if (changed > 0) {
+            fireContentsChanged(this, 0, changed - 1);
+        }
+    }
+
+    public void add(Font font) {
+        if (size == fonts.length) {
+            fonts = Arrays.copyOf(fonts, Math.max(16, size * 2));
+        }
+        fonts[size++] = font;
+        fireIntervalAdded(this, size - 1, size - 1);
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    public Font getElementAt(int index) {
+        return fonts[index];
+    }
+}
@@ -0,0 +1,205 @@
+package org.pscode.unicodeglyphs;
+
+import java.awt.*;
+import java.util.logging.*;
+import javax.swing.*;
+import javax.swing.table.*;
+
+/**
+ * Paints each cell from a {@link GlyphCache}, so scrolling does not derive
+ * fonts or lay out text per cell. The tool tip is only built when it is
+ * asked for.
+ */
+class FontTableCellRenderer extends DefaultTableCellRenderer {
+
+    private static final long serialVersionUID = 1L;
+
+    // volatile, as the prefetcher reads them off the EDT
+    private volatile Font displayFont;
+    private volatile Font cellFont;
+    private volatile FontCoverageIndex fontCoverageIndex;
+    private volatile GlyphVerifier glyphVerifier;
+    /** The scale of the screen the table was last painted on. */
+    private volatile double scale = 1;
+    private final GlyphCache glyphCache = new GlyphCache();
+    /** Shades cells by how often a code point occurs in analyzed text. */
+    private TextAnalyzer.Result heatMap;
+    private Color[] heatColors;
+    private int toolTipCodePoint = -1;
+
+    @Override
+    public Component getTableCellRendererComponent(
+            JTable table, Object value,
+            boolean isSelected, boolean hasFocus,
+            int row, int column) {
+        long start = Metrics.start();
+        if (heatMap != null) {
+            // back to the table's background, before the last cell's tint
+            setBackground(null);
+        }
+        Component c = super.getTableCellRendererComponent(
+                table, value, isSelected, hasFocus, row, column);
+
+        if (c instanceof JLabel) {
+            JLabel l = (JLabel) c;
+            int codePoint = value == null
+                    ? ((CodePointTableModel) table.getModel()).getCodePointAt(
+                    table.convertRowIndexToModel(row),
+                    table.convertColumnIndexToModel(column))
+                    : ((Integer) value).intValue();
+            toolTipCodePoint = codePoint;
+            if (heatMap != null && !isSelected && codePoint >= 0) {
+                Color heat = getHeatColor(codePoint);
+                if (heat != null) {
+                    l.setBackground(heat);
+                }
+            }
+            if (codePoint < 0) {
+                l.setIcon(null);
+                l.setText("");
+            } else if (displayFont != null) {
+                Color color = getGlyphColor(codePoint);
+                scale = GlyphCache.getScale(table.getGraphicsConfiguration());
+                l.setText("");
+                l.setIcon(glyphCache.getIcon(
+                        cellFont, codePoint, color, scale));
+            } else {
+                l.setIcon(null);
+                l.setText(UnicodeUtil.getCodePointString(codePoint));
+            }
+        } else {
+            Logger.getLogger(
+                    UnicodeExplorer.class.getName(),
+                    "We are not getting a JLabel as expected!");
+        }
+
+        Metrics.CELL_RENDER.stop(start);
+        return c;
+    }
+
+    /**
+     * The coloring rule for a glyph in the current display font: black when
+     * it can be displayed, red when the font cannot display it (or, once
+     * verified, only draws it as .notdef) and blue when the code point is
+     * not defined at all.
+     */
+    public Color getGlyphColor(int codePoint) {
+        return getGlyphColor(displayFont, codePoint);
+    }
+
+    /**
+     * The coloring rule for a glyph in the given display font, for callers
+     * off the EDT that have taken a snapshot of the font.
+     */
+    public Color getGlyphColor(Font font, int codePoint) {
+        return getGlyphColor(font, codePoint, glyphVerifier, fontCoverageIndex);
+    }
+
+    /**
+     * The coloring rule for a glyph in the given font, for callers without
+     * a table, such as the atlas exporter and the font comparison. The
+     * verifier, then the index, decide whether the font can display the
+     * code point, when given.
+     *
+     * @param verifier the verified glyphs, or <code>null</code>
+     * @param index the claimed glyphs, or <code>null</code>
+     */
+    public static Color getGlyphColor(Font font, int codePoint,
+            GlyphVerifier verifier, FontCoverageIndex index) {
+        boolean isDefined = UnicodeProperties.getInstance().is(
+                codePoint, UnicodeProperties.DEFINED);
+        boolean canDisplay = verifier != null
+                ? verifier.canDisplay(font, codePoint)
+                : index != null
+                ? index.canDisplay(font, codePoint)
+                : font.canDisplay(codePoint);
+        return getGlyphColor(isDefined, canDisplay);
+    }
+
+    public static Color getGlyphColor(boolean isDefined, boolean canDisplay) {
+        if (!isDefined) {
+            return Color.BLUE;
+        }
+        if (!canDisplay) {
+            return Color.RED;
+        }
+        return Color.BLACK;
+    }
+
+    @Override
+    public String getToolTipText() {
+        if (displayFont == null || toolTipCodePoint < 0) {
+            return null;
+        }
+        return "<html><body style='font-size: 64px; "
+                + "font-family: "
+                + displayFont.getFamily()
+                + ";'>&#" + toolTipCodePoint
+                + " " + UnicodeDatabase.nameOf(toolTipCodePoint);
+    }
+
+    public void setDisplayFont(Font font) {
+        displayFont = font;
+        cellFont = font.deriveFont((float) (font.getSize() * .8));
+        glyphCache.logStatistics();
+    }
+
+    public Font getDisplayFont() {
+        return displayFont;
+    }
+
+    public Font getCellFont() {
+        return cellFont;
+    }
+
+    public GlyphCache getGlyphCache() {
+        return glyphCache;
+    }
+
+    /** @return the scale glyphs are rasterized at, for prefetching */
+    public double getScale() {
+        return scale;
+    }
+
+    public void setFontCoverageIndex(FontCoverageIndex index) {
+        fontCoverageIndex = index;
+    }
+
+    public void setGlyphVerifier(GlyphVerifier verifier) {
+        glyphVerifier = verifier;
+    }
+
+    /**
+     * @param heatMap the analysis to shade cells by, or <code>null</code>
+     * for none
+     */
+    public void setHeatMap(TextAnalyzer.Result heatMap) {
+        this.heatMap = heatMap;
+        if (heatMap == null) {
+            setBackground(null);
+        }
+    }
+
+    /**
+     * The tint for a code point of the heat map, on a log scale from the
+     * rarest to the most frequent code point, or <code>null</code> for one
+     * the text does not use.
+     */
+    private Color getHeatColor(int codePoint) {
+        long count = heatMap.getCount(codePoint);
+        if (count == 0) {
+            return null;
+        }
+        if (heatColors == null) {
+            heatColors = new Color[32];
+            for (int ii = 0; ii < heatColors.length; ii++) {
+                float heat = (ii + 1f) / heatColors.length;
+                heatColors[ii] = new Color(255,
+                        (int) (240 - 140 * heat), (int) (200 - 200 * heat));
+            }
+        }
+        double max = Math.log(heatMap.getMaxCount() + 1);
+        int level = (int) (Math.log(count + 1) / max * (heatColors.length - 1));
+        return heatColors[Math.min(level, heatColors.length - 1)];
+    }
+}
@@ -0,0 +1,277 @@
+package org.pscode.unicodeglyphs;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import javax.imageio.ImageIO;
+import javax.imageio.stream.*;
+
+/**
+ * Headless export of glyphs as tiled PNG atlases, for reference images
+ * that do not depend on screenshots of the table.
+ * <p>
+ * Usage:
+ * <pre>
+ * java org.pscode.unicodeglyphs.GlyphAtlasExporter
+ *     [-o dir] [-s cellSize] [-c columns] [-r rows]
+ *     [-from hex] [-to hex] [-undefined] [font family ...]
+ * </pre>
+ * The code points of <code>[from, to)</code> (default the whole range),
+ * only the defined ones unless <code>-undefined</code> is given, are laid
+ * out in order into tiles of columns x rows cells (default 64 x 64 cells of
+ * 32 pixels). With no families, every installed font is exported.
+ * <p>
+ * Glyphs are drawn as the code point table draws them: in the font at 80%
+ * of the cell size, vertically centered in the cell and colored by
+ * {@link FontTableCellRenderer#getGlyphColor(Font, int, GlyphVerifier,
+ * FontCoverageIndex)}, with the fonts verified first as the table does.
+ * For each font, <code>FONT-N.png</code> holds tile N and
+ * <code>FONT.json</code> the tile of every glyph and the box it was drawn
+ * in, in tile pixels. Tiles are rasterized in parallel and each is written
+ * as soon as it is drawn, with a bounded number in flight, so memory does
+ * not grow with the range.
+ */
+public class GlyphAtlasExporter {
+
+    private final File directory;
+    private final int cellSize;
+    private final int columns;
+    private final int rows;
+    private final ExecutorService executor;
+    private final GlyphVerifier verifier;
+    /** Tiles drawn or being written at once, beyond those being indexed. */
+    private final int window;
+
+    GlyphAtlasExporter(File directory, int cellSize, int columns, int rows,
+            GlyphVerifier verifier) {
+        this.directory = directory;
+        this.cellSize = cellSize;
+        this.columns = columns;
+        this.rows = rows;
+        this.verifier = verifier;
+        int threads = Runtime.getRuntime().availableProcessors();
+        executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "Atlas tile");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        window = 2 * threads;
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+
+        File directory = new File("atlas");
+        int cellSize = 32;
+        int columns = 64;
+        int rows = 64;
+        int from = 0;
+        int to = UnicodeExplorer.numberUnicodes;
+        boolean undefined = false;
+        ArrayList<String> families = new ArrayList<String>();
+        for (int ii = 0; ii < args.length; ii++) {
+            String arg = args[ii];
+            if (arg.equals("-o")) {
+                directory = new File(args[++ii]);
+            } else if (arg.equals("-s")) {
+                cellSize = Integer.parseInt(args[++ii]);
+            } else if (arg.equals("-c")) {
+                columns = Integer.parseInt(args[++ii]);
+            } else if (arg.equals("-r")) {
+                rows = Integer.parseInt(args[++ii]);
+            } else if (arg.equals("-from")) {
+                from = Integer.parseInt(args[++ii], 16);
+            } else if (arg.equals("-to")) {
+                to = Integer.parseInt(args[++ii], 16);
+            } else if (arg.equals("-undefined")) {
+                undefined = true;
+            } else {
+                families.add(arg);
+            }
+        }
+        Font[] fonts;
+        try {
+            fonts = families.isEmpty()
+                    ? FontCatalog.getFonts()
+                    : FontCatalog.getFonts(
+                    families.toArray(new String[families.size()]));
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+            return;
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+
+        UnicodeProperties.getInstance().build();
+        int[] codePoints = undefined
+                ? CodePointSet.range(from, to).toArray()
+                : UnicodeProperties.getInstance().find(from, to,
+                UnicodeProperties.DEFINED, UnicodeProperties.DEFINED);
+        GlyphVerifier verifier = GlyphVerifier.build(FontCoverageIndex.build(
+                fonts, UnicodeExplorer.numberUnicodes));
+        GlyphAtlasExporter exporter = new GlyphAtlasExporter(
+                directory, cellSize, columns, rows, verifier);
+        for (Font font : fonts) {
+            long start = System.nanoTime();
+            int tiles = exporter.export(font, codePoints);
+            System.err.println(font.getName() + ": " + codePoints.length
+                    + " glyphs, " + tiles + " tiles in "
+                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+                    + "ms");
+        }
+    }
+
+    /**
+     * Draws one tile and writes it, returning the glyph boxes for the
+     * index: width and height for each cell, in cell order.
+     */
+    class TileTask implements Callable<int[]> {
+
+        private final Font cellFont;
+        private final int[] codePoints;
+        private final int first;
+        private final int count;
+        private final File file;
+
+        TileTask(Font cellFont, int[] codePoints, int first, int count,
+                File file) {
+            this.cellFont = cellFont;
+            this.codePoints = codePoints;
+            this.first = first;
+            this.count = count;
+            this.file = file;
+        }
+
+        @Override
+        public int[] call() throws IOException {
+            int tileRows = (count + columns - 1) / columns;
+            BufferedImage image = new BufferedImage(
+                    columns * cellSize, tileRows * cellSize,
+                    BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = image.createGraphics();
+            int[] boxes = new int[2 * count];
+            for (int ii = 0; ii < count; ii++) {
+                int codePoint = codePoints[first + ii];
+                Color color = FontTableCellRenderer.getGlyphColor(
+                        cellFont, codePoint, verifier,
+                        verifier.getCoverageIndex());
+                GlyphCache.GlyphLayout layout =
+                        new GlyphCache.GlyphLayout(cellFont, codePoint);
+                int x = (ii % columns) * cellSize;
+                int y = (ii / columns) * cellSize;
+                int width = Math.min(layout.width, cellSize);
+                int height = Math.min(layout.height, cellSize);
+                // clipped to the cell, as in a label
+                g.setClip(x, y, cellSize, cellSize);
+                layout.draw(g, color, x, getGlyphTop(y, height));
+                boxes[2 * ii] = width;
+                boxes[2 * ii + 1] = height;
+            }
+            g.dispose();
+            // ImageIO.write to a File goes through an unbuffered random
+            // access file, which costs more than the compression here
+            try (OutputStream out = new BufferedOutputStream(
+                    new FileOutputStream(file), 1 << 16);
+                    ImageOutputStream ios = new MemoryCacheImageOutputStream(out)) {
+                ImageIO.write(image, "png", ios);
+            }
+            return boxes;
+        }
+    }
+
+    /**
+     * Exports the code points in the font, streaming the index as the
+     * tiles complete in order.
+     *
+     * @return the number of tiles
+     */
+    int export(Font font, int[] codePoints) throws Exception {
+        Font cellFont = font.deriveFont((float) (cellSize * .8));
+        String name = font.getName().replaceAll("[^A-Za-z0-9._-]", "_");
+        int perTile = columns * rows;
+        int tiles = (codePoints.length + perTile - 1) / perTile;
+
+        Writer writer = new OutputStreamWriter(
+                new FileOutputStream(new File(directory, name + ".json")),
+                "UTF-8");
+        PrintWriter pw = new PrintWriter(new BufferedWriter(writer));
+        try {
+            pw.println("{\"font\": \"" + jsonString(font.getName()) + "\""
+                    + ", \"size\": " + cellFont.getSize2D()
+                    + ", \"cell\": " + cellSize
+                    + ", \"columns\": " + columns
+                    + ", \"rows\": " + rows + ",");
+            pw.println("\"tiles\": [");
+            for (int tile = 0; tile < tiles; tile++) {
+                pw.println("  \"" + getTileName(name, tile) + "\""
+                        + (tile < tiles - 1 ? "," : ""));
+            }
+            pw.println("], \"glyphs\": [");
+
+            ArrayDeque<Future<int[]>> inFlight = new ArrayDeque<Future<int[]>>();
+            int indexed = 0;
+            for (int tile = 0; tile < tiles; tile++) {
+                if (inFlight.size() == window) {
+                    writeIndex(inFlight.poll().get(), codePoints,
+                            indexed++, tiles, pw);
+                }
+                int first = tile * perTile;
+                inFlight.add(executor.submit(new TileTask(
+                        cellFont, codePoints, first,
+                        Math.min(perTile, codePoints.length - first),
+                        new File(directory, getTileName(name, tile)))));
+            }
+            while (!inFlight.isEmpty()) {
+                writeIndex(inFlight.poll().get(), codePoints,
+                        indexed++, tiles, pw);
+            }
+            pw.println("]}");
+        } finally {
+            pw.close();
+        }
+        return tiles;
+    }
+
+    /**
+     * @return the top of a glyph box of the given height, vertically
+     * centered in the cell at <code>cellTop</code>
+     */
+    private int getGlyphTop(int cellTop, int height) {
+        return cellTop + (cellSize - height) / 2;
+    }
+
+    private static String getTileName(String name, int tile) {
+        return String.format(Locale.ROOT, "%s-%04d.png", name, tile);
+    }
+
+    private void writeIndex(int[] boxes, int[] codePoints, int tile,
+            int tiles, PrintWriter pw) {
+        int first = tile * columns * rows;
+        StringBuilder sb = new StringBuilder();
+        for (int ii = 0; ii < boxes.length / 2; ii++) {
+            sb.setLength(0);
+            sb.append("  {\"codePoint\": ").append(codePoints[first + ii])
+                    .append(", \"tile\": ").append(tile)
+                    .append(", \"x\": ").append((ii % columns) * cellSize)
+                    .append(", \"y\": ").append(getGlyphTop(
+                            (ii / columns) * cellSize, boxes[2 * ii + 1]))
+                    .append(", \"width\": ").append(boxes[2 * ii])
+                    .append(", \"height\": ").append(boxes[2 * ii + 1])
+                    .append('}');
+            boolean last = tile == tiles - 1 && ii == boxes.length / 2 - 1;
+            pw.println(last ? sb : sb.append(','));
+        }
+    }
+
+    private static String jsonString(String s) {
+        return s.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+}
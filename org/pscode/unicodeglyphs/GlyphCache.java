@@ -0,0 +1,294 @@
+package org.pscode.unicodeglyphs;
+
+import java.awt.*;
+import java.awt.font.*;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.*;
+import java.util.logging.*;
+import javax.swing.Icon;
+
+/**
+ * A bounded cache of pre-rasterized glyphs, keyed by font (which includes
+ * its size) and code point. The least recently used glyphs are evicted once
+ * the images exceed the memory budget.
+ * <p>
+ * The budget defaults to 32MB and can be set in KB with the
+ * <code>uglys.glyphCacheKB</code> system property. The cache is thread safe,
+ * so glyphs can be rasterized ahead of time off the EDT, and rasterizes
+ * outside its lock, so a lookup never waits for another thread's glyph.
+ * <p>
+ * Glyphs are rasterized at the scale of the screen they are shown on, so
+ * they stay sharp on HiDPI screens, and are painted back at their size in
+ * user space. A glyph asked for at another scale (the window moved to
+ * another screen) is rasterized again, as for another color.
+ */
+class GlyphCache {
+
+    public static final int DEFAULT_BUDGET_KB =
+            Integer.getInteger("uglys.glyphCacheKB", 32 * 1024);
+    private static final FontRenderContext RENDER_CONTEXT =
+            new FontRenderContext(null, true, true);
+    private final long budgetBytes;
+    private final HashMap<Font, Integer> fontIds = new HashMap<Font, Integer>();
+    private final LinkedHashMap<Long, Glyph> glyphs =
+            new LinkedHashMap<Long, Glyph>(1024, .75f, true);
+    private long usedBytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long prefetches;
+
+    GlyphCache() {
+        this(DEFAULT_BUDGET_KB * 1024L);
+    }
+
+    GlyphCache(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+    }
+
+    /**
+     * @param scale the scale of the device the glyph is painted on, as
+     * given by {@link #getScale(GraphicsConfiguration)}
+     * @return the glyph drawn in the given color, rasterizing it on a miss
+     */
+    public Icon getIcon(Font font, int codePoint, Color color, double scale) {
+        synchronized (this) {
+            Glyph glyph = glyphs.get(getKey(font, codePoint));
+            if (glyph != null && glyph.matches(color, scale)) {
+                hits++;
+                return glyph;
+            }
+            misses++;
+        }
+        // outside the lock, so a prefetching thread never holds up the EDT
+        Glyph glyph = new Glyph(font, codePoint, color, scale);
+        synchronized (this) {
+            put(getKey(font, codePoint), glyph);
+        }
+        return glyph;
+    }
+
+    /**
+     * Rasterizes the glyph ahead of time, unless it is already cached in
+     * the given color and scale. Prefetched glyphs are not counted as
+     * lookups.
+     *
+     * @return whether the glyph was rasterized
+     */
+    public boolean prefetch(Font font, int codePoint, Color color,
+            double scale) {
+        if (contains(font, codePoint, color, scale)) {
+            return false;
+        }
+        Glyph glyph = new Glyph(font, codePoint, color, scale);
+        synchronized (this) {
+            put(getKey(font, codePoint), glyph);
+            prefetches++;
+        }
+        return true;
+    }
+
+    /**
+     * @return whether the glyph is already cached in the given color and
+     * scale
+     */
+    public synchronized boolean contains(Font font, int codePoint, Color color,
+            double scale) {
+        Glyph glyph = glyphs.get(getKey(font, codePoint));
+        return glyph != null && glyph.matches(color, scale);
+    }
+
+    /**
+     * @return the scale from user space to device pixels of the screen, 1
+     * when it is not known yet
+     */
+    public static double getScale(GraphicsConfiguration configuration) {
+        if (configuration == null) {
+            return 1;
+        }
+        return configuration.getDefaultTransform().getScaleX();
+    }
+
+    private Long getKey(Font font, int codePoint) {
+        Integer fontId = fontIds.get(font);
+        if (fontId == null) {
+            fontId = fontIds.size();
+            fontIds.put(font, fontId);
+        }
+        return ((long) fontId << 32) | codePoint;
+    }
+
+    private void put(Long key, Glyph glyph) {
+        Glyph old = glyphs.put(key, glyph);
+        if (old != null) {
+            usedBytes -= old.bytes;
+        }
+        usedBytes += glyph.bytes;
+        Iterator<Glyph> it = glyphs.values().iterator();
+        while (usedBytes > budgetBytes && it.hasNext()) {
+            Glyph eldest = it.next();
+            if (eldest == glyph) {
+                break;
+            }
+            usedBytes -= eldest.bytes;
+            it.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Draws a single code point into an image just big enough for its
+     * advance and any ink outside it, in device pixels at the given scale.
+     */
+    static BufferedImage rasterize(GlyphLayout layout, Color color,
+            double scale) {
+        BufferedImage image = new BufferedImage(
+                (int) Math.ceil(layout.width * scale),
+                (int) Math.ceil(layout.height * scale),
+                BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        g.scale(scale, scale);
+        layout.draw(g, color, 0, 0);
+        g.dispose();
+        return image;
+    }
+
+    /**
+     * A code point laid out in a font: the box covering its advance and any
+     * ink outside it, which is what
+     * {@link #rasterize(GlyphLayout, Color, double)} makes an image of.
+     * Exporters draw it straight into larger images.
+     */
+    static class GlyphLayout {
+
+        final int width;
+        final int height;
+        private final Font font;
+        private final String s;
+        private final float ascent;
+        private final int left;
+
+        GlyphLayout(Font font, int codePoint) {
+            this.font = font;
+            s = UnicodeUtil.getCodePointString(codePoint);
+            GlyphVector gv = font.createGlyphVector(RENDER_CONTEXT, s);
+            LineMetrics lm = font.getLineMetrics(s, RENDER_CONTEXT);
+            ascent = lm.getAscent();
+            Rectangle2D logical = gv.getLogicalBounds();
+            Rectangle ink = gv.getPixelBounds(RENDER_CONTEXT, 0, ascent);
+            left = Math.min(0, ink.x);
+            int right = Math.max(
+                    (int) Math.ceil(logical.getWidth()), ink.x + ink.width);
+            width = Math.max(1, right - left);
+            height = Math.max(1, Math.max(
+                    (int) Math.ceil(ascent + lm.getDescent()),
+                    ink.y + ink.height));
+        }
+
+        /**
+         * Draws the glyph with the top left of its box at (x, y), laid out
+         * for the transform of the graphics so it is hinted at the pixel
+         * size it is drawn at.
+         */
+        void draw(Graphics2D g, Color color, int x, int y) {
+            g.setRenderingHint(
+                    RenderingHints.KEY_TEXT_ANTIALIASING,
+                    RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            g.setRenderingHint(
+                    RenderingHints.KEY_FRACTIONALMETRICS,
+                    RenderingHints.VALUE_FRACTIONALMETRICS_ON);
+            g.setColor(color);
+            g.drawGlyphVector(font.createGlyphVector(
+                    g.getFontRenderContext(), s), x - left, y + ascent);
+        }
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized long getPrefetches() {
+        return prefetches;
+    }
+
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    public synchronized void clear() {
+        glyphs.clear();
+        fontIds.clear();
+        usedBytes = 0;
+    }
+
+    public void logStatistics() {
+        Logger.getLogger(GlyphCache.class.getName()).log(
+                Level.INFO, toString());
+    }
+
+    @Override
+    public synchronized String toString() {
+        long lookups = hits + misses;
+        return "GlyphCache glyphs: " + glyphs.size()
+                + " used: " + (usedBytes / 1024) + "KB"
+                + " of " + (budgetBytes / 1024) + "KB"
+                + " hits: " + hits
+                + " misses: " + misses
+                + " evictions: " + evictions
+                + " prefetched: " + prefetches
+                + " hit rate: " + (lookups == 0 ? 0 : (100 * hits / lookups))
+                + "%";
+    }
+
+    /**
+     * A rasterized glyph, painted at its size in user space so that on a
+     * scaled screen each image pixel lands on one device pixel.
+     */
+    private static class Glyph implements Icon {
+
+        final BufferedImage image;
+        final int width;
+        final int height;
+        final int rgb;
+        final double scale;
+        final int bytes;
+
+        Glyph(Font font, int codePoint, Color color, double scale) {
+            GlyphLayout layout = new GlyphLayout(font, codePoint);
+            image = rasterize(layout, color, scale);
+            width = layout.width;
+            height = layout.height;
+            rgb = color.getRGB();
+            this.scale = scale;
+            bytes = 64 + image.getWidth() * image.getHeight() * 4;
+        }
+
+        boolean matches(Color color, double scale) {
+            return rgb == color.getRGB() && this.scale == scale;
+        }
+
+        @Override
+        public void paintIcon(Component c, Graphics g, int x, int y) {
+            g.drawImage(image, x, y, width, height, null);
+        }
+
+        @Override
+        public int getIconWidth() {
+            return width;
+        }
+
+        @Override
+        public int getIconHeight() {
+            return height;
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package org.pscode.unicodeglyphs;
+
+import java.awt.*;
+import java.util.*;
+import java.util.concurrent.*;
+import javax.swing.*;
+import javax.swing.event.*;
+
+/**
+ * Rasterizes the rows of a code point table just outside its viewport into
+ * the renderer's {@link GlyphCache}, so rows scrolling into view are
+ * painted from the cache instead of laid out on the EDT.
+ * <p>
+ * Each viewport change updates the scroll velocity, in rows per second,
+ * and the rows to prefetch are a screen ahead plus those the viewport will
+ * reach within {@link #LOOKAHEAD_MILLIS} at that speed, nearest first,
+ * with half a screen behind. A jump (e.g. from the page spinner) resets
+ * the velocity, so the rows around the new position are prefetched evenly.
+ * <p>
+ * Rows are drawn by a small pool, one task per row. Rows that leave the
+ * window are cancelled and purged from the queue, and a task still running
+ * for a font or view that has been replaced stops before its next glyph.
+ * Setting the <code>uglys.prefetch</code> system property to false turns
+ * prefetching off, to compare frame times
+ * ({@link Metrics#TABLE_FRAME}) with and without it.
+ */
+class GlyphPrefetcher implements ChangeListener, TableModelListener {
+
+    public static final boolean ENABLED =
+            !"false".equals(System.getProperty("uglys.prefetch"));
+    /** How far ahead of a scroll the rows are ready. */
+    static final long LOOKAHEAD_MILLIS = 250;
+    /** The most rows prefetched ahead, as multiples of the visible rows. */
+    static final int MAX_AHEAD_SCREENS = 4;
+    /** Weight of the latest scroll step in the velocity estimate. */
+    static final double SMOOTHING = .5;
+    private final JTable table;
+    private final FontTableCellRenderer renderer;
+    private final ThreadPoolExecutor executor;
+    private final HashMap<Integer, Future<?>> scheduled =
+            new HashMap<Integer, Future<?>>();
+    private JViewport viewport;
+    /** Bumped when the font or view changes, stopping running tasks. */
+    private volatile int generation;
+    private int lastFirstRow = -1;
+    private long lastChangeNanos;
+    private double rowsPerSecond;
+
+    GlyphPrefetcher(JTable table, FontTableCellRenderer renderer) {
+        this.table = table;
+        this.renderer = renderer;
+        int threads = Math.max(
+                1, Runtime.getRuntime().availableProcessors() / 2);
+        executor = new ThreadPoolExecutor(
+                threads, threads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, "Glyph prefetch");
+                        t.setDaemon(true);
+                        t.setPriority(Thread.MIN_PRIORITY);
+                        return t;
+                    }
+                });
+    }
+
+    /** Starts following the viewport, unless prefetching is off. */
+    public void install(JViewport viewport) {
+        if (!ENABLED) {
+            return;
+        }
+        this.viewport = viewport;
+        viewport.addChangeListener(this);
+        table.getModel().addTableModelListener(this);
+    }
+
+    @Override
+    public void stateChanged(ChangeEvent e) {
+        update();
+    }
+
+    @Override
+    public void tableChanged(TableModelEvent e) {
+        invalidate();
+    }
+
+    /**
+     * Drops everything scheduled and prefetches again, for when the font
+     * or the code points shown change.
+     */
+    public void invalidate() {
+        if (viewport == null) {
+            return;
+        }
+        generation++;
+        for (Future<?> future : scheduled.values()) {
+            future.cancel(false);
+        }
+        scheduled.clear();
+        executor.purge();
+        lastFirstRow = -1;
+        update();
+    }
+
+    /** Re-plans the prefetch window from the viewport. Runs on the EDT. */
+    void update() {
+        Rectangle visible = viewport.getViewRect();
+        int rowCount = table.getRowCount();
+        if (rowCount == 0 || visible.height == 0) {
+            return;
+        }
+        int first = rowAt(visible.y, rowCount);
+        int last = rowAt(visible.y + visible.height - 1, rowCount);
+        int visibleRows = last - first + 1;
+
+        long now = System.nanoTime();
+        if (lastFirstRow >= 0 && now > lastChangeNanos) {
+            int step = first - lastFirstRow;
+            if (Math.abs(step) > 2 * visibleRows) {
+                // a jump, not a scroll
+                rowsPerSecond = 0;
+            } else {
+                double rate = step * 1e9 / (now - lastChangeNanos);
+                rowsPerSecond = SMOOTHING * rate
+                        + (1 - SMOOTHING) * rowsPerSecond;
+            }
+        }
+        lastFirstRow = first;
+        lastChangeNanos = now;
+
+        int ahead = (int) Math.min(MAX_AHEAD_SCREENS * visibleRows,
+                visibleRows + Math.abs(rowsPerSecond) * LOOKAHEAD_MILLIS / 1000);
+        int behind = visibleRows / 2;
+        int from;
+        int to;
+        if (rowsPerSecond > 0) {
+            from = first - behind;
+            to = last + ahead;
+        } else if (rowsPerSecond < 0) {
+            from = first - ahead;
+            to = last + behind;
+        } else {
+            from = first - visibleRows;
+            to = last + visibleRows;
+        }
+        from = Math.max(0, from);
+        to = Math.min(rowCount - 1, to);
+        schedule(from, to, first, last, rowsPerSecond < 0);
+    }
+
+    private int rowAt(int y, int rowCount) {
+        int row = table.rowAtPoint(new Point(0, y));
+        return row < 0 ? rowCount - 1 : row;
+    }
+
+    /**
+     * Cancels the rows outside <code>[from, to]</code> and schedules the
+     * others outwards from the visible rows, ahead of the scroll first. The
+     * visible rows are being painted already.
+     */
+    private void schedule(int from, int to, int first, int last,
+            boolean up) {
+        boolean cancelled = false;
+        Iterator<Map.Entry<Integer, Future<?>>> it =
+                scheduled.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Integer, Future<?>> entry = it.next();
+            int row = entry.getKey();
+            if (row < from || row > to) {
+                cancelled |= entry.getValue().cancel(false);
+                it.remove();
+            }
+        }
+        if (cancelled) {
+            executor.purge();
+        }
+
+        Font displayFont = renderer.getDisplayFont();
+        Font cellFont = renderer.getCellFont();
+        if (displayFont == null) {
+            return;
+        }
+        int behindStart = up ? last + 1 : first - 1;
+        int aheadStart = up ? first - 1 : last + 1;
+        int direction = up ? -1 : 1;
+        for (int row = aheadStart; row >= from && row <= to; row += direction) {
+            submit(row, displayFont, cellFont);
+        }
+        for (int row = behindStart; row >= from && row <= to; row -= direction) {
+            submit(row, displayFont, cellFont);
+        }
+    }
+
+    private void submit(int row, Font displayFont, Font cellFont) {
+        if (scheduled.containsKey(row)) {
+            return;
+        }
+        CodePointTableModel model = (CodePointTableModel) table.getModel();
+        int[] codePoints = new int[model.getColumnCount()];
+        for (int col = 0; col < codePoints.length; col++) {
+            codePoints[col] = model.getCodePointAt(row, col);
+        }
+        scheduled.put(row, executor.submit(new RowTask(
+                codePoints, displayFont, cellFont, generation)));
+    }
+
+    /** Warms the cache with one row of glyphs, as the renderer colors them. */
+    private class RowTask implements Runnable {
+
+        private final int[] codePoints;
+        private final Font displayFont;
+        private final Font cellFont;
+        private final int taskGeneration;
+
+        RowTask(int[] codePoints, Font displayFont, Font cellFont,
+                int taskGeneration) {
+            this.codePoints = codePoints;
+            this.displayFont = displayFont;
+            this.cellFont = cellFont;
+            this.taskGeneration = taskGeneration;
+        }
+
+        @Override
+        public void run() {
+            GlyphCache cache = renderer.getGlyphCache();
+            double scale = renderer.getScale();
+            for (int codePoint : codePoints) {
+                if (taskGeneration != generation) {
+                    return;
+                }
+                if (codePoint >= 0) {
+                    cache.prefetch(cellFont, codePoint,
+                            renderer.getGlyphColor(displayFont, codePoint),
+                            scale);
+                }
+            }
+        }
+    }
+}
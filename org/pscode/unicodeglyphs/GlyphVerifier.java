@@ -0,0 +1,357 @@
+package org.pscode.unicodeglyphs;
+
+import java.awt.*;
+import java.awt.font.*;
+import java.awt.image.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.*;
+
+/**
+ * Checks what {@link Font#canDisplay(int)} claims by drawing the glyphs.
+ * A font's character map can send a code point to a glyph that is only
+ * its .notdef box, or to an empty glyph, and canDisplay still says yes.
+ * Each claimed glyph is drawn off-screen at {@link #RASTER_SIZE} pixels
+ * and reduced to a 64 bit hash, which is compared to the hash of the
+ * font's missing glyph. A code point is rejected when its glyph draws the
+ * same as .notdef, or draws nothing although the code point should have
+ * ink (i.e. is not a space, control, format character or filler).
+ * <p>
+ * Hashes are kept per font by glyph code while it is scanned, so code
+ * points sharing a glyph are drawn once, and dropped when the scan ends;
+ * only the rejected code points of each font are kept, as a sorted array
+ * (most fonts have none). Fonts that are not in the coverage index are
+ * verified lazily, a code point at a time, and keep their hashes.
+ */
+class GlyphVerifier {
+
+    static final int RASTER_SIZE = 16;
+    private static final FontRenderContext RENDER_CONTEXT =
+            new FontRenderContext(null, false, false);
+    private static final int[] NONE = new int[0];
+    private final FontCoverageIndex coverage;
+    private final int[][] rejected;
+    /** The hashes of fonts not in the index, verified lazily. */
+    private final ConcurrentHashMap<String, GlyphHashes> hashes =
+            new ConcurrentHashMap<String, GlyphHashes>();
+    /** The glyphs drawn by the scans of indexed fonts. */
+    private final AtomicLong glyphsDrawn = new AtomicLong();
+    private long buildTimeNanos;
+
+    private GlyphVerifier(FontCoverageIndex coverage) {
+        this.coverage = coverage;
+        rejected = new int[coverage.getFonts().length][];
+    }
+
+    /**
+     * Verifies every code point that a font of the index claims to
+     * display, one task per font spread over the available processors.
+     * Intended to be called off the EDT.
+     */
+    public static GlyphVerifier build(FontCoverageIndex coverage) {
+        long start = System.nanoTime();
+        final GlyphVerifier verifier = new GlyphVerifier(coverage);
+        final Font[] fonts = coverage.getFonts();
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Runtime.getRuntime().availableProcessors());
+        try {
+            ArrayList<Future<?>> futures = new ArrayList<Future<?>>();
+            for (int ii = 0; ii < fonts.length; ii++) {
+                final int fontIndex = ii;
+                futures.add(executor.submit(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        verifier.rejected[fontIndex] =
+                                verifier.scanFont(fontIndex);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Glyph verification interrupted");
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+        verifier.buildTimeNanos = System.nanoTime() - start;
+
+        Logger.getLogger(GlyphVerifier.class.getName()).log(
+                Level.INFO, verifier.toString());
+        return verifier;
+    }
+
+    private int[] scanFont(int fontIndex) {
+        GlyphHashes glyphHashes =
+                new GlyphHashes(coverage.getFonts()[fontIndex]);
+        try {
+            int[] claimed = coverage.getCoverage(fontIndex).toArray();
+            IntList found = new IntList();
+            for (int codePoint : claimed) {
+                if (!glyphHashes.verify(codePoint)) {
+                    found.add(codePoint);
+                }
+            }
+            return found.size() == 0 ? NONE : found.toArray();
+        } finally {
+            glyphsDrawn.addAndGet(glyphHashes.size());
+            glyphHashes.dispose();
+        }
+    }
+
+    private GlyphHashes getHashes(Font font) {
+        GlyphHashes glyphHashes = hashes.get(font.getName());
+        if (glyphHashes == null) {
+            glyphHashes = new GlyphHashes(font);
+            GlyphHashes other = hashes.putIfAbsent(font.getName(), glyphHashes);
+            if (other != null) {
+                glyphHashes = other;
+            }
+        }
+        return glyphHashes;
+    }
+
+    public FontCoverageIndex getCoverageIndex() {
+        return coverage;
+    }
+
+    /**
+     * @return whether the font claims the code point and draws it
+     */
+    public boolean isVerified(int fontIndex, int codePoint) {
+        return coverage.canDisplay(fontIndex, codePoint)
+                && Arrays.binarySearch(rejected[fontIndex], codePoint) < 0;
+    }
+
+    /**
+     * Verifies fonts (or code points) that are not part of the index when
+     * first asked.
+     */
+    public boolean canDisplay(Font font, int codePoint) {
+        int fontIndex = coverage.getFontIndex(font);
+        if (fontIndex < 0 || codePoint >= UnicodeExplorer.numberUnicodes) {
+            return font.canDisplay(codePoint)
+                    && getHashes(font).verify(codePoint);
+        }
+        return isVerified(fontIndex, codePoint);
+    }
+
+    /**
+     * Moves the fonts that draw the code point to the front of
+     * <code>fonts</code>, keeping the order within verified and rejected
+     * fonts.
+     *
+     * @return the number of verified fonts
+     */
+    public int sortVerifiedFirst(int codePoint, Font[] fonts, int count) {
+        Font[] rejectedFonts = new Font[count];
+        int verified = 0;
+        int rejectedCount = 0;
+        for (int ii = 0; ii < count; ii++) {
+            if (canDisplay(fonts[ii], codePoint)) {
+                fonts[verified++] = fonts[ii];
+            } else {
+                rejectedFonts[rejectedCount++] = fonts[ii];
+            }
+        }
+        System.arraycopy(rejectedFonts, 0, fonts, verified, rejectedCount);
+        return verified;
+    }
+
+    /**
+     * @return the code points the font claims but does not draw, in order
+     */
+    public int[] getRejected(int fontIndex) {
+        return rejected[fontIndex].clone();
+    }
+
+    public int getRejectedCount(int fontIndex) {
+        return rejected[fontIndex].length;
+    }
+
+    public long getBuildTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(buildTimeNanos);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("GlyphVerifier fonts: ")
+                .append(rejected.length);
+        long glyphs = glyphsDrawn.get();
+        long total = 0;
+        for (GlyphHashes glyphHashes : hashes.values()) {
+            glyphs += glyphHashes.size();
+        }
+        for (int ii = 0; ii < rejected.length; ii++) {
+            total += rejected[ii] == null ? 0 : rejected[ii].length;
+        }
+        sb.append(" glyphs drawn: ").append(glyphs)
+                .append(" rejected: ").append(total)
+                .append(" build: ").append(getBuildTimeMillis()).append("ms");
+        for (int ii = 0; ii < rejected.length; ii++) {
+            if (rejected[ii] != null && rejected[ii].length > 0) {
+                sb.append("\n  ").append(coverage.getFonts()[ii].getName())
+                        .append(": ").append(rejected[ii].length);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return whether a code point may legitimately have no ink
+     */
+    static boolean isBlank(int codePoint) {
+        switch (Character.getType(codePoint)) {
+            case Character.SPACE_SEPARATOR:
+            case Character.LINE_SEPARATOR:
+            case Character.PARAGRAPH_SEPARATOR:
+            case Character.CONTROL:
+            case Character.FORMAT:
+            case Character.UNASSIGNED:
+                return true;
+        }
+        return Character.isWhitespace(codePoint)
+                // combining grapheme joiner, braille pattern blank
+                || codePoint == 0x34F || codePoint == 0x2800
+                // Hangul fillers
+                || codePoint == 0x115F || codePoint == 0x1160
+                || codePoint == 0x3164 || codePoint == 0xFFA0
+                // variation selectors
+                || (codePoint >= 0x180B && codePoint <= 0x180F)
+                || (codePoint >= 0xFE00 && codePoint <= 0xFE0F)
+                || (codePoint >= 0xE0100 && codePoint <= 0xE01EF);
+    }
+
+    /**
+     * The hashes of one font's glyphs, by glyph code, with the raster they
+     * are drawn in. Only used by one thread at a time.
+     */
+    private static class GlyphHashes {
+
+        /** The hash of a glyph without ink. */
+        static final long EMPTY = 0;
+        private final Font font;
+        private final int missingGlyph;
+        /**
+         * An open addressing table of the glyph codes drawn, -1 where free,
+         * and their hashes. Composite fonts keep the slot font in the high
+         * bits of a glyph code, so the codes are not dense.
+         */
+        private int[] glyphs = newGlyphs(256);
+        private long[] hashes = new long[256];
+        private int size;
+        private final BufferedImage image = new BufferedImage(
+                2 * RASTER_SIZE, 2 * RASTER_SIZE,
+                BufferedImage.TYPE_BYTE_GRAY);
+        private final byte[] pixels = ((DataBufferByte)
+                image.getRaster().getDataBuffer()).getData();
+        private final Graphics2D g = image.createGraphics();
+        private final long notdef;
+
+        GlyphHashes(Font font) {
+            this.font = font.deriveFont((float) RASTER_SIZE);
+            missingGlyph = this.font.getMissingGlyphCode();
+            g.setRenderingHint(
+                    RenderingHints.KEY_TEXT_ANTIALIASING,
+                    RenderingHints.VALUE_TEXT_ANTIALIAS_OFF);
+            notdef = getHash(missingGlyph);
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        /** Releases the raster's graphics, once the font is verified. */
+        synchronized void dispose() {
+            g.dispose();
+        }
+
+        /**
+         * @return whether the glyph of the code point is neither the
+         * missing glyph nor drawn as it, nor empty when it should not be
+         */
+        synchronized boolean verify(int codePoint) {
+            GlyphVector gv = font.createGlyphVector(RENDER_CONTEXT,
+                    UnicodeUtil.getCodePointString(codePoint));
+            if (gv.getNumGlyphs() != 1) {
+                // decomposed or shaped: not one glyph to compare
+                return true;
+            }
+            int glyph = gv.getGlyphCode(0);
+            if (glyph == missingGlyph) {
+                return false;
+            }
+            long hash = getHash(glyph);
+            if (hash == EMPTY) {
+                return isBlank(codePoint);
+            }
+            return hash != notdef || notdef == EMPTY;
+        }
+
+        private long getHash(int glyph) {
+            int slot = getSlot(glyphs, glyph);
+            if (glyphs[slot] == glyph) {
+                return hashes[slot];
+            }
+            long hash = draw(glyph);
+            glyphs[slot] = glyph;
+            hashes[slot] = hash;
+            if (++size > glyphs.length / 2) {
+                grow();
+            }
+            return hash;
+        }
+
+        private static int[] newGlyphs(int capacity) {
+            int[] glyphs = new int[capacity];
+            Arrays.fill(glyphs, -1);
+            return glyphs;
+        }
+
+        /** @return the slot of the glyph, or the free slot it would take */
+        private static int getSlot(int[] glyphs, int glyph) {
+            int mask = glyphs.length - 1;
+            int h = glyph * 0x9E3779B9;
+            int slot = (h ^ (h >>> 16)) & mask;
+            while (glyphs[slot] != glyph && glyphs[slot] != -1) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private void grow() {
+            int[] oldGlyphs = glyphs;
+            long[] oldHashes = hashes;
+            glyphs = newGlyphs(2 * oldGlyphs.length);
+            hashes = new long[glyphs.length];
+            for (int ii = 0; ii < oldGlyphs.length; ii++) {
+                if (oldGlyphs[ii] != -1) {
+                    int slot = getSlot(glyphs, oldGlyphs[ii]);
+                    glyphs[slot] = oldGlyphs[ii];
+                    hashes[slot] = oldHashes[ii];
+                }
+            }
+        }
+
+        /** FNV-1a over the pixels, or {@link #EMPTY} without ink. */
+        private long draw(int glyph) {
+            Arrays.fill(pixels, (byte) 0);
+            g.setColor(Color.WHITE);
+            g.drawGlyphVector(font.createGlyphVector(
+                    RENDER_CONTEXT, new int[]{glyph}),
+                    RASTER_SIZE / 2, RASTER_SIZE * 3 / 2);
+            long hash = 0xcbf29ce484222325L;
+            boolean ink = false;
+            for (byte pixel : pixels) {
+                ink |= pixel != 0;
+                hash = (hash ^ (pixel & 0xFF)) * 0x100000001b3L;
+            }
+            return ink ? hash | 1 : EMPTY;
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package org.pscode.unicodeglyphs;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Drives a {@link LookupServer} with concurrent clients and reports the
+ * latency percentiles and throughput of each endpoint.
+ * <p>
+ * Usage:
+ * <pre>
+ * java org.pscode.unicodeglyphs.LookupLoadTest
+ *     [-c clients] [-d seconds] [-w warmupSeconds] [-url base]
+ * </pre>
+ * Without <code>-url</code>, a server is started in process on a free
+ * port. Each client is a thread sending one request at a time over a kept
+ * alive connection: mostly lookups, then font support and searches, over
+ * random code points with a hot set that repeats, as a tool looking up the
+ * text it is processing would. Latencies are recorded per request after
+ * the warm up and sorted once at the end.
+ */
+public class LookupLoadTest {
+
+    private static final String[] QUERIES = {
+        "latin small a", "greek", "arrow", "snowman", "with acute",
+        "mathematical bold", "box drawings", "euro", "smiling face", "digit",
+        "latn smal", "infinty"
+    };
+    /** Share of lookups and font queries going to the hot code points. */
+    private static final double HOT_SHARE = .8;
+    private static final int HOT_CODE_POINTS = 512;
+
+    /** The latencies of one endpoint, in nanoseconds. */
+    static class Latencies {
+
+        private long[] nanos = new long[1024];
+        private int size;
+        private int errors;
+
+        void add(long value) {
+            if (size == nanos.length) {
+                nanos = Arrays.copyOf(nanos, size * 2);
+            }
+            nanos[size++] = value;
+        }
+
+        void addAll(Latencies other) {
+            for (int ii = 0; ii < other.size; ii++) {
+                add(other.nanos[ii]);
+            }
+            errors += other.errors;
+        }
+
+        /** @return the percentile, in microseconds, once sorted */
+        double percentile(double p) {
+            if (size == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(p / 100 * size) - 1;
+            return nanos[Math.max(0, Math.min(size - 1, index))] / 1e3;
+        }
+
+        void sort() {
+            Arrays.sort(nanos, 0, size);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+
+        int clients = 16;
+        int seconds = 10;
+        int warmupSeconds = 3;
+        String base = null;
+        for (int ii = 0; ii < args.length; ii++) {
+            if (args[ii].equals("-c")) {
+                clients = Integer.parseInt(args[++ii]);
+            } else if (args[ii].equals("-d")) {
+                seconds = Integer.parseInt(args[++ii]);
+            } else if (args[ii].equals("-w")) {
+                warmupSeconds = Integer.parseInt(args[++ii]);
+            } else if (args[ii].equals("-url")) {
+                base = args[++ii];
+            }
+        }
+
+        LookupServer server = null;
+        if (base == null) {
+            server = LookupServer.create(new InetSocketAddress(
+                    InetAddress.getLoopbackAddress(), 0));
+            server.start();
+            base = "http://127.0.0.1:" + server.getPort();
+        }
+        final int[] codePoints = getNamedCodePoints(base);
+
+        final String url = base;
+        final long warmupEnd = System.nanoTime()
+                + TimeUnit.SECONDS.toNanos(warmupSeconds);
+        final long end = warmupEnd + TimeUnit.SECONDS.toNanos(seconds);
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+        ArrayList<Future<Map<String, Latencies>>> futures =
+                new ArrayList<Future<Map<String, Latencies>>>();
+        for (int ii = 0; ii < clients; ii++) {
+            final long seed = ii;
+            futures.add(executor.submit(
+                    new Callable<Map<String, Latencies>>() {
+
+                        @Override
+                        public Map<String, Latencies> call() {
+                            return runClient(url, codePoints, new Random(seed),
+                                    warmupEnd, end);
+                        }
+                    }));
+        }
+        TreeMap<String, Latencies> total = new TreeMap<String, Latencies>();
+        Latencies all = new Latencies();
+        for (Future<Map<String, Latencies>> future : futures) {
+            for (Map.Entry<String, Latencies> entry
+                    : future.get().entrySet()) {
+                Latencies latencies = total.get(entry.getKey());
+                if (latencies == null) {
+                    latencies = new Latencies();
+                    total.put(entry.getKey(), latencies);
+                }
+                latencies.addAll(entry.getValue());
+                all.addAll(entry.getValue());
+            }
+        }
+        executor.shutdown();
+        total.put("all", all);
+
+        System.out.println(clients + " clients, " + seconds + "s after "
+                + warmupSeconds + "s warm up, "
+                + Runtime.getRuntime().availableProcessors() + " processors");
+        System.out.printf(Locale.ROOT, "%-8s %9s %9s %10s %10s %10s %7s%n",
+                "endpoint", "requests", "req/s", "p50 us", "p99 us",
+                "max us", "errors");
+        for (Map.Entry<String, Latencies> entry : total.entrySet()) {
+            Latencies latencies = entry.getValue();
+            latencies.sort();
+            System.out.printf(Locale.ROOT,
+                    "%-8s %9d %9.0f %10.0f %10.0f %10.0f %7d%n",
+                    entry.getKey(), latencies.size,
+                    latencies.size / (double) seconds,
+                    latencies.percentile(50), latencies.percentile(99),
+                    latencies.percentile(100), latencies.errors);
+        }
+        if (server != null) {
+            System.out.printf(Locale.ROOT, "cache hits: %.1f%%%n",
+                    100d * server.getCacheHits()
+                    / Math.max(1, server.getRequests()));
+            server.stop();
+        }
+    }
+
+    /**
+     * The code points the server names, from an unfiltered search a page
+     * at a time.
+     */
+    private static int[] getNamedCodePoints(String base) throws IOException {
+        IntList codePoints = new IntList();
+        String totalKey = "\"total\":";
+        String key = "\"codePoint\":";
+        int total;
+        do {
+            String body = get(base + "/search?q=&offset=" + codePoints.size()
+                    + "&limit=" + LookupServer.MAX_LIMIT);
+            total = getInt(body, body.indexOf(totalKey) + totalKey.length());
+            int before = codePoints.size();
+            int from = 0;
+            while ((from = body.indexOf(key, from)) >= 0) {
+                from += key.length();
+                codePoints.add(getInt(body, from));
+            }
+            if (codePoints.size() == before) {
+                break;
+            }
+        } while (codePoints.size() < total);
+        return codePoints.toArray();
+    }
+
+    /** @return the number starting at <code>from</code> */
+    private static int getInt(String body, int from) {
+        int to = from;
+        while (Character.isDigit(body.charAt(to))) {
+            to++;
+        }
+        return Integer.parseInt(body.substring(from, to));
+    }
+
+    private static Map<String, Latencies> runClient(String base,
+            int[] codePoints, Random random, long warmupEnd, long end) {
+        HashMap<String, Latencies> latencies =
+                new HashMap<String, Latencies>();
+        for (String endpoint : new String[]{"lookup", "fonts", "search"}) {
+            latencies.put(endpoint, new Latencies());
+        }
+        long now;
+        while ((now = System.nanoTime()) < end) {
+            int kind = random.nextInt(10);
+            String endpoint;
+            String query;
+            if (kind < 9) {
+                endpoint = kind < 6 ? "lookup" : "fonts";
+                int codePoint = random.nextDouble() < HOT_SHARE
+                        ? codePoints[random.nextInt(
+                        Math.min(HOT_CODE_POINTS, codePoints.length))]
+                        : codePoints[random.nextInt(codePoints.length)];
+                query = "cp=" + codePoint;
+            } else {
+                endpoint = "search";
+                String q = QUERIES[random.nextInt(QUERIES.length)];
+                try {
+                    query = "q=" + URLEncoder.encode(q, "UTF-8")
+                            + (random.nextBoolean() ? "&ranked=true" : "");
+                } catch (UnsupportedEncodingException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            Latencies endpointLatencies = latencies.get(endpoint);
+            try {
+                get(base + "/" + endpoint + "?" + query);
+                if (now >= warmupEnd) {
+                    endpointLatencies.add(System.nanoTime() - now);
+                }
+            } catch (IOException e) {
+                endpointLatencies.errors++;
+            }
+        }
+        return latencies;
+    }
+
+    /** Reads the whole response, so the connection is kept alive. */
+    private static String get(String url) throws IOException {
+        HttpURLConnection connection =
+                (HttpURLConnection) new URL(url).openConnection();
+        if (connection.getResponseCode() != 200) {
+            InputStream error = connection.getErrorStream();
+            if (error != null) {
+                error.close();
+            }
+            throw new IOException(url + ": " + connection.getResponseCode());
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (InputStream in = connection.getInputStream()) {
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                bytes.write(buffer, 0, n);
+            }
+        }
+        return bytes.toString("UTF-8");
+    }
+}
@@ -0,0 +1,597 @@
+package org.pscode.unicodeglyphs;
+
+import com.sun.net.httpserver.*;
+import java.awt.Font;
+import java.io.*;
+import java.lang.reflect.Method;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.logging.*;
+
+/**
+ * Headless HTTP access to what the explorer knows about code points, for
+ * other tools. All answers are JSON, to GET requests:
+ * <pre>
+ * /lookup?cp=U+00E9        name and properties (cp may also be decimal,
+ *                          0x hex, or char=&eacute;)
+ * /search?q=latin small a  code points whose names contain every part, as
+ *                          the name filter finds them; ranked=true for the
+ *                          typo tolerant ranking, offset=n and limit=n (at
+ *                          most 5000) for a page of the list
+ * /fonts?cp=U+00E9         the fonts that claim the code point, and whether
+ *                          their glyph was verified
+ * /stats                   requests served and cache hits
+ * </pre>
+ * Usage:
+ * <pre>
+ * java org.pscode.unicodeglyphs.LookupServer [-p port] [-b address]
+ * </pre>
+ * The server listens on the loopback address unless told otherwise. The
+ * name index, coverage index and glyph verifier are built once at start
+ * and shared, read only, by every handler. Handlers run on virtual threads
+ * where the JDK has them and on a cached pool otherwise. Responses are
+ * kept in an LRU cache of <code>uglys.server.cacheKB</code> (default 16MB),
+ * as the answers never change while the server runs. They are keyed by the
+ * parsed parameters, so <code>cp=U+00E9</code> and <code>cp=233</code>
+ * share an entry, and one response larger than a sixteenth of the cache is
+ * not kept.
+ */
+public class LookupServer {
+
+    public static final int DEFAULT_PORT = 8642;
+    public static final int CACHE_KB =
+            Integer.getInteger("uglys.server.cacheKB", 16 * 1024);
+    /** Most results a search returns without a limit. */
+    public static final int DEFAULT_LIMIT = 1000;
+    /** Most results a search returns, whatever the limit. */
+    public static final int MAX_LIMIT = 5000;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final CodePointNameIndex nameIndex;
+    private final FontCoverageIndex coverage;
+    private final GlyphVerifier verifier;
+    private final ResponseCache cache = new ResponseCache(CACHE_KB * 1024L);
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    static {
+        // headers and body go out as separate writes, which Nagle's
+        // algorithm holds back for the client's delayed ACK (~40ms)
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    LookupServer(InetSocketAddress address, CodePointNameIndex nameIndex,
+            FontCoverageIndex coverage, GlyphVerifier verifier)
+            throws IOException {
+        this.nameIndex = nameIndex;
+        this.coverage = coverage;
+        this.verifier = verifier;
+        server = HttpServer.create(address, 0);
+        executor = newHandlerExecutor();
+        server.setExecutor(executor);
+        server.createContext("/lookup", new JsonHandler<Integer>() {
+
+            @Override
+            Integer parse(Map<String, String> params) {
+                return getCodePoint(params);
+            }
+
+            @Override
+            String respond(Integer codePoint) {
+                return lookup(codePoint);
+            }
+        });
+        server.createContext("/search", new JsonHandler<SearchRequest>() {
+
+            @Override
+            SearchRequest parse(Map<String, String> params) {
+                return new SearchRequest(params);
+            }
+
+            @Override
+            String respond(SearchRequest request) {
+                return search(request.query, request.ranked,
+                        request.offset, request.limit);
+            }
+        });
+        server.createContext("/fonts", new JsonHandler<Integer>() {
+
+            @Override
+            Integer parse(Map<String, String> params) {
+                return getCodePoint(params);
+            }
+
+            @Override
+            String respond(Integer codePoint) {
+                return fonts(codePoint);
+            }
+        });
+        server.createContext("/stats", new HttpHandler() {
+
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                send(exchange, 200, stats());
+            }
+        });
+    }
+
+    public static void main(String[] args) throws IOException {
+        System.setProperty("java.awt.headless", "true");
+
+        int port = DEFAULT_PORT;
+        InetAddress address = InetAddress.getLoopbackAddress();
+        for (int ii = 0; ii < args.length; ii++) {
+            if (args[ii].equals("-p")) {
+                port = Integer.parseInt(args[++ii]);
+            } else if (args[ii].equals("-b")) {
+                address = InetAddress.getByName(args[++ii]);
+            }
+        }
+        LookupServer server = create(new InetSocketAddress(address, port));
+        server.start();
+        System.err.println("Listening on http://"
+                + address.getHostAddress() + ":" + server.getPort() + "/");
+    }
+
+    /**
+     * Builds the shared indexes, from the name snapshot when there is one,
+     * and a server for them that is not started yet.
+     */
+    public static LookupServer create(InetSocketAddress address)
+            throws IOException {
+        long start = System.nanoTime();
+        NameIndexSnapshot snapshot =
+                new NameIndexSnapshot(NameIndexSnapshot.DEFAULT_DIRECTORY);
+        CodePointNameIndex nameIndex = NameIndexSnapshot.ENABLED
+                ? snapshot.load() : null;
+        if (nameIndex == null) {
+            CodePointNameIndex.Builder builder =
+                    new CodePointNameIndex.Builder();
+            UnicodeExplorer.scanNames(0, UnicodeExplorer.numberUnicodes, builder);
+            nameIndex = builder.build();
+            if (NameIndexSnapshot.ENABLED) {
+                snapshot.save(nameIndex);
+            }
+        }
+        FontCoverageIndex coverage = FontCoverageIndex.build(
+                FontCatalog.getFonts(), UnicodeExplorer.numberUnicodes);
+        GlyphVerifier verifier = GlyphVerifier.build(coverage);
+        Logger.getLogger(LookupServer.class.getName()).log(Level.INFO,
+                "Indexes ready in " + TimeUnit.NANOSECONDS.toMillis(
+                System.nanoTime() - start) + "ms");
+        return new LookupServer(address, nameIndex, coverage, verifier);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    /** Stops accepting requests and waits up to a second for the others. */
+    public void stop() {
+        server.stop(1);
+        executor.shutdown();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    /**
+     * A virtual thread per request where the JDK has them (found by
+     * reflection, as the explorer builds for older JDKs), otherwise a
+     * cached pool of daemon threads.
+     */
+    static ExecutorService newHandlerExecutor() {
+        try {
+            Method method = Executors.class.getMethod(
+                    "newVirtualThreadPerTaskExecutor");
+            ExecutorService executor = (ExecutorService) method.invoke(null);
+            Logger.getLogger(LookupServer.class.getName()).log(
+                    Level.INFO, "Handlers on virtual threads");
+            return executor;
+        } catch (ReflectiveOperationException e) {
+            Logger.getLogger(LookupServer.class.getName()).log(
+                    Level.INFO, "Handlers on a cached thread pool");
+        }
+        return Executors.newCachedThreadPool(new ThreadFactory() {
+
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(
+                        r, "Lookup handler " + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    String lookup(int codePoint) {
+        UnicodeProperties properties = UnicodeProperties.getInstance();
+        UnicodeDatabase database = UnicodeDatabase.getInstance();
+        int p = properties.getProperties(codePoint);
+        StringBuilder sb = new StringBuilder("{");
+        appendCodePoint(sb, codePoint);
+        if (database != null) {
+            appendField(sb, "category", UnicodeProperties.CATEGORY_NAMES[
+                    database.getCategory(codePoint)]);
+            appendField(sb, "block", database.getBlock(codePoint));
+            appendField(sb, "script", database.getScript(codePoint));
+            appendField(sb, "defined", database.isDefined(codePoint));
+            appendField(sb, "mirrored", database.isMirrored(codePoint));
+        } else {
+            appendField(sb, "category", UnicodeProperties.CATEGORY_NAMES[
+                    (p & UnicodeProperties.CATEGORY_MASK)
+                    >>> UnicodeProperties.CATEGORY_SHIFT]);
+            appendField(sb, "block", properties.getBlock(codePoint));
+            appendField(sb, "script", properties.getScript(codePoint));
+            appendField(sb, "defined", (p & UnicodeProperties.DEFINED) != 0);
+            appendField(sb, "mirrored", (p & UnicodeProperties.MIRRORED) != 0);
+        }
+        appendField(sb, "bmp", Character.isBmpCodePoint(codePoint));
+        appendField(sb, "isoControl", (p & UnicodeProperties.ISO_CONTROL) != 0);
+        appendField(sb, "digit", (p & UnicodeProperties.DIGIT) != 0);
+        appendField(sb, "letter", (p & UnicodeProperties.LETTER) != 0);
+        appendField(sb, "alphabetic", (p & UnicodeProperties.ALPHABETIC) != 0);
+        appendField(sb, "ideographic",
+                (p & UnicodeProperties.IDEOGRAPHIC) != 0);
+        appendField(sb, "spaceChar", (p & UnicodeProperties.SPACE_CHAR) != 0);
+        appendField(sb, "whitespace", (p & UnicodeProperties.WHITESPACE) != 0);
+        appendField(sb, "lowerCase", (p & UnicodeProperties.LOWER_CASE) != 0);
+        appendField(sb, "titleCase", (p & UnicodeProperties.TITLE_CASE) != 0);
+        appendField(sb, "upperCase", (p & UnicodeProperties.UPPER_CASE) != 0);
+        if (database != null) {
+            appendField(sb, "decomposition",
+                    database.getDecomposition(codePoint));
+            appendField(sb, "numericValue",
+                    database.getNumericValue(codePoint));
+            appendField(sb, "upperCaseMapping", database.getUpperCase(codePoint));
+            appendField(sb, "lowerCaseMapping", database.getLowerCase(codePoint));
+            appendField(sb, "titleCaseMapping", database.getTitleCase(codePoint));
+            appendField(sb, "combiningClass",
+                    database.getCombiningClass(codePoint));
+            appendField(sb, "bidiClass", database.getBidiClass(codePoint));
+            appendField(sb, "eastAsianWidth",
+                    database.getEastAsianWidth(codePoint));
+        }
+        return endObject(sb).toString();
+    }
+
+    /**
+     * As {@link FilteredCodePointListModel} filters the named list, the
+     * results from <code>offset</code> on.
+     */
+    String search(String query, boolean ranked, int offset, int limit) {
+        int[] matches = FilteredCodePointListModel.match(query,
+                nameIndex.getCodePoints(), nameIndex, ranked, null, null,
+                new AtomicInteger(), 0);
+        StringBuilder sb = new StringBuilder("{");
+        appendField(sb, "query", query);
+        appendField(sb, "ranked", ranked);
+        appendField(sb, "total", matches.length);
+        appendField(sb, "offset", offset);
+        sb.append("\"results\":[");
+        int end = (int) Math.min(matches.length, (long) offset + limit);
+        for (int ii = offset; ii < end; ii++) {
+            sb.append(ii > offset ? ",{" : "{");
+            appendCodePoint(sb, matches[ii]);
+            endObject(sb);
+        }
+        return sb.append("]}").toString();
+    }
+
+    String fonts(int codePoint) {
+        Font[] fonts = coverage.getFonts();
+        StringBuilder sb = new StringBuilder("{");
+        appendCodePoint(sb, codePoint);
+        int claimed = 0;
+        int verified = 0;
+        sb.append("\"fonts\":[");
+        for (int ii = 0; ii < fonts.length; ii++) {
+            if (!coverage.canDisplay(ii, codePoint)) {
+                continue;
+            }
+            boolean drawn = verifier.isVerified(ii, codePoint);
+            sb.append(claimed > 0 ? ",{" : "{");
+            appendField(sb, "name", fonts[ii].getName());
+            appendField(sb, "verified", drawn);
+            endObject(sb);
+            claimed++;
+            if (drawn) {
+                verified++;
+            }
+        }
+        sb.append("],");
+        appendField(sb, "claimed", claimed);
+        appendField(sb, "verified", verified);
+        return endObject(sb).toString();
+    }
+
+    String stats() {
+        StringBuilder sb = new StringBuilder("{");
+        appendField(sb, "requests", requests.sum());
+        appendField(sb, "cacheHits", cacheHits.sum());
+        appendField(sb, "cacheSize", cache.size());
+        appendField(sb, "cacheBytes", cache.getUsedBytes());
+        appendField(sb, "errors", errors.sum());
+        appendField(sb, "names", nameIndex.size());
+        appendField(sb, "fonts", coverage.getFonts().length);
+        return endObject(sb).toString();
+    }
+
+    private static void appendCodePoint(StringBuilder sb, int codePoint) {
+        appendField(sb, "codePoint", codePoint);
+        appendField(sb, "hex", String.format(Locale.ROOT, "U+%04X", codePoint));
+        appendField(sb, "char", UnicodeUtil.getCodePointString(codePoint));
+        appendField(sb, "name", UnicodeDatabase.nameOf(codePoint));
+    }
+
+    /** Appends <code>"key":value,</code>, quoting all but numbers and booleans. */
+    private static void appendField(StringBuilder sb, String key, Object value) {
+        sb.append('"').append(key).append("\":");
+        if (value == null) {
+            sb.append("null");
+        } else if (value instanceof Number || value instanceof Boolean) {
+            sb.append(value);
+        } else {
+            appendString(sb, value.toString());
+        }
+        sb.append(',');
+    }
+
+    /** Closes an object, dropping the comma after its last field. */
+    private static StringBuilder endObject(StringBuilder sb) {
+        if (sb.charAt(sb.length() - 1) == ',') {
+            sb.setLength(sb.length() - 1);
+        }
+        return sb.append('}');
+    }
+
+    /** Escapes everything but printable ASCII, so any code point is safe. */
+    static void appendString(StringBuilder sb, String s) {
+        sb.append('"');
+        for (int ii = 0; ii < s.length(); ii++) {
+            char c = s.charAt(ii);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c >= 0x20 && c < 0x7F) {
+                sb.append(c);
+            } else {
+                sb.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+            }
+        }
+        sb.append('"');
+    }
+
+    /**
+     * Parses <code>cp</code> as U+hex, 0xhex or decimal, or takes the first
+     * code point of <code>char</code>.
+     */
+    static int getCodePoint(Map<String, String> params) {
+        String s = params.get("cp");
+        int codePoint;
+        if (s == null) {
+            String c = params.get("char");
+            if (c == null || c.length() == 0) {
+                throw new IllegalArgumentException("cp or char is missing");
+            }
+            codePoint = c.codePointAt(0);
+        } else {
+            try {
+                String upper = s.trim().toUpperCase(Locale.ROOT);
+                if (upper.startsWith("U+") || upper.startsWith("0X")) {
+                    codePoint = Integer.parseInt(upper.substring(2), 16);
+                } else {
+                    codePoint = Integer.parseInt(upper);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Not a code point: " + s);
+            }
+        }
+        if (codePoint < 0 || codePoint >= UnicodeExplorer.numberUnicodes) {
+            throw new IllegalArgumentException("Not a code point: " + s);
+        }
+        return codePoint;
+    }
+
+    private static int getInt(Map<String, String> params, String key,
+            int defaultValue) {
+        String s = params.get(key);
+        if (s == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(s);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a number: " + key);
+        }
+    }
+
+    /**
+     * The parameters of a search, checked and with the limit capped, in a
+     * canonical form for the cache key.
+     */
+    static class SearchRequest {
+
+        final String query;
+        final boolean ranked;
+        final int offset;
+        final int limit;
+
+        SearchRequest(Map<String, String> params) {
+            query = params.get("q");
+            if (query == null) {
+                throw new IllegalArgumentException("q is missing");
+            }
+            ranked = Boolean.parseBoolean(params.get("ranked"));
+            offset = Math.max(0, getInt(params, "offset", 0));
+            limit = Math.max(0, Math.min(MAX_LIMIT,
+                    getInt(params, "limit", DEFAULT_LIMIT)));
+        }
+
+        @Override
+        public String toString() {
+            return "ranked=" + ranked + "&offset=" + offset
+                    + "&limit=" + limit + "&q=" + query;
+        }
+    }
+
+    static Map<String, String> parseQuery(String rawQuery) {
+        HashMap<String, String> params = new HashMap<String, String>();
+        if (rawQuery == null) {
+            return params;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            try {
+                params.put(URLDecoder.decode(key, "UTF-8"),
+                        URLDecoder.decode(value, "UTF-8"));
+            } catch (UnsupportedEncodingException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return params;
+    }
+
+    private static void send(HttpExchange exchange, int status, String body)
+            throws IOException {
+        send(exchange, status, body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void send(HttpExchange exchange, int status, byte[] body)
+            throws IOException {
+        exchange.getResponseHeaders().set(
+                "Content-Type", "application/json; charset=UTF-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * Answers GET requests from the cache, or from {@link #respond(Object)}
+     * once per request, as {@link #parse(Map)} makes it of the parameters.
+     * Bad parameters are a 400 with the message.
+     *
+     * @param <T> the parsed request, whose string form is its cache key
+     */
+    private abstract class JsonHandler<T> implements HttpHandler {
+
+        /** @throws IllegalArgumentException for bad parameters */
+        abstract T parse(Map<String, String> params);
+
+        abstract String respond(T request);
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            requests.increment();
+            try {
+                if (!exchange.getRequestMethod().equals("GET")) {
+                    errors.increment();
+                    send(exchange, 405, "{\"error\":\"GET only\"}");
+                    return;
+                }
+                T request = parse(parseQuery(
+                        exchange.getRequestURI().getRawQuery()));
+                String key = exchange.getHttpContext().getPath()
+                        + '?' + request;
+                byte[] body = cache.get(key);
+                if (body != null) {
+                    cacheHits.increment();
+                } else {
+                    body = respond(request).getBytes(StandardCharsets.UTF_8);
+                    cache.put(key, body);
+                }
+                send(exchange, 200, body);
+            } catch (IllegalArgumentException e) {
+                errors.increment();
+                StringBuilder sb = new StringBuilder("{\"error\":");
+                appendString(sb, e.getMessage());
+                send(exchange, 400, sb.append('}').toString());
+            } catch (RuntimeException e) {
+                errors.increment();
+                Logger.getLogger(LookupServer.class.getName()).log(
+                        Level.WARNING, "Request failed "
+                        + exchange.getRequestURI(), e);
+                send(exchange, 500, "{\"error\":\"internal error\"}");
+            } finally {
+                exchange.close();
+            }
+        }
+    }
+
+    /**
+     * The least recently used responses are dropped once they and their
+     * keys exceed the budget, as in {@link FontComparisonPanel.SampleCache}.
+     */
+    static class ResponseCache {
+
+        private final LinkedHashMap<String, byte[]> responses =
+                new LinkedHashMap<String, byte[]>(256, .75f, true);
+        private final long budgetBytes;
+        private long usedBytes;
+
+        ResponseCache(long budgetBytes) {
+            this.budgetBytes = budgetBytes;
+        }
+
+        private static long getBytes(String key, byte[] response) {
+            return 64 + 2L * key.length() + response.length;
+        }
+
+        public synchronized byte[] get(String key) {
+            return responses.get(key);
+        }
+
+        /**
+         * Keeps the response, unless it would take more than a sixteenth
+         * of the budget.
+         */
+        public synchronized void put(String key, byte[] response) {
+            long bytes = getBytes(key, response);
+            if (bytes > budgetBytes / 16) {
+                return;
+            }
+            byte[] old = responses.put(key, response);
+            if (old != null) {
+                usedBytes -= getBytes(key, old);
+            }
+            usedBytes += bytes;
+            Iterator<Map.Entry<String, byte[]>> it =
+                    responses.entrySet().iterator();
+            while (usedBytes > budgetBytes && it.hasNext()) {
+                Map.Entry<String, byte[]> eldest = it.next();
+                if (eldest.getValue() == response) {
+                    break;
+                }
+                usedBytes -= getBytes(eldest.getKey(), eldest.getValue());
+                it.remove();
+            }
+        }
+
+        public synchronized int size() {
+            return responses.size();
+        }
+
+        public synchronized long getUsedBytes() {
+            return usedBytes;
+        }
+    }
+}
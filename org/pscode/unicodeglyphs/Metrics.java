@@ -0,0 +1,327 @@
+package org.pscode.unicodeglyphs;
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.logging.*;
+import javax.management.*;
+import javax.swing.SwingUtilities;
+
+/**
+ * Timers for the explorer's hot paths and a detector for EDT stalls, off
+ * unless the <code>uglys.metrics</code> system property is true. A timed
+ * section is
+ * <pre>
+ * long start = Metrics.start();
+ * ...
+ * Metrics.CELL_RENDER.stop(start);
+ * </pre>
+ * and when metrics are off both calls test a constant and return, so the
+ * JIT removes them. When on, a timer is a few {@link LongAdder}s: a count,
+ * a total, a max and a histogram of power of two buckets, so recording does
+ * not contend or allocate even from the EDT.
+ * <p>
+ * The stall detector posts a heartbeat to the event queue and samples the
+ * EDT's stack when the heartbeat has waited longer than
+ * <code>uglys.metrics.stallMillis</code> (default 200). Everything is
+ * readable through {@link MetricsMXBean}, and is logged every
+ * <code>uglys.metrics.dumpSeconds</code> when that is set.
+ */
+class Metrics implements MetricsMXBean {
+
+    public static final boolean ENABLED = Boolean.getBoolean("uglys.metrics");
+    public static final long STALL_THRESHOLD_MILLIS =
+            Long.getLong("uglys.metrics.stallMillis", 200);
+    public static final int DUMP_SECONDS =
+            Integer.getInteger("uglys.metrics.dumpSeconds", 0);
+    public static final String OBJECT_NAME =
+            "org.pscode.unicodeglyphs:type=Metrics";
+    static final int MAX_STALLS = 16;
+    private static final ArrayList<Timer> timers = new ArrayList<Timer>();
+    public static final Timer FONT_ENUMERATION = new Timer("fonts.enumerate");
+    public static final Timer NAMES_SCAN = new Timer("names.scan");
+    public static final Timer FILTER = new Timer("names.filter");
+    public static final Timer QUERY = new Timer("query");
+    public static final Timer FONT_SUPPORT = new Timer("fonts.supported");
+    public static final Timer DETAIL_VIEW = new Timer("detail.view");
+    public static final Timer CELL_RENDER = new Timer("render.tableCell");
+    public static final Timer TABLE_FRAME = new Timer("render.tableFrame");
+    public static final Timer COMPARISON_SAMPLE =
+            new Timer("render.comparisonSample");
+    private static final Metrics instance = new Metrics();
+    private final LongAdder stallCount = new LongAdder();
+    private final ArrayDeque<String> stalls = new ArrayDeque<String>();
+    private boolean installed;
+
+    private Metrics() {
+    }
+
+    public static Metrics getInstance() {
+        return instance;
+    }
+
+    /**
+     * @return the start of a timed section, for {@link Timer#stop(long)}
+     */
+    public static long start() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Registers the MBean and, when metrics are on, starts the stall
+     * detector and the periodic dump. Only the first call does anything.
+     */
+    public synchronized void install() {
+        if (installed) {
+            return;
+        }
+        installed = true;
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(
+                    this, new ObjectName(OBJECT_NAME));
+        } catch (JMException e) {
+            Logger.getLogger(Metrics.class.getName()).log(
+                    Level.WARNING, "Metrics MBean not registered", e);
+        }
+        if (!ENABLED) {
+            return;
+        }
+        Thread watchdog = new Thread(
+                new StallDetector(), "EDT stall detector");
+        watchdog.setDaemon(true);
+        watchdog.start();
+        if (DUMP_SECONDS > 0) {
+            ScheduledExecutorService executor =
+                    Executors.newSingleThreadScheduledExecutor(
+                            new ThreadFactory() {
+
+                                @Override
+                                public Thread newThread(Runnable r) {
+                                    Thread t = new Thread(r, "Metrics dump");
+                                    t.setDaemon(true);
+                                    return t;
+                                }
+                            });
+            executor.scheduleAtFixedRate(new Runnable() {
+
+                @Override
+                public void run() {
+                    Logger.getLogger(Metrics.class.getName()).log(
+                            Level.INFO, dump());
+                }
+            }, DUMP_SECONDS, DUMP_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return ENABLED;
+    }
+
+    @Override
+    public String[] getTimers() {
+        String[] lines = new String[timers.size()];
+        for (int ii = 0; ii < lines.length; ii++) {
+            lines[ii] = timers.get(ii).toString();
+        }
+        return lines;
+    }
+
+    @Override
+    public long getStallCount() {
+        return stallCount.sum();
+    }
+
+    @Override
+    public long getStallThresholdMillis() {
+        return STALL_THRESHOLD_MILLIS;
+    }
+
+    @Override
+    public String[] getRecentStalls() {
+        synchronized (stalls) {
+            return stalls.toArray(new String[stalls.size()]);
+        }
+    }
+
+    @Override
+    public String dump() {
+        StringBuilder sb = new StringBuilder("Metrics");
+        for (String line : getTimers()) {
+            sb.append("\n  ").append(line);
+        }
+        sb.append("\n  EDT stalls over ").append(STALL_THRESHOLD_MILLIS)
+                .append("ms: ").append(getStallCount());
+        return sb.toString();
+    }
+
+    @Override
+    public void reset() {
+        for (Timer timer : timers) {
+            timer.reset();
+        }
+        stallCount.reset();
+        synchronized (stalls) {
+            stalls.clear();
+        }
+    }
+
+    private void recordStall(long nanos, StackTraceElement[] stack) {
+        stallCount.increment();
+        StringBuilder sb = new StringBuilder("EDT blocked ")
+                .append(nanos / 1000000).append("ms in");
+        for (StackTraceElement element : stack) {
+            sb.append("\n\tat ").append(element);
+        }
+        String stall = sb.toString();
+        synchronized (stalls) {
+            if (stalls.size() == MAX_STALLS) {
+                stalls.removeFirst();
+            }
+            stalls.addLast(stall);
+        }
+        Logger.getLogger(Metrics.class.getName()).log(Level.FINE, stall);
+    }
+
+    /**
+     * A count, total, max and log2 histogram of the durations of one
+     * section. Percentiles are read from the histogram, so they are the
+     * upper bound of the bucket the percentile falls in: within a factor
+     * of two, which is enough to tell a 1ms section from a 100ms one.
+     */
+    static class Timer {
+
+        private static final int BUCKETS = 64;
+        private final String name;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos =
+                new LongAccumulator(Math::max, 0);
+        private final LongAdder[] histogram = new LongAdder[BUCKETS];
+
+        Timer(String name) {
+            this.name = name;
+            for (int ii = 0; ii < BUCKETS; ii++) {
+                histogram[ii] = new LongAdder();
+            }
+            timers.add(this);
+        }
+
+        /**
+         * Records the time since start, as returned by
+         * {@link Metrics#start()}.
+         */
+        public void stop(long start) {
+            if (ENABLED) {
+                record(System.nanoTime() - start);
+            }
+        }
+
+        void record(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+            histogram[BUCKETS - Long.numberOfLeadingZeros(nanos | 1)].increment();
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        /**
+         * @return the upper bound of the bucket holding the percentile, in
+         * nanoseconds
+         */
+        public long getPercentileNanos(double percentile) {
+            long total = getCount();
+            long rank = (long) Math.ceil(total * percentile / 100);
+            long seen = 0;
+            for (int ii = 0; ii < BUCKETS; ii++) {
+                seen += histogram[ii].sum();
+                if (seen >= rank && seen > 0) {
+                    return ii == BUCKETS - 1 ? Long.MAX_VALUE : 1L << ii;
+                }
+            }
+            return 0;
+        }
+
+        void reset() {
+            count.reset();
+            totalNanos.reset();
+            maxNanos.reset();
+            for (LongAdder bucket : histogram) {
+                bucket.reset();
+            }
+        }
+
+        @Override
+        public String toString() {
+            long n = getCount();
+            return name + ": count " + n
+                    + " mean " + millis(n == 0 ? 0 : totalNanos.sum() / n)
+                    + " p50 " + millis(getPercentileNanos(50))
+                    + " p99 " + millis(getPercentileNanos(99))
+                    + " max " + millis(maxNanos.get());
+        }
+
+        private static String millis(long nanos) {
+            return String.format(Locale.ROOT, "%.3fms", nanos / 1e6);
+        }
+    }
+
+    /**
+     * Keeps one heartbeat in the event queue. When it has waited past the
+     * threshold the EDT is busy with something else, so its stack at that
+     * moment is the culprit; the stall is recorded with its full length
+     * once the heartbeat finally runs.
+     */
+    private class StallDetector implements Runnable {
+
+        private final long thresholdNanos =
+                TimeUnit.MILLISECONDS.toNanos(STALL_THRESHOLD_MILLIS);
+        private final long pollMillis =
+                Math.max(10, STALL_THRESHOLD_MILLIS / 4);
+        private volatile Thread edt;
+        private volatile long postedAt;
+        private volatile StackTraceElement[] stallStack;
+        private final Runnable heartbeat = new Runnable() {
+
+            @Override
+            public void run() {
+                edt = Thread.currentThread();
+                StackTraceElement[] stack = stallStack;
+                if (stack != null) {
+                    recordStall(System.nanoTime() - postedAt, stack);
+                    stallStack = null;
+                }
+                postedAt = 0;
+            }
+        };
+
+        @Override
+        public void run() {
+            while (true) {
+                if (postedAt == 0) {
+                    postedAt = System.nanoTime();
+                    SwingUtilities.invokeLater(heartbeat);
+                }
+                try {
+                    Thread.sleep(pollMillis);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long posted = postedAt;
+                Thread t = edt;
+                if (posted != 0 && t != null && stallStack == null
+                        && System.nanoTime() - posted > thresholdNanos) {
+                    stallStack = t.getStackTrace();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package org.pscode.unicodeglyphs;
+
+/**
+ * The explorer's {@link Metrics}, as seen from a JMX console under
+ * <code>org.pscode.unicodeglyphs:type=Metrics</code>.
+ */
+public interface MetricsMXBean {
+
+    boolean isEnabled();
+
+    /** One line per timer: count, mean, p50, p99 and max. */
+    String[] getTimers();
+
+    long getStallCount();
+
+    long getStallThresholdMillis();
+
+    /** The most recent EDT stalls, each with the stack the EDT was in. */
+    String[] getRecentStalls();
+
+    /** The timers and stalls as one report, as the periodic dump logs it. */
+    String dump();
+
+    void reset();
+}
@@ -0,0 +1,129 @@
+package org.pscode.unicodeglyphs;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.logging.*;
+
+/**
+ * The {@link CodePointNameIndex} saved to disk, so later launches map it
+ * instead of asking {@link Character#getName(int)} for every code point.
+ * The names only depend on the Unicode version of the JDK (or on the
+ * local {@link UnicodeDatabase}), so the snapshot is keyed by the Java
+ * version, the database, the number of code points and the format
+ * version. A snapshot with another key is ignored, and one that cannot be
+ * read is deleted; either way it is replaced by the next
+ * {@link #save(CodePointNameIndex)}.
+ * <p>
+ * Snapshots live in <code>~/.uglys</code>, or the directory named by the
+ * <code>uglys.cacheDir</code> system property. Setting
+ * <code>uglys.snapshot</code> to false always scans the names.
+ */
+class NameIndexSnapshot {
+
+    public static final boolean ENABLED =
+            !"false".equals(System.getProperty("uglys.snapshot"));
+    public static final File DEFAULT_DIRECTORY = new File(System.getProperty(
+            "uglys.cacheDir",
+            System.getProperty("user.home") + File.separator + ".uglys"));
+    /** "UGNI" */
+    static final int MAGIC = 0x55474E49;
+    /** Bump when the format, or what is indexed, changes. */
+    static final int FORMAT_VERSION = 1;
+    private final File file;
+
+    NameIndexSnapshot(File directory) {
+        file = new File(directory, "names.bin");
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * What the names depend on: the JDK, and so its Unicode version, or
+     * the {@link UnicodeDatabase} they are read from.
+     */
+    static String getKey() {
+        UnicodeDatabase database = UnicodeDatabase.getInstance();
+        return System.getProperty("java.vendor") + " "
+                + System.getProperty("java.version") + " "
+                + UnicodeExplorer.numberUnicodes
+                + (database == null ? "" : " " + database.getKey());
+    }
+
+    /**
+     * @return the saved index, or <code>null</code> when there is none for
+     * this key
+     */
+    public CodePointNameIndex load() {
+        if (!file.isFile()) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(
+                file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(
+                    FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC
+                    || buffer.getInt() != FORMAT_VERSION) {
+                log(Level.INFO, "Ignoring snapshot of another format " + file);
+                return null;
+            }
+            byte[] key = new byte[buffer.getShort() & 0xFFFF];
+            buffer.get(key);
+            String savedKey = new String(key, "UTF-8");
+            if (!savedKey.equals(getKey())) {
+                log(Level.INFO, "Ignoring snapshot for " + savedKey);
+                return null;
+            }
+            return CodePointNameIndex.read(buffer);
+        } catch (IOException | RuntimeException e) {
+            // whatever a corrupt file makes the reader throw, rescan
+            log(Level.WARNING,
+                    "Deleting unreadable snapshot " + file + ": " + e);
+        }
+        if (!file.delete()) {
+            log(Level.WARNING, "Could not delete " + file);
+        }
+        return null;
+    }
+
+    /**
+     * Writes the index to a temporary file and moves it into place, so a
+     * concurrent or interrupted launch never sees half a snapshot.
+     */
+    public void save(CodePointNameIndex index) {
+        File directory = file.getParentFile();
+        File temp = null;
+        try {
+            Files.createDirectories(directory.toPath());
+            temp = File.createTempFile("names", ".tmp", directory);
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                byte[] key = getKey().getBytes("UTF-8");
+                out.writeShort(key.length);
+                out.write(key);
+                index.write(out);
+            }
+            try {
+                Files.move(temp.toPath(), file.toPath(),
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), file.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            log(Level.WARNING, "Snapshot not saved to " + file + ": " + e);
+            if (temp != null) {
+                temp.delete();
+            }
+        }
+    }
+
+    private static void log(Level level, String message) {
+        Logger.getLogger(NameIndexSnapshot.class.getName()).log(level, message);
+    }
+}
@@ -0,0 +1,97 @@
+package org.pscode.unicodeglyphs;
+
+import javax.swing.*;
+
+/**
+ * Suggestions for an editable name filter combo: the text typed so far
+ * with its last word completed, for the {@link #MAX_COMPLETIONS} most
+ * frequent name tokens starting with that word. Completions come from
+ * {@link CodePointNameIndex#complete(String, int)}, so nothing is built
+ * beyond the name index itself.
+ * <p>
+ * The selected item is always the typed text, so updating the suggestions
+ * never changes what is in the editor.
+ */
+class NamePartCompletionModel extends AbstractListModel<String>
+        implements ComboBoxModel<String> {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final int MAX_COMPLETIONS = 12;
+    private static final String[] NO_ITEMS = new String[0];
+    private CodePointNameIndex nameIndex;
+    private String[] items = NO_ITEMS;
+    private Object selectedItem = "";
+
+    public void setNameIndex(CodePointNameIndex nameIndex) {
+        this.nameIndex = nameIndex;
+        setText(selectedItem == null ? "" : selectedItem.toString());
+    }
+
+    /**
+     * Completes the last word of the text. Text that is already one of
+     * the suggestions (i.e. was just picked from them) is left alone.
+     */
+    public void setText(String text) {
+        selectedItem = text;
+        for (String item : items) {
+            if (item.equals(text)) {
+                return;
+            }
+        }
+        int oldSize = items.length;
+        items = getCompletions(text);
+        if (oldSize > items.length) {
+            fireIntervalRemoved(this, items.length, oldSize - 1);
+        } else if (items.length > oldSize) {
+            fireIntervalAdded(this, oldSize, items.length - 1);
+        }
+        int changed = Math.min(oldSize, items.length);
+        if (changed > 0) {
+            fireContentsChanged(this, 0, changed - 1);
+        }
+    }
+
+    private String[] getCompletions(String text) {
+        if (nameIndex == null) {
+            return NO_ITEMS;
+        }
+        int start = text.lastIndexOf(' ') + 1;
+        String head = text.substring(0, start);
+        int[] tokens = nameIndex.complete(
+                text.substring(start), MAX_COMPLETIONS);
+        String[] vocabulary = nameIndex.getVocabulary();
+        String[] completions = new String[tokens.length];
+        for (int ii = 0; ii < tokens.length; ii++) {
+            completions[ii] = head + vocabulary[tokens[ii]];
+        }
+        return completions;
+    }
+
+    /** Whether the last word of the typed text is being completed. */
+    public boolean isCompleting() {
+        String text = selectedItem == null ? "" : selectedItem.toString();
+        return items.length > 0 && !text.endsWith(" ") && text.length() > 0;
+    }
+
+    @Override
+    public void setSelectedItem(Object item) {
+        selectedItem = item;
+        fireContentsChanged(this, -1, -1);
+    }
+
+    @Override
+    public Object getSelectedItem() {
+        return selectedItem;
+    }
+
+    @Override
+    public int getSize() {
+        return items.length;
+    }
+
+    @Override
+    public String getElementAt(int index) {
+        return items[index];
+    }
+}
@@ -0,0 +1,102 @@
+package org.pscode.unicodeglyphs;
+
+import java.util.*;
+
+/**
+ * An immutable int per code point, stored as a two level table: the code
+ * point range is cut into pages of {@link #PAGE_SIZE} values, and identical
+ * pages are stored once. Most of the code point space is made of runs of
+ * identical pages (unassigned planes, private use, ideographs), so the
+ * table is a small fraction of a flat array.
+ */
+class PackedIntTable {
+
+    static final int PAGE_SHIFT = 8;
+    static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private final int[] pageOffsets;
+    private final int[] data;
+
+    private PackedIntTable(int[] pageOffsets, int[] data) {
+        this.pageOffsets = pageOffsets;
+        this.data = data;
+    }
+
+    public int get(int codePoint) {
+        return data[pageOffsets[codePoint >> PAGE_SHIFT]
+                + (codePoint & (PAGE_SIZE - 1))];
+    }
+
+    /** Copies the values of <code>[start, end)</code> into dest. */
+    public void get(int start, int end, int[] dest, int destOffset) {
+        int codePoint = start;
+        while (codePoint < end) {
+            int inPage = codePoint & (PAGE_SIZE - 1);
+            int length = Math.min(PAGE_SIZE - inPage, end - codePoint);
+            System.arraycopy(
+                    data, pageOffsets[codePoint >> PAGE_SHIFT] + inPage,
+                    dest, destOffset + codePoint - start, length);
+            codePoint += length;
+        }
+    }
+
+    public int size() {
+        return pageOffsets.length << PAGE_SHIFT;
+    }
+
+    /** Approximate heap retained by the table, in bytes. */
+    public long getMemoryUsage() {
+        return 32 + 4L * pageOffsets.length + 4L * data.length;
+    }
+
+    /**
+     * Takes the values a page at a time, sharing repeated pages.
+     */
+    static class Builder {
+
+        private final IntList pageOffsets = new IntList(4352);
+        private final IntList data = new IntList(PAGE_SIZE * 64);
+        private final HashMap<Page, Integer> pages = new HashMap<Page, Integer>();
+
+        /**
+         * @param page the next {@link #PAGE_SIZE} values. It is copied, so
+         * may be reused for the next page.
+         */
+        public void addPage(int[] page) {
+            Page key = new Page(page.clone());
+            Integer offset = pages.get(key);
+            if (offset == null) {
+                offset = data.size();
+                for (int value : page) {
+                    data.add(value);
+                }
+                pages.put(key, offset);
+            }
+            pageOffsets.add(offset);
+        }
+
+        public PackedIntTable build() {
+            return new PackedIntTable(pageOffsets.toArray(), data.toArray());
+        }
+    }
+
+    private static class Page {
+
+        final int[] values;
+        final int hash;
+
+        Page(int[] values) {
+            this.values = values;
+            this.hash = Arrays.hashCode(values);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Page && Arrays.equals(values, ((Page) o).values);
+        }
+    }
+}
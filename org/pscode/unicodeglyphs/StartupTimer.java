@@ -0,0 +1,63 @@
+package org.pscode.unicodeglyphs;
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.logging.*;
+
+/**
+ * Records how long each startup phase takes, and when it finished relative
+ * to JVM start, so regressions in time-to-window and time-to-searchable are
+ * visible in the log. Phases run concurrently, so each one is timed on its
+ * own rather than as a sequence.
+ */
+class StartupTimer {
+
+    private final long jvmStart =
+            ManagementFactory.getRuntimeMXBean().getStartTime();
+    private final LinkedHashMap<String, Long> started =
+            new LinkedHashMap<String, Long>();
+    private final LinkedHashMap<String, String> finished =
+            new LinkedHashMap<String, String>();
+
+    public synchronized void begin(String phase) {
+        started.put(phase, System.nanoTime());
+    }
+
+    public synchronized void end(String phase) {
+        Long start = started.remove(phase);
+        if (start == null) {
+            return;
+        }
+        long took = (System.nanoTime() - start) / 1000000;
+        record(phase, took + "ms, done at " + sinceJvmStart() + "ms");
+        if (started.isEmpty()) {
+            Logger.getLogger(StartupTimer.class.getName()).log(
+                    Level.INFO, toString());
+        }
+    }
+
+    /** Records a point in time rather than a duration. */
+    public synchronized void mark(String event) {
+        record(event, "at " + sinceJvmStart() + "ms");
+    }
+
+    private void record(String phase, String timing) {
+        finished.put(phase, timing);
+        Logger.getLogger(StartupTimer.class.getName()).log(
+                Level.FINE, "startup " + phase + ": " + timing);
+    }
+
+    private long sinceJvmStart() {
+        return System.currentTimeMillis() - jvmStart;
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder sb = new StringBuilder("Startup timing");
+        for (Map.Entry<String, String> entry : finished.entrySet()) {
+            sb.append("\n  ").append(entry.getKey()).append(": ")
+                    .append(entry.getValue());
+        }
+        return sb.toString();
+    }
+}
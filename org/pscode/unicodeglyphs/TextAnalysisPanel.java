@@ -0,0 +1,246 @@
+package org.pscode.unicodeglyphs;
+
+import java.awt.*;
+import java.awt.event.*;
+import java.io.File;
+import java.util.Locale;
+import java.util.logging.*;
+import javax.swing.*;
+
+/**
+ * Analyzes a UTF-8 file with a {@link TextAnalyzer}: the code points it
+ * uses, most frequent first, and how much of it each font covers. The
+ * result is published as the <code>heatMap</code> property while the heat
+ * map is switched on, for the code point table to shade cells by
+ * frequency.
+ */
+class TextAnalysisPanel extends JPanel {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final String HEAT_MAP_PROPERTY = "heatMap";
+    private final CodePointArrayListModel codePointsModel =
+            new CodePointArrayListModel();
+    private final JList<Integer> codePoints =
+            new JList<Integer>(codePointsModel);
+    private final DefaultListModel<TextAnalyzer.FontCoverage> fontsModel =
+            new DefaultListModel<TextAnalyzer.FontCoverage>();
+    private final JCheckBox heatMap = new JCheckBox("Heat map", true);
+    private final JButton cancel = new JButton("Cancel");
+    private final JLabel status = new JLabel(" ");
+    private Font[] fonts = new Font[0];
+    private FontCoverageIndex fontCoverageIndex;
+    private TextAnalyzer.Result result;
+    private TextAnalyzer.Result published;
+    private SwingWorker<TextAnalyzer.Result, Void> worker;
+
+    TextAnalysisPanel() {
+        super(new BorderLayout(3, 3));
+
+        JButton open = new JButton("Open File...");
+        open.addActionListener(new ActionListener() {
+
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                openFile();
+            }
+        });
+        cancel.setEnabled(false);
+        cancel.addActionListener(new ActionListener() {
+
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                if (worker != null) {
+                    worker.cancel(true);
+                }
+            }
+        });
+        heatMap.addActionListener(new ActionListener() {
+
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                publishHeatMap();
+            }
+        });
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.LEADING));
+        buttons.add(open);
+        buttons.add(cancel);
+        buttons.add(heatMap);
+        buttons.add(status);
+
+        codePoints.setCellRenderer(new CodePointListCellRenderer() {
+
+            @Override
+            public Component getListCellRendererComponent(
+                    JList<?> list,
+                    Object value,
+                    int index,
+                    boolean isSelected,
+                    boolean cellHasFocus) {
+                JLabel l = (JLabel) super.getListCellRendererComponent(
+                        list, value, index, isSelected, cellHasFocus);
+                if (result != null) {
+                    l.setText(l.getText() + " (" + result.getCount(
+                            ((Integer) value).intValue()) + ")");
+                }
+                return l;
+            }
+        });
+        codePoints.setVisibleRowCount(5);
+        JList<TextAnalyzer.FontCoverage> fontList =
+                new JList<TextAnalyzer.FontCoverage>(fontsModel);
+        fontList.setCellRenderer(new DefaultListCellRenderer() {
+
+            @Override
+            public Component getListCellRendererComponent(
+                    JList<?> list,
+                    Object value,
+                    int index,
+                    boolean isSelected,
+                    boolean cellHasFocus) {
+                TextAnalyzer.FontCoverage coverage =
+                        (TextAnalyzer.FontCoverage) value;
+                return super.getListCellRendererComponent(list,
+                        describe(coverage), index, isSelected, cellHasFocus);
+            }
+        });
+        fontList.setVisibleRowCount(5);
+
+        JPanel codePointsPanel = new JPanel(new BorderLayout());
+        codePointsPanel.add(
+                new JLabel("Code points by frequency"), BorderLayout.PAGE_START);
+        codePointsPanel.add(new JScrollPane(codePoints), BorderLayout.CENTER);
+        JPanel fontsPanel = new JPanel(new BorderLayout());
+        fontsPanel.add(new JLabel("Font coverage"), BorderLayout.PAGE_START);
+        fontsPanel.add(new JScrollPane(fontList), BorderLayout.CENTER);
+        JSplitPane split = new JSplitPane(
+                JSplitPane.HORIZONTAL_SPLIT, codePointsPanel, fontsPanel);
+        split.setResizeWeight(.5d);
+
+        add(buttons, BorderLayout.PAGE_START);
+        add(split, BorderLayout.CENTER);
+    }
+
+    public JList<Integer> getCodePointList() {
+        return codePoints;
+    }
+
+    public void setFonts(Font[] fonts, FontCoverageIndex fontCoverageIndex) {
+        this.fonts = fonts;
+        this.fontCoverageIndex = fontCoverageIndex;
+    }
+
+    private String describe(TextAnalyzer.FontCoverage coverage) {
+        long total = result.getTotal();
+        return String.format(Locale.ROOT, "%s: %.2f%% of the text, %d of %d",
+                coverage.font.getName(),
+                total == 0 ? 0 : 100d * coverage.occurrences / total,
+                coverage.distinct, result.getByFrequency().length);
+    }
+
+    private void openFile() {
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
+            analyze(chooser.getSelectedFile());
+        }
+    }
+
+    public void analyze(final File file) {
+        if (worker != null) {
+            worker.cancel(true);
+        }
+        final TextAnalyzer analyzer =
+                new TextAnalyzer(fonts, fontCoverageIndex);
+        status.setText("Analyzing " + file.getName() + "...");
+        cancel.setEnabled(true);
+        worker = new SwingWorker<TextAnalyzer.Result, Void>() {
+
+            @Override
+            protected TextAnalyzer.Result doInBackground() throws Exception {
+                return analyzer.analyze(file);
+            }
+
+            @Override
+            protected void done() {
+                if (worker == this) {
+                    cancel.setEnabled(false);
+                }
+                if (isCancelled()) {
+                    if (worker == this) {
+                        status.setText("Cancelled");
+                    }
+                    return;
+                }
+                TextAnalyzer.Result analyzed;
+                try {
+                    analyzed = get();
+                } catch (Exception e) {
+                    status.setText("Could not analyze " + file.getName());
+                    Logger.getLogger(TextAnalysisPanel.class.getName()).log(
+                            Level.WARNING, "Could not analyze " + file, e);
+                    return;
+                }
+                TextAnalyzer.log(analyzed);
+                showResult(analyzed);
+            }
+        };
+        worker.execute();
+    }
+
+    private void showResult(TextAnalyzer.Result analyzed) {
+        result = analyzed;
+        codePoints.clearSelection();
+        codePointsModel.setCodePoints(analyzed.getByFrequency());
+        fontsModel.clear();
+        for (TextAnalyzer.FontCoverage coverage
+                : analyzed.getFontCoverage()) {
+            fontsModel.addElement(coverage);
+        }
+        status.setText(String.format(Locale.ROOT,
+                "%d code points, %d distinct, %d no font covers, "
+                + "%d malformed; %.0fMB/s",
+                analyzed.getTotal(), analyzed.getByFrequency().length,
+                analyzed.getUncovered().length, analyzed.malformed,
+                analyzed.getMegabytesPerSecond()));
+        publishHeatMap();
+    }
+
+    private void publishHeatMap() {
+        TextAnalyzer.Result old = published;
+        published = heatMap.isSelected() ? result : null;
+        firePropertyChange(HEAT_MAP_PROPERTY, old, published);
+    }
+
+    /** The code points of an analysis, boxed only as they are shown. */
+    static class CodePointArrayListModel extends AbstractListModel<Integer> {
+
+        private static final long serialVersionUID = 1L;
+
+        private int[] codePoints = new int[0];
+
+        public void setCodePoints(int[] codePoints) {
+            int oldSize = this.codePoints.length;
+            this.codePoints = codePoints;
+            // removals and additions, so the list trims its selection
+            if (oldSize > codePoints.length) {
+                fireIntervalRemoved(this, codePoints.length, oldSize - 1);
+            } else if (codePoints.length > oldSize) {
+                fireIntervalAdded(this, oldSize, codePoints.length - 1);
+            }
+            int changed = Math.min(oldSize, codePoints.length);
+            if (changed > 0) {
+                fireContentsChanged(this, 0, changed - 1);
+            }
+        }
+
+        @Override
+        public int getSize() {
+            return codePoints.length;
+        }
+
+        @Override
+        public Integer getElementAt(int index) {
+            return codePoints[index];
+        }
+    }
+}
@@ -0,0 +1,424 @@
+package org.pscode.unicodeglyphs;
+
+import java.awt.Font;
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.*;
+
+/**
+ * Counts the code points of a UTF-8 file, however large, and which fonts
+ * cover them. The file is mapped a window of
+ * <code>uglys.analysis.windowMB</code> (default 32) at a time and the
+ * windows are decoded in parallel, at most one per processor at once, so
+ * memory is bounded by the number of windows in flight rather than the
+ * size of the file. Each window counts into its own sparse histogram,
+ * which is merged into the total as the window completes.
+ * <p>
+ * A window decodes the sequences whose first byte it holds, and reads up
+ * to three bytes past its end to finish its last sequence. It looks back
+ * up to three bytes for the sequence the previous window ends in, and
+ * starts after it if it is valid and runs into this window, so the windows
+ * count exactly what decoding the file in one pass would. Malformed
+ * sequences (stray or
+ * missing continuation bytes, overlong forms, surrogates and values past
+ * U+10FFFF) are counted, not decoded, and decoding resumes at the next
+ * byte.
+ */
+class TextAnalyzer {
+
+    public static final int WINDOW_BYTES =
+            Integer.getInteger("uglys.analysis.windowMB", 32) << 20;
+    static final int PAGE_SHIFT = 8;
+    static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    static final int PAGES = UnicodeExplorer.numberUnicodes >> PAGE_SHIFT;
+    private final Font[] fonts;
+    private final FontCoverageIndex coverage;
+    private final int threads;
+
+    /**
+     * @param coverage the fonts' coverage, or <code>null</code> to ask the
+     * fonts directly
+     */
+    TextAnalyzer(Font[] fonts, FontCoverageIndex coverage) {
+        this.fonts = fonts;
+        this.coverage = coverage;
+        threads = Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Analyzes the file, off the EDT. Interrupting the calling thread
+     * cancels the windows still to be decoded.
+     */
+    public Result analyze(File file) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        long[][] total = new long[PAGES][];
+        long malformed = 0;
+        ExecutorService executor = Executors.newFixedThreadPool(threads,
+                new ThreadFactory() {
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, "Text analysis");
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+        try (FileChannel channel = FileChannel.open(
+                file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            CompletionService<WindowCounts> completion =
+                    new ExecutorCompletionService<WindowCounts>(executor);
+            long next = 0;
+            int inFlight = 0;
+            while (next < size || inFlight > 0) {
+                while (next < size && inFlight < threads) {
+                    long end = Math.min(size, next + WINDOW_BYTES);
+                    completion.submit(new WindowTask(channel, next, end, size));
+                    next = end;
+                    inFlight++;
+                }
+                WindowCounts counts = completion.take().get();
+                inFlight--;
+                counts.addTo(total);
+                malformed += counts.malformed;
+            }
+            return new Result(file, size, total, malformed,
+                    System.nanoTime() - start);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IllegalStateException(cause);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /** The counts of one window, in pages allocated as they are touched. */
+    static class WindowCounts {
+
+        final int[][] pages = new int[PAGES][];
+        final int[] ascii = new int[128];
+        long malformed;
+
+        void add(int codePoint) {
+            int[] page = pages[codePoint >> PAGE_SHIFT];
+            if (page == null) {
+                page = new int[PAGE_SIZE];
+                pages[codePoint >> PAGE_SHIFT] = page;
+            }
+            page[codePoint & (PAGE_SIZE - 1)]++;
+        }
+
+        void addTo(long[][] total) {
+            for (int ii = 0; ii < ascii.length; ii++) {
+                if (ascii[ii] > 0) {
+                    add(total, ii, ascii[ii]);
+                }
+            }
+            for (int page = 0; page < PAGES; page++) {
+                if (pages[page] == null) {
+                    continue;
+                }
+                for (int ii = 0; ii < PAGE_SIZE; ii++) {
+                    if (pages[page][ii] > 0) {
+                        add(total, (page << PAGE_SHIFT) + ii, pages[page][ii]);
+                    }
+                }
+            }
+        }
+
+        private static void add(long[][] total, int codePoint, long count) {
+            long[] page = total[codePoint >> PAGE_SHIFT];
+            if (page == null) {
+                page = new long[PAGE_SIZE];
+                total[codePoint >> PAGE_SHIFT] = page;
+            }
+            page[codePoint & (PAGE_SIZE - 1)] += count;
+        }
+    }
+
+    /** Maps and decodes one window. */
+    private static class WindowTask implements Callable<WindowCounts> {
+
+        private final FileChannel channel;
+        private final long start;
+        private final long end;
+        private final long size;
+
+        WindowTask(FileChannel channel, long start, long end, long size) {
+            this.channel = channel;
+            this.start = start;
+            this.end = end;
+            this.size = size;
+        }
+
+        @Override
+        public WindowCounts call() throws IOException {
+            // room for the sequence the last window ends in, and for the
+            // tail of a sequence starting before the end
+            long mapStart = Math.max(0, start - 3);
+            long mapEnd = Math.min(size, end + 3);
+            MappedByteBuffer buffer = channel.map(
+                    FileChannel.MapMode.READ_ONLY, mapStart, mapEnd - mapStart);
+            WindowCounts counts = new WindowCounts();
+            int first = (int) (start - mapStart);
+            int limit = (int) (mapEnd - mapStart);
+            int last = (int) (end - mapStart);
+            decode(buffer, getFirstSequence(buffer, first, limit),
+                    last, limit, counts);
+            return counts;
+        }
+
+        /**
+         * Finds where decoding the file in one pass would be at the window
+         * start. The byte nearest before it that is not a continuation byte
+         * is always the start of a sequence, as a valid sequence has only
+         * continuation bytes after its first, and no sequence starting
+         * further back can reach the window.
+         *
+         * @return the first byte of the first sequence to decode, at or
+         * after <code>first</code>
+         */
+        private static int getFirstSequence(ByteBuffer buffer, int first,
+                int limit) {
+            for (int ii = first - 1; ii >= 0; ii--) {
+                if ((buffer.get(ii) & 0xC0) != 0x80) {
+                    int next = decode(buffer, ii, ii + 1, limit,
+                            new WindowCounts());
+                    return Math.max(first, next);
+                }
+            }
+            return first;
+        }
+    }
+
+    /**
+     * Decodes the sequences starting in <code>[from, last)</code>, reading
+     * continuation bytes up to <code>limit</code>.
+     *
+     * @return the byte after the last sequence decoded
+     */
+    static int decode(ByteBuffer buffer, int from, int last, int limit,
+            WindowCounts counts) {
+        int[] ascii = counts.ascii;
+        int ii = from;
+        while (ii < last) {
+            int b = buffer.get(ii);
+            if (b >= 0) {
+                ascii[b]++;
+                ii++;
+                continue;
+            }
+            b &= 0xFF;
+            int need;
+            int codePoint;
+            int min;
+            if (b >= 0xC2 && b < 0xE0) {
+                need = 1;
+                codePoint = b & 0x1F;
+                min = 0x80;
+            } else if (b >= 0xE0 && b < 0xF0) {
+                need = 2;
+                codePoint = b & 0x0F;
+                min = 0x800;
+            } else if (b >= 0xF0 && b < 0xF5) {
+                need = 3;
+                codePoint = b & 0x07;
+                min = 0x10000;
+            } else {
+                counts.malformed++;
+                ii++;
+                continue;
+            }
+            boolean valid = ii + need < limit;
+            for (int jj = 1; valid && jj <= need; jj++) {
+                int c = buffer.get(ii + jj);
+                if ((c & 0xC0) != 0x80) {
+                    valid = false;
+                } else {
+                    codePoint = (codePoint << 6) | (c & 0x3F);
+                }
+            }
+            if (!valid || codePoint < min || codePoint > Character.MAX_CODE_POINT
+                    || (codePoint >= Character.MIN_SURROGATE
+                    && codePoint <= Character.MAX_SURROGATE)) {
+                counts.malformed++;
+                ii++;
+                continue;
+            }
+            counts.add(codePoint);
+            ii += need + 1;
+        }
+        return ii;
+    }
+
+    /**
+     * How much of the text one font covers: the distinct code points and
+     * their occurrences.
+     */
+    static class FontCoverage {
+
+        final Font font;
+        final int distinct;
+        final long occurrences;
+
+        FontCoverage(Font font, int distinct, long occurrences) {
+            this.font = font;
+            this.distinct = distinct;
+            this.occurrences = occurrences;
+        }
+    }
+
+    /** The histogram of a file, and the fonts' coverage of it. */
+    class Result {
+
+        final File file;
+        final long bytes;
+        final long malformed;
+        final long nanos;
+        private final long[][] counts;
+        private final long total;
+        private final long maxCount;
+        /** The distinct code points, most frequent first. */
+        private final int[] byFrequency;
+        private final FontCoverage[] fontCoverage;
+        /** The distinct code points no font covers, most frequent first. */
+        private final int[] uncovered;
+
+        Result(File file, long bytes, long[][] counts, long malformed,
+                long nanos) {
+            this.file = file;
+            this.bytes = bytes;
+            this.counts = counts;
+            this.malformed = malformed;
+            this.nanos = nanos;
+
+            IntList distinct = new IntList();
+            long sum = 0;
+            long max = 0;
+            for (int page = 0; page < PAGES; page++) {
+                if (counts[page] == null) {
+                    continue;
+                }
+                for (int ii = 0; ii < PAGE_SIZE; ii++) {
+                    long count = counts[page][ii];
+                    if (count > 0) {
+                        distinct.add((page << PAGE_SHIFT) + ii);
+                        sum += count;
+                        max = Math.max(max, count);
+                    }
+                }
+            }
+            total = sum;
+            maxCount = max;
+            byFrequency = sortByFrequency(distinct.toArray());
+
+            int[] fontDistinct = new int[fonts.length];
+            long[] fontOccurrences = new long[fonts.length];
+            IntList none = new IntList();
+            for (int codePoint : byFrequency) {
+                long count = getCount(codePoint);
+                boolean covered = false;
+                for (int ff = 0; ff < fonts.length; ff++) {
+                    boolean canDisplay = coverage != null
+                            ? coverage.canDisplay(fonts[ff], codePoint)
+                            : fonts[ff].canDisplay(codePoint);
+                    if (canDisplay) {
+                        fontDistinct[ff]++;
+                        fontOccurrences[ff] += count;
+                        covered = true;
+                    }
+                }
+                if (!covered) {
+                    none.add(codePoint);
+                }
+            }
+            uncovered = none.toArray();
+            fontCoverage = new FontCoverage[fonts.length];
+            for (int ff = 0; ff < fonts.length; ff++) {
+                fontCoverage[ff] = new FontCoverage(
+                        fonts[ff], fontDistinct[ff], fontOccurrences[ff]);
+            }
+            Arrays.sort(fontCoverage, new Comparator<FontCoverage>() {
+
+                @Override
+                public int compare(FontCoverage a, FontCoverage b) {
+                    return Long.compare(b.occurrences, a.occurrences);
+                }
+            });
+        }
+
+        /** Most frequent first, then in code point order. */
+        private int[] sortByFrequency(int[] codePoints) {
+            long[] keys = new long[codePoints.length];
+            for (int ii = 0; ii < codePoints.length; ii++) {
+                // count above, reversed code point below, so ascending keys
+                // are ascending counts and descending code points
+                keys[ii] = (getCount(codePoints[ii]) << 21)
+                        | (Character.MAX_CODE_POINT - codePoints[ii]);
+            }
+            Arrays.sort(keys);
+            int[] sorted = new int[keys.length];
+            for (int ii = 0; ii < keys.length; ii++) {
+                sorted[ii] = Character.MAX_CODE_POINT
+                        - (int) (keys[keys.length - 1 - ii] & 0x1FFFFF);
+            }
+            return sorted;
+        }
+
+        public long getCount(int codePoint) {
+            if (codePoint < 0 || codePoint >= UnicodeExplorer.numberUnicodes) {
+                return 0;
+            }
+            long[] page = counts[codePoint >> PAGE_SHIFT];
+            return page == null ? 0 : page[codePoint & (PAGE_SIZE - 1)];
+        }
+
+        public long getMaxCount() {
+            return maxCount;
+        }
+
+        public long getTotal() {
+            return total;
+        }
+
+        public int[] getByFrequency() {
+            return byFrequency;
+        }
+
+        public int[] getUncovered() {
+            return uncovered;
+        }
+
+        /** The fonts, covering the most occurrences first. */
+        public FontCoverage[] getFontCoverage() {
+            return fontCoverage;
+        }
+
+        public double getMegabytesPerSecond() {
+            return nanos == 0 ? 0 : bytes * 1e9 / nanos / (1 << 20);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT,
+                    "%s: %d bytes, %d code points, %d distinct, "
+                    + "%d uncovered, %d malformed in %dms (%.0fMB/s)",
+                    file.getName(), bytes, total, byFrequency.length,
+                    uncovered.length, malformed,
+                    TimeUnit.NANOSECONDS.toMillis(nanos),
+                    getMegabytesPerSecond());
+        }
+    }
+
+    static void log(Result result) {
+        Logger.getLogger(TextAnalyzer.class.getName()).log(
+                Level.INFO, result.toString());
+    }
+}
@@ -0,0 +1,107 @@
+package org.pscode.unicodeglyphs;
+
+import java.util.*;
+
+/**
+ * The contiguous ranges of each {@link Character.UnicodeBlock} over the
+ * explorer's code point range, with the number of defined code points in
+ * each. Computed once, on first use.
+ */
+class UnicodeBlocks {
+
+    private static UnicodeBlocks instance;
+    private final Character.UnicodeBlock[] blocks;
+    private final int[] starts;
+    private final int[] ends;
+    private final int[] definedCounts;
+
+    private UnicodeBlocks(int numberCodePoints) {
+        ArrayList<Character.UnicodeBlock> blockList =
+                new ArrayList<Character.UnicodeBlock>();
+        IntList startList = new IntList(512);
+        IntList endList = new IntList(512);
+        IntList definedList = new IntList(512);
+        Character.UnicodeBlock current = null;
+        int defined = 0;
+        for (int codePoint = 0; codePoint < numberCodePoints; codePoint++) {
+            Character.UnicodeBlock block = Character.UnicodeBlock.of(codePoint);
+            if (block != current) {
+                if (current != null) {
+                    endList.add(codePoint);
+                    definedList.add(defined);
+                }
+                if (block != null) {
+                    blockList.add(block);
+                    startList.add(codePoint);
+                }
+                current = block;
+                defined = 0;
+            }
+            if (block != null && Character.isDefined(codePoint)) {
+                defined++;
+            }
+        }
+        if (current != null) {
+            endList.add(numberCodePoints);
+            definedList.add(defined);
+        }
+        blocks = blockList.toArray(
+                new Character.UnicodeBlock[blockList.size()]);
+        starts = startList.toArray();
+        ends = endList.toArray();
+        definedCounts = definedList.toArray();
+    }
+
+    public static synchronized UnicodeBlocks getInstance() {
+        if (instance == null) {
+            instance = new UnicodeBlocks(UnicodeExplorer.numberUnicodes);
+        }
+        return instance;
+    }
+
+    public int size() {
+        return blocks.length;
+    }
+
+    public Character.UnicodeBlock getBlock(int index) {
+        return blocks[index];
+    }
+
+    /** The first code point of the block. */
+    public int getStart(int index) {
+        return starts[index];
+    }
+
+    /** One past the last code point of the block. */
+    public int getEnd(int index) {
+        return ends[index];
+    }
+
+    public int getDefinedCount(int index) {
+        return definedCounts[index];
+    }
+
+    /**
+     * @return the index of the block containing the code point, or -1 when
+     * it is not in any block
+     */
+    public int indexOf(int codePoint) {
+        int index = Arrays.binarySearch(starts, codePoint);
+        if (index < 0) {
+            index = -index - 2;
+        }
+        if (index < 0 || codePoint >= ends[index]) {
+            return -1;
+        }
+        return index;
+    }
+
+    public int indexOf(Character.UnicodeBlock block) {
+        for (int ii = 0; ii < blocks.length; ii++) {
+            if (blocks[ii] == block) {
+                return ii;
+            }
+        }
+        return -1;
+    }
+}
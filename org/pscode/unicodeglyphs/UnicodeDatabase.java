@@ -0,0 +1,643 @@
+package org.pscode.unicodeglyphs;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.*;
+
+/**
+ * Properties from a local copy of the Unicode Character Database, for what
+ * {@link Character} does not expose (decompositions, numeric values, case
+ * mappings, East Asian width) and for a newer Unicode version than the
+ * JDK's. Loaded from the directory named by the <code>uglys.ucd.dir</code>
+ * system property, which holds <code>UnicodeData.txt</code> and, optionally,
+ * <code>Blocks.txt</code>, <code>Scripts.txt</code> and
+ * <code>EastAsianWidth.txt</code>.
+ * <p>
+ * The files are mapped and parsed in place, without a String per line.
+ * UnicodeData becomes one row per record in parallel primitive arrays,
+ * sorted by code point, with <code>First&gt;/Last&gt;</code> pairs kept as
+ * one row covering the range; its text fields (name, decomposition,
+ * numeric value) are read from the mapped file when asked for. The other
+ * files become sorted range tables. Without the property, or when
+ * UnicodeData cannot be read, there is no instance and callers use
+ * {@link Character}.
+ * <p>
+ * The instance is loaded once, by the first call to {@link #getInstance()},
+ * which the explorer makes off the EDT at startup. Later calls, and
+ * {@link #nameOf(int)}, read it without locking; <code>nameOf</code> never
+ * waits for the load, and names code points as {@link Character} does
+ * until it is done.
+ */
+class UnicodeDatabase {
+
+    public static final String DIRECTORY =
+            System.getProperty("uglys.ucd.dir");
+    private static final String[] HANGUL_L = {
+        "G", "GG", "N", "D", "DD", "R", "M", "B", "BB", "S", "SS", "", "J",
+        "JJ", "C", "K", "T", "P", "H"
+    };
+    private static final String[] HANGUL_V = {
+        "A", "AE", "YA", "YAE", "EO", "E", "YEO", "YE", "O", "WA", "WAE",
+        "OE", "YO", "U", "WEO", "WE", "WI", "YU", "EU", "YI", "I"
+    };
+    private static final String[] HANGUL_T = {
+        "", "G", "GG", "GS", "N", "NJ", "NH", "D", "L", "LG", "LM", "LB",
+        "LS", "LT", "LP", "LH", "M", "B", "BS", "S", "SS", "NG", "J", "C",
+        "K", "T", "P", "H"
+    };
+    private static final int HANGUL_BASE = 0xAC00;
+    private static final int HANGUL_COUNT = 11172;
+    private static volatile UnicodeDatabase instance;
+    /** Set once loading has been tried, after {@link #instance}. */
+    private static volatile boolean loaded;
+    private final File directory;
+    /** UnicodeData.txt, which the text fields are read from. */
+    private final ByteBuffer unicodeData;
+    private final int[] codePoints;
+    /** The last code point of each row; past its code point for ranges. */
+    private final int[] rangeEnds;
+    private final int[] lineStarts;
+    /** As {@link Character#getType(int)}. */
+    private final byte[] categories;
+    private final byte[] combiningClasses;
+    private final byte[] bidiClasses;
+    private final String[] bidiClassNames;
+    private final boolean[] mirrored;
+    /** Simple case mappings, 0 for none. */
+    private final int[] upperCase;
+    private final int[] lowerCase;
+    private final int[] titleCase;
+    private final RangeTable blocks;
+    private final RangeTable scripts;
+    private final RangeTable eastAsianWidths;
+    private long loadTimeNanos;
+
+    private UnicodeDatabase(File directory) throws IOException {
+        this.directory = directory;
+        unicodeData = map(new File(directory, "UnicodeData.txt"));
+        int lines = countLines(unicodeData);
+        IntList rows = new IntList(lines);
+        IntList ends = new IntList(lines);
+        IntList starts = new IntList(lines);
+        categories = new byte[lines];
+        combiningClasses = new byte[lines];
+        bidiClasses = new byte[lines];
+        mirrored = new boolean[lines];
+        upperCase = new int[lines];
+        lowerCase = new int[lines];
+        titleCase = new int[lines];
+        HashMap<String, Integer> bidiIds = new HashMap<String, Integer>();
+        ArrayList<String> bidiNames = new ArrayList<String>();
+
+        ByteBuffer b = unicodeData;
+        int limit = b.limit();
+        int pos = 0;
+        int[] fields = new int[15];
+        while (pos < limit) {
+            int lineStart = pos;
+            int lineEnd = indexOf(b, (byte) '\n', pos, limit);
+            pos = lineEnd + 1;
+            if (lineEnd == lineStart || b.get(lineStart) == '#') {
+                continue;
+            }
+            if (splitFields(b, lineStart, lineEnd, fields) < fields.length) {
+                continue;
+            }
+            int codePoint = parseHex(b, lineStart, fields[1] - 1);
+            if (isRangeLast(b, fields[1], fields[2] - 1) && rows.size() > 0) {
+                // closes the range the previous row opened
+                ends.set(rows.size() - 1, codePoint);
+                continue;
+            }
+            int row = rows.size();
+            rows.add(codePoint);
+            ends.add(codePoint);
+            starts.add(lineStart);
+            categories[row] = (byte) getCategory(b, fields[2]);
+            combiningClasses[row] = (byte) parseDecimal(
+                    b, fields[3], fields[4] - 1);
+            String bidi = getString(b, fields[4], fields[5] - 1);
+            Integer bidiId = bidiIds.get(bidi);
+            if (bidiId == null) {
+                bidiId = bidiNames.size();
+                bidiIds.put(bidi, bidiId);
+                bidiNames.add(bidi);
+            }
+            bidiClasses[row] = bidiId.byteValue();
+            mirrored[row] = b.get(fields[9]) == 'Y';
+            upperCase[row] = parseHex(b, fields[12], fields[13] - 1);
+            lowerCase[row] = parseHex(b, fields[13], fields[14] - 1);
+            titleCase[row] = parseHex(b, fields[14], lineEnd);
+        }
+        codePoints = rows.toArray();
+        rangeEnds = ends.toArray();
+        lineStarts = starts.toArray();
+        bidiClassNames = bidiNames.toArray(new String[bidiNames.size()]);
+
+        blocks = RangeTable.load(new File(directory, "Blocks.txt"));
+        scripts = RangeTable.load(new File(directory, "Scripts.txt"));
+        eastAsianWidths = RangeTable.load(
+                new File(directory, "EastAsianWidth.txt"));
+    }
+
+    /**
+     * @return the database of <code>uglys.ucd.dir</code>, loaded on the
+     * calling thread on first use, or <code>null</code> when there is none
+     */
+    public static UnicodeDatabase getInstance() {
+        if (!loaded) {
+            loadInstance();
+        }
+        return instance;
+    }
+
+    /**
+     * @return the database if it has been loaded, without waiting for it,
+     * for callers on the EDT
+     */
+    public static UnicodeDatabase getLoadedInstance() {
+        return instance;
+    }
+
+    private static synchronized void loadInstance() {
+        if (!loaded) {
+            if (DIRECTORY != null) {
+                instance = load(new File(DIRECTORY));
+            }
+            loaded = true;
+        }
+    }
+
+    /**
+     * @return the database in the directory, or <code>null</code> after
+     * logging why it could not be read
+     */
+    static UnicodeDatabase load(File directory) {
+        long start = System.nanoTime();
+        try {
+            UnicodeDatabase database = new UnicodeDatabase(directory);
+            database.loadTimeNanos = System.nanoTime() - start;
+            Logger.getLogger(UnicodeDatabase.class.getName()).log(
+                    Level.INFO, database.toString());
+            return database;
+        } catch (IOException | RuntimeException e) {
+            Logger.getLogger(UnicodeDatabase.class.getName()).log(
+                    Level.WARNING, "Unicode database not loaded from "
+                    + directory, e);
+            return null;
+        }
+    }
+
+    /**
+     * The name of the code point from the database when it is loaded and
+     * has one, otherwise from {@link Character#getName(int)}, which also
+     * names private use and surrogate code points by their block.
+     */
+    public static String nameOf(int codePoint) {
+        UnicodeDatabase database = instance;
+        String name = database == null ? null : database.getName(codePoint);
+        return name != null ? name : Character.getName(codePoint);
+    }
+
+    /** What the names depend on, for {@link NameIndexSnapshot}. */
+    public String getKey() {
+        File file = new File(directory, "UnicodeData.txt");
+        return file.getAbsolutePath() + " " + file.length() + " "
+                + file.lastModified();
+    }
+
+    private static ByteBuffer map(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(
+                file.toPath(), StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    private static int countLines(ByteBuffer b) {
+        int lines = 1;
+        for (int ii = 0; ii < b.limit(); ii++) {
+            if (b.get(ii) == '\n') {
+                lines++;
+            }
+        }
+        return lines;
+    }
+
+    private static int indexOf(ByteBuffer b, byte value, int from, int limit) {
+        for (int ii = from; ii < limit; ii++) {
+            if (b.get(ii) == value) {
+                return ii;
+            }
+        }
+        return limit;
+    }
+
+    /**
+     * Puts the start of each ';' separated field of the line in fields.
+     *
+     * @return the number of fields
+     */
+    private static int splitFields(
+            ByteBuffer b, int start, int end, int[] fields) {
+        int count = 0;
+        fields[count++] = start;
+        for (int ii = start; ii < end && count < fields.length; ii++) {
+            if (b.get(ii) == ';') {
+                fields[count++] = ii + 1;
+            }
+        }
+        return count;
+    }
+
+    /** Parses hex digits, skipping spaces; 0 for none. */
+    private static int parseHex(ByteBuffer b, int start, int end) {
+        int value = 0;
+        for (int ii = start; ii < end; ii++) {
+            int c = b.get(ii);
+            if (c >= '0' && c <= '9') {
+                value = (value << 4) + c - '0';
+            } else if (c >= 'A' && c <= 'F') {
+                value = (value << 4) + c - 'A' + 10;
+            } else if (c >= 'a' && c <= 'f') {
+                value = (value << 4) + c - 'a' + 10;
+            } else if (c != ' ' && c != '\r') {
+                break;
+            }
+        }
+        return value;
+    }
+
+    private static int parseDecimal(ByteBuffer b, int start, int end) {
+        int value = 0;
+        for (int ii = start; ii < end; ii++) {
+            int c = b.get(ii);
+            if (c >= '0' && c <= '9') {
+                value = value * 10 + c - '0';
+            }
+        }
+        return value;
+    }
+
+    /** Reads an ASCII field, without surrounding spaces. */
+    private static String getString(ByteBuffer b, int start, int end) {
+        while (start < end && b.get(start) == ' ') {
+            start++;
+        }
+        while (end > start && (b.get(end - 1) == ' '
+                || b.get(end - 1) == '\r')) {
+            end--;
+        }
+        byte[] bytes = new byte[end - start];
+        for (int ii = 0; ii < bytes.length; ii++) {
+            bytes[ii] = b.get(start + ii);
+        }
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    private static boolean isRangeLast(ByteBuffer b, int start, int end) {
+        return end - start > 6 && b.get(start) == '<'
+                && b.get(end - 5) == 'L' && b.get(end - 4) == 'a'
+                && b.get(end - 3) == 's' && b.get(end - 2) == 't'
+                && b.get(end - 1) == '>';
+    }
+
+    /** Looks the two letter category up in the category names. */
+    private static int getCategory(ByteBuffer b, int start) {
+        char major = (char) b.get(start);
+        char minor = (char) b.get(start + 1);
+        String[] names = UnicodeProperties.CATEGORY_NAMES;
+        for (int ii = 0; ii < names.length; ii++) {
+            if (names[ii].length() == 2 && names[ii].charAt(0) == major
+                    && names[ii].charAt(1) == minor) {
+                return ii;
+            }
+        }
+        return Character.UNASSIGNED;
+    }
+
+    /** @return the row holding the code point, or -1 */
+    private int getRow(int codePoint) {
+        int row = Arrays.binarySearch(codePoints, codePoint);
+        if (row < 0) {
+            row = -row - 2;
+            if (row < 0 || codePoint > rangeEnds[row]) {
+                return -1;
+            }
+        }
+        return row;
+    }
+
+    /** Field <code>field</code> of a row, read from the mapped file. */
+    private String getField(int row, int field) {
+        int[] fields = new int[15];
+        int start = lineStarts[row];
+        int end = indexOf(unicodeData, (byte) '\n', start, unicodeData.limit());
+        int count = splitFields(unicodeData, start, end, fields);
+        if (field >= count) {
+            return "";
+        }
+        int fieldEnd = field + 1 < count ? fields[field + 1] - 1 : end;
+        return getString(unicodeData, fields[field], fieldEnd);
+    }
+
+    public boolean isDefined(int codePoint) {
+        return getRow(codePoint) >= 0;
+    }
+
+    /**
+     * The name, as {@link Character#getName(int)} gives it: algorithmic
+     * for Hangul syllables and the ideograph ranges, the Unicode 1.0 name
+     * for controls and <code>null</code> for unassigned, private use and
+     * surrogate code points.
+     */
+    public String getName(int codePoint) {
+        int row = getRow(codePoint);
+        if (row < 0) {
+            return null;
+        }
+        String name = getField(row, 1);
+        if (!name.startsWith("<")) {
+            return name;
+        }
+        if (codePoint >= HANGUL_BASE
+                && codePoint < HANGUL_BASE + HANGUL_COUNT) {
+            int s = codePoint - HANGUL_BASE;
+            int t = s % HANGUL_T.length;
+            int v = s / HANGUL_T.length % HANGUL_V.length;
+            int l = s / HANGUL_T.length / HANGUL_V.length;
+            return "HANGUL SYLLABLE " + HANGUL_L[l] + HANGUL_V[v] + HANGUL_T[t];
+        }
+        String hex = Integer.toHexString(codePoint).toUpperCase(Locale.ROOT);
+        if (name.startsWith("<CJK Ideograph")) {
+            return "CJK UNIFIED IDEOGRAPH-" + hex;
+        }
+        if (name.startsWith("<Tangut Ideograph")) {
+            return "TANGUT IDEOGRAPH-" + hex;
+        }
+        if (name.equals("<control>")) {
+            String oldName = getField(row, 10);
+            return oldName.length() == 0 ? null : oldName;
+        }
+        return null;
+    }
+
+    /** As {@link Character#getType(int)}. */
+    public int getCategory(int codePoint) {
+        int row = getRow(codePoint);
+        return row < 0 ? Character.UNASSIGNED : categories[row];
+    }
+
+    public int getCombiningClass(int codePoint) {
+        int row = getRow(codePoint);
+        return row < 0 ? 0 : combiningClasses[row] & 0xFF;
+    }
+
+    /** The bidi class, e.g. "L", or <code>null</code> when unassigned. */
+    public String getBidiClass(int codePoint) {
+        int row = getRow(codePoint);
+        return row < 0 ? null : bidiClassNames[bidiClasses[row]];
+    }
+
+    public boolean isMirrored(int codePoint) {
+        int row = getRow(codePoint);
+        return row >= 0 && mirrored[row];
+    }
+
+    /**
+     * The decomposition, as in UnicodeData, e.g. "&lt;compat&gt; 0020
+     * 0308", or an empty string.
+     */
+    public String getDecomposition(int codePoint) {
+        int row = getRow(codePoint);
+        return row < 0 ? "" : getField(row, 5);
+    }
+
+    /** The numeric value, e.g. "1/2", or an empty string. */
+    public String getNumericValue(int codePoint) {
+        int row = getRow(codePoint);
+        return row < 0 ? "" : getField(row, 8);
+    }
+
+    /** The simple upper case mapping, or the code point itself. */
+    public int getUpperCase(int codePoint) {
+        int row = getRow(codePoint);
+        return row < 0 || upperCase[row] == 0 ? codePoint : upperCase[row];
+    }
+
+    public int getLowerCase(int codePoint) {
+        int row = getRow(codePoint);
+        return row < 0 || lowerCase[row] == 0 ? codePoint : lowerCase[row];
+    }
+
+    public int getTitleCase(int codePoint) {
+        int row = getRow(codePoint);
+        return row < 0 || titleCase[row] == 0 ? codePoint : titleCase[row];
+    }
+
+    /** The block name, or <code>null</code> without Blocks.txt. */
+    public String getBlock(int codePoint) {
+        return blocks == null ? null : blocks.get(codePoint);
+    }
+
+    public String getScript(int codePoint) {
+        return scripts == null ? null : scripts.get(codePoint);
+    }
+
+    /** One of A, F, H, N, Na and W. */
+    public String getEastAsianWidth(int codePoint) {
+        if (eastAsianWidths == null) {
+            return null;
+        }
+        String width = eastAsianWidths.get(codePoint);
+        return width == null ? "N" : width;
+    }
+
+    public int size() {
+        return codePoints.length;
+    }
+
+    public long getLoadTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(loadTimeNanos);
+    }
+
+    /** Approximate heap retained by the tables, in bytes. */
+    public long getMemoryUsage() {
+        long rows = codePoints.length;
+        return rows * (4 * 6 + 4) + (blocks == null ? 0 : blocks.getMemoryUsage())
+                + (scripts == null ? 0 : scripts.getMemoryUsage())
+                + (eastAsianWidths == null
+                ? 0 : eastAsianWidths.getMemoryUsage());
+    }
+
+    @Override
+    public String toString() {
+        return "UnicodeDatabase " + directory + " rows: " + codePoints.length
+                + " blocks: " + (blocks == null ? 0 : blocks.size())
+                + " scripts: " + (scripts == null ? 0 : scripts.size())
+                + " widths: "
+                + (eastAsianWidths == null ? 0 : eastAsianWidths.size())
+                + " memory: " + (getMemoryUsage() / 1024) + "KB"
+                + " load: " + getLoadTimeMillis() + "ms";
+    }
+
+    /**
+     * The values of a UCD file of <code>start..end ; value</code> lines, as
+     * sorted ranges. <code># @missing:</code> lines give the value of code
+     * points no range covers, the last one covering a code point winning.
+     */
+    static class RangeTable {
+
+        private final int[] starts;
+        private final int[] ends;
+        private final int[] values;
+        private final int[] missingStarts;
+        private final int[] missingEnds;
+        private final int[] missingValues;
+        private final String[] names;
+
+        private RangeTable(long[] ranges, long[] missing, String[] names) {
+            starts = new int[ranges.length];
+            ends = new int[ranges.length];
+            values = new int[ranges.length];
+            for (int ii = 0; ii < ranges.length; ii++) {
+                starts[ii] = (int) (ranges[ii] >>> 42);
+                ends[ii] = (int) (ranges[ii] >>> 21) & 0x1FFFFF;
+                values[ii] = (int) ranges[ii] & 0x1FFFFF;
+            }
+            missingStarts = new int[missing.length];
+            missingEnds = new int[missing.length];
+            missingValues = new int[missing.length];
+            for (int ii = 0; ii < missing.length; ii++) {
+                missingStarts[ii] = (int) (missing[ii] >>> 42);
+                missingEnds[ii] = (int) (missing[ii] >>> 21) & 0x1FFFFF;
+                missingValues[ii] = (int) missing[ii] & 0x1FFFFF;
+            }
+            this.names = names;
+        }
+
+        /**
+         * @return the table of the file, or <code>null</code> when there
+         * is no such file
+         */
+        static RangeTable load(File file) throws IOException {
+            if (!file.isFile()) {
+                return null;
+            }
+            ByteBuffer b = map(file);
+            // start, end and value id packed as 21 bits each, so sorting
+            // the longs sorts the ranges
+            LongList ranges = new LongList();
+            LongList missing = new LongList();
+            HashMap<String, Integer> ids = new HashMap<String, Integer>();
+            ArrayList<String> names = new ArrayList<String>();
+            int limit = b.limit();
+            int pos = 0;
+            while (pos < limit) {
+                int lineStart = pos;
+                int lineEnd = indexOf(b, (byte) '\n', pos, limit);
+                pos = lineEnd + 1;
+                int start = lineStart;
+                LongList target = ranges;
+                if (lineEnd > start && b.get(start) == '#') {
+                    start = skipMissingPrefix(b, start, lineEnd);
+                    if (start < 0) {
+                        continue;
+                    }
+                    target = missing;
+                }
+                int semicolon = indexOf(b, (byte) ';', start, lineEnd);
+                if (semicolon == lineEnd || semicolon == start) {
+                    continue;
+                }
+                int comment = indexOf(b, (byte) '#', semicolon, lineEnd);
+                int dots = indexOf(b, (byte) '.', start, semicolon);
+                int first = parseHex(b, start, dots);
+                int last = dots < semicolon
+                        ? parseHex(b, dots + 2, semicolon) : first;
+                String name = getString(b, semicolon + 1, comment);
+                Integer id = ids.get(name);
+                if (id == null) {
+                    id = names.size();
+                    ids.put(name, id);
+                    names.add(name);
+                }
+                target.add(((long) first << 42) | ((long) last << 21) | id);
+            }
+            long[] sorted = ranges.toArray();
+            Arrays.sort(sorted);
+            return new RangeTable(sorted, missing.toArray(),
+                    names.toArray(new String[names.size()]));
+        }
+
+        /**
+         * @return the start of the range of a <code># @missing:</code>
+         * line, or -1 for any other comment
+         */
+        private static int skipMissingPrefix(ByteBuffer b, int start, int end) {
+            byte[] prefix = "# @missing:".getBytes(StandardCharsets.US_ASCII);
+            if (end - start <= prefix.length) {
+                return -1;
+            }
+            for (int ii = 0; ii < prefix.length; ii++) {
+                if (b.get(start + ii) != prefix[ii]) {
+                    return -1;
+                }
+            }
+            int ii = start + prefix.length;
+            while (ii < end && b.get(ii) == ' ') {
+                ii++;
+            }
+            return ii;
+        }
+
+        /** @return the value of the code point, or <code>null</code> */
+        public String get(int codePoint) {
+            int ii = Arrays.binarySearch(starts, codePoint);
+            if (ii < 0) {
+                ii = -ii - 2;
+            }
+            if (ii >= 0 && codePoint <= ends[ii]) {
+                return names[values[ii]];
+            }
+            for (int jj = missingStarts.length - 1; jj >= 0; jj--) {
+                if (codePoint >= missingStarts[jj]
+                        && codePoint <= missingEnds[jj]) {
+                    return names[missingValues[jj]];
+                }
+            }
+            return null;
+        }
+
+        public int size() {
+            return starts.length;
+        }
+
+        public long getMemoryUsage() {
+            return 12L * (starts.length + missingStarts.length)
+                    + 48L * names.length;
+        }
+    }
+
+    /** A growable long array. */
+    private static class LongList {
+
+        private long[] values = new long[256];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -1,28 +1,65 @@
 package org.pscode.unicodeglyphs;
 
 import java.awt.*;
+import java.awt.event.*;
+import java.awt.font.FontRenderContext;
+import java.awt.geom.Rectangle2D;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import javax.swing.event.*;
-import javax.swing.table.*;
 import javax.swing.plaf.basic.BasicComboBoxEditor;
 import javax.swing.text.Document;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.logging.*;
 
 public class UnicodeExplorer {
 
     public static final int codePointColumnWidth = 16;
-    public static final int numberUnicodes = 256 * 256;
-    private final ArrayList<Font> fontList = new ArrayList<Font>();
+    public static final int numberUnicodes = Character.MAX_CODE_POINT + 1;
+    private final HashMap<Font, Integer> fontIndexes =
+            new HashMap<Font, Integer>();
     private final SpinnerNumberModel startPage = new SpinnerNumberModel(
-            0, 0, numberUnicodes, 1);
-    private Font[] fontArray;
-    private JList<Font> fonts = new JList<Font>(fontArray);
+            0, 0, numberUnicodes - 1, 1);
+    private Font[] fontArray = new Font[0];
+    private final Font defaultFont = new Font(Font.SANS_SERIF, Font.PLAIN, 1);
+    private final FontListModel fontsModel = new FontListModel();
+    private final JList<Font> fonts = new JList<Font>(fontsModel);
     private final FontTableCellRenderer fontTableCellRenderer =
             new FontTableCellRenderer();
-    private final JTable codePointTable = new JTable(new CodePointTableModel(
-            numberUnicodes / codePointColumnWidth, codePointColumnWidth));
+    private final CodePointTableModel codePointTableModel =
+            new CodePointTableModel(numberUnicodes, codePointColumnWidth);
+    private final JTable codePointTable = new CodePointTable(
+            codePointTableModel);
+    private final GlyphPrefetcher glyphPrefetcher =
+            new GlyphPrefetcher(codePointTable, fontTableCellRenderer);
+    private volatile FontCoverageIndex fontCoverageIndex;
+    private volatile GlyphVerifier glyphVerifier;
+    private final FilteredCodePointListModel namedCodePointListModel =
+            new FilteredCodePointListModel();
+    private JList<Integer> namedCodePointList;
+    private JComboBox<String> codePointNameFilterCombo;
+    private final NamePartCompletionModel namePartCompletionModel =
+            new NamePartCompletionModel();
+    private static final int prototypeCodePoint = 'W';
+    private final StartupTimer startupTimer = new StartupTimer();
+    private final FontFallbackPanel fontFallbackPanel = new FontFallbackPanel();
+    private FontComparisonPanel fontComparisonPanel;
+    private final TextAnalysisPanel textAnalysisPanel = new TextAnalysisPanel();
+    private final JLabel queryStatus = new JLabel();
+    private final JTextField queryField = new JTextField(24);
+    private final JComboBox<Object> blockCombo = new JComboBox<Object>(
+            new Object[]{"All blocks"});
+    private final JComboBox<Object> scriptCombo = new JComboBox<Object>();
+    private final CodePointView.Cache viewCache =
+            new CodePointView.Cache(codePointColumnWidth);
+    /** Set while the navigator combos are changed programmatically. */
+    private boolean navigating = false;
+    private CodePointNameIndex nameIndex;
+    private SwingWorker<CodePointSet, Void> queryWorker;
+    private boolean guiInitialized = false;
 
     public static void main(String[] args) {
         Runnable r = new Runnable() {
@@ -51,6 +88,7 @@ public class UnicodeExplorer {
                 // should be done last, to avoid flickering, moving,
                 // resizing artifacts.
                 f.setVisible(true);
+                ue.startupTimer.mark("frame visible");
             }
         };
         // Swing GUIs should be created and updated on the EDT
@@ -62,73 +100,248 @@ public class UnicodeExplorer {
         if (!e.getValueIsAdjusting()) {
             int row = codePointTable.getSelectedRow();
             int col = codePointTable.getSelectedColumn();
-            int codePoint = (row * codePointColumnWidth) + col;
-            setCodePointDetailView(codePoint);
+            if (row < 0 || col < 0) {
+                return;
+            }
+            int codePoint = codePointTableModel.getCodePointAt(row, col);
+            if (codePoint >= 0) {
+                setCodePointDetailView(codePoint);
+            }
         }
     }
     JPanel characterPanel = null;
-    JList<Font> supportedFonts = new JList<Font>();
+    FontListModel supportedFontsModel = new FontListModel();
+    JList<Font> supportedFonts = new JList<Font>(supportedFontsModel);
+    FontCellRenderer supportedFontsRenderer = new FontCellRenderer();
+    JLabel supportedFontsStatus = new JLabel();
     JLabel bigCharacter = new JLabel();
     JLabel characterDetails = new JLabel();
+    int detailCodePoint = -1;
+    private Font[] supportedFontBuffer = new Font[0];
 
     public void setFontsForThisCodePoint(int codePoint) {
-        DefaultListModel<Font> dlm = new DefaultListModel<Font>();
-        for (Font font : fontArray) {
-            if (font.canDisplay(codePoint)) {
-                dlm.addElement(font);
+        long start = Metrics.start();
+        if (supportedFontBuffer.length != fontArray.length) {
+            supportedFontBuffer = new Font[fontArray.length];
+        }
+        int count = 0;
+        FontCoverageIndex index = fontCoverageIndex;
+        if (index != null) {
+            count = index.getSupportedFonts(codePoint, supportedFontBuffer);
+        } else {
+            for (Font font : fontArray) {
+                if (font.canDisplay(codePoint)) {
+                    supportedFontBuffer[count++] = font;
+                }
             }
         }
-        supportedFonts.setModel(dlm);
+        // claimed support, checked against the glyphs once they are drawn
+        GlyphVerifier verifier = glyphVerifier;
+        if (verifier != null) {
+            int verified = verifier.sortVerifiedFirst(
+                    codePoint, supportedFontBuffer, count);
+            supportedFontsRenderer.setVerifiedCount(verified);
+            supportedFontsStatus.setText(verified + " of " + count
+                    + " fonts verified");
+        } else {
+            supportedFontsRenderer.setVerifiedCount(count);
+            supportedFontsStatus.setText(count + " fonts");
+        }
+        supportedFonts.clearSelection();
+        supportedFontsModel.setFonts(supportedFontBuffer, count);
         supportedFonts.setVisibleRowCount(5);
+        Metrics.FONT_SUPPORT.stop(start);
+    }
+
+    /**
+     * Sets the fonts (and optionally their coverage index) directly, for
+     * use without {@link #initGui(Container)}, e.g. in benchmarks.
+     */
+    void setFonts(Font[] fonts, FontCoverageIndex index) {
+        fontArray = fonts;
+        fontCoverageIndex = index;
+        fontTableCellRenderer.setFontCoverageIndex(index);
+    }
+
+    /**
+     * Builds the per-font coverage bitmaps off the EDT. Until they are ready
+     * the selection falls back to scanning the fonts directly.
+     */
+    private void buildFontCoverageIndex() {
+        startupTimer.begin("coverage index");
+        final Font[] fontsToIndex = fontArray;
+        SwingWorker<FontCoverageIndex, Void> worker =
+                new SwingWorker<FontCoverageIndex, Void>() {
+
+                    @Override
+                    protected FontCoverageIndex doInBackground() {
+                        return FontCoverageIndex.build(
+                                fontsToIndex, numberUnicodes);
+                    }
+
+                    @Override
+                    protected void done() {
+                        try {
+                            fontCoverageIndex = get();
+                            fontFallbackPanel.setFonts(
+                                    fontsToIndex, fontCoverageIndex);
+                            textAnalysisPanel.setFonts(
+                                    fontsToIndex, fontCoverageIndex);
+                        } catch (Exception e) {
+                            Logger.getLogger(
+                                    UnicodeExplorer.class.getName()).log(
+                                    Level.WARNING,
+                                    "Font coverage index not built", e);
+                            return;
+                        }
+                        fontTableCellRenderer.setFontCoverageIndex(
+                                fontCoverageIndex);
+                        fontComparisonPanel.invalidateSamples();
+                        codePointTable.repaint();
+                        if (detailCodePoint >= 0) {
+                            setFontsForThisCodePoint(detailCodePoint);
+                        }
+                        startupTimer.end("coverage index");
+                        verifyGlyphs(fontCoverageIndex);
+                    }
+                };
+        worker.execute();
+    }
+
+    /**
+     * Draws the glyphs the fonts claim off the EDT, to catch those that are
+     * only .notdef boxes. Until it is done, claimed support is shown as is.
+     */
+    private void verifyGlyphs(final FontCoverageIndex index) {
+        startupTimer.begin("glyph verification");
+        SwingWorker<GlyphVerifier, Void> worker =
+                new SwingWorker<GlyphVerifier, Void>() {
+
+                    @Override
+                    protected GlyphVerifier doInBackground() {
+                        return GlyphVerifier.build(index);
+                    }
+
+                    @Override
+                    protected void done() {
+                        try {
+                            glyphVerifier = get();
+                        } catch (Exception e) {
+                            Logger.getLogger(
+                                    UnicodeExplorer.class.getName()).log(
+                                    Level.WARNING,
+                                    "Glyphs not verified", e);
+                            return;
+                        }
+                        fontTableCellRenderer.setGlyphVerifier(glyphVerifier);
+                        glyphPrefetcher.invalidate();
+                        fontComparisonPanel.invalidateSamples();
+                        codePointTable.repaint();
+                        if (detailCodePoint >= 0) {
+                            setFontsForThisCodePoint(detailCodePoint);
+                        }
+                        startupTimer.end("glyph verification");
+                    }
+                };
+        worker.execute();
     }
 
     public void setCodePointDetailView(int codePoint) {
+        long start = Metrics.start();
+        detailCodePoint = codePoint;
         String s = UnicodeUtil.getCodePointString(codePoint);
         bigCharacter.setText(s);
 
+        UnicodeProperties properties = UnicodeProperties.getInstance();
+        UnicodeDatabase database = UnicodeDatabase.getLoadedInstance();
+        int p = properties.getProperties(codePoint);
         StringBuilder sb = new StringBuilder("<html><body><table>");
-        sb.append(getTableRow("Character", s));
-        sb.append(getTableRow("Name", "" + Character.getName(codePoint)));
-        sb.append(getTableRow("Code Point", "" + codePoint));
-        sb.append(getTableRow(
-                "Is Defined", "" + Character.isDefined(codePoint)));
-        sb.append(getTableRow(
-                "Is BMP", "" + Character.isBmpCodePoint(codePoint)));
-        sb.append(getTableRow(
-                "Is ISO Control", "" + Character.isISOControl(codePoint)));
-        sb.append(getTableRow(
-                "Is Mirrored", "" + Character.isMirrored(codePoint)));
-
-        sb.append(getTableRow(
-                "Is Digit", "" + Character.isDigit(codePoint)));
-        sb.append(getTableRow(
-                "Is Letter", "" + Character.isLetter(codePoint)));
-        sb.append(getTableRow(
-                "Is Alphabetic", "" + Character.isAlphabetic(codePoint)));
-        sb.append(getTableRow(
-                "Is Ideographic", "" + Character.isIdeographic(codePoint)));
-
-        sb.append(getTableRow(
-                "Is Space Character", "" + Character.isSpaceChar(codePoint)));
-        sb.append(getTableRow(
-                "Is White Space", "" + Character.isWhitespace(codePoint)));
-
-        sb.append(getTableRow(
-                "Is Lower Case", "" + Character.isLowerCase(codePoint)));
-        sb.append(getTableRow(
-                "Is Title Case", "" + Character.isTitleCase(codePoint)));
-        sb.append(getTableRow(
-                "Is Upper Case", "" + Character.isUpperCase(codePoint)));
-
+        appendTableRow(sb, "Character", s);
+        appendTableRow(sb, "Name", UnicodeDatabase.nameOf(codePoint));
+        appendTableRow(sb, "Code Point", codePoint);
+        if (database != null) {
+            // the local UCD, which may be newer than the JDK's
+            appendTableRow(sb, "Category", UnicodeProperties.CATEGORY_NAMES[
+                    database.getCategory(codePoint)]);
+            appendTableRow(sb, "Block", database.getBlock(codePoint));
+            appendTableRow(sb, "Script", database.getScript(codePoint));
+            appendTableRow(sb, "Is Defined", database.isDefined(codePoint));
+        } else {
+            appendTableRow(sb, "Category", UnicodeProperties.CATEGORY_NAMES[
+                    (p & UnicodeProperties.CATEGORY_MASK)
+                    >>> UnicodeProperties.CATEGORY_SHIFT]);
+            appendTableRow(sb, "Block", properties.getBlock(codePoint));
+            appendTableRow(sb, "Script", properties.getScript(codePoint));
+            appendTableRow(sb, "Is Defined",
+                    (p & UnicodeProperties.DEFINED) != 0);
+        }
+        appendTableRow(sb, "Is BMP", Character.isBmpCodePoint(codePoint));
+        appendTableRow(sb, "Is ISO Control",
+                (p & UnicodeProperties.ISO_CONTROL) != 0);
+        appendTableRow(sb, "Is Mirrored", database != null
+                ? database.isMirrored(codePoint)
+                : (p & UnicodeProperties.MIRRORED) != 0);
+
+        appendTableRow(sb, "Is Digit",
+                (p & UnicodeProperties.DIGIT) != 0);
+        appendTableRow(sb, "Is Letter",
+                (p & UnicodeProperties.LETTER) != 0);
+        appendTableRow(sb, "Is Alphabetic",
+                (p & UnicodeProperties.ALPHABETIC) != 0);
+        appendTableRow(sb, "Is Ideographic",
+                (p & UnicodeProperties.IDEOGRAPHIC) != 0);
+
+        appendTableRow(sb, "Is Space Character",
+                (p & UnicodeProperties.SPACE_CHAR) != 0);
+        appendTableRow(sb, "Is White Space",
+                (p & UnicodeProperties.WHITESPACE) != 0);
+
+        appendTableRow(sb, "Is Lower Case",
+                (p & UnicodeProperties.LOWER_CASE) != 0);
+        appendTableRow(sb, "Is Title Case",
+                (p & UnicodeProperties.TITLE_CASE) != 0);
+        appendTableRow(sb, "Is Upper Case",
+                (p & UnicodeProperties.UPPER_CASE) != 0);
+
+        if (database != null) {
+            appendTableRow(sb, "Decomposition",
+                    database.getDecomposition(codePoint));
+            appendTableRow(sb, "Numeric Value",
+                    database.getNumericValue(codePoint));
+            appendTableRow(sb, "Upper Case", UnicodeUtil.getCodePointString(
+                    database.getUpperCase(codePoint)));
+            appendTableRow(sb, "Lower Case", UnicodeUtil.getCodePointString(
+                    database.getLowerCase(codePoint)));
+            appendTableRow(sb, "Title Case", UnicodeUtil.getCodePointString(
+                    database.getTitleCase(codePoint)));
+            appendTableRow(sb, "Combining Class",
+                    database.getCombiningClass(codePoint));
+            appendTableRow(sb, "Bidi Class", database.getBidiClass(codePoint));
+            appendTableRow(sb, "East Asian Width",
+                    database.getEastAsianWidth(codePoint));
+        }
 
         sb.append("</table></body></html>");
         characterDetails.setText(sb.toString());
 
         setFontsForThisCodePoint(codePoint);
+        if (fontComparisonPanel != null) {
+            fontComparisonPanel.showCodePoint(codePoint);
+        }
+        Metrics.DETAIL_VIEW.stop(start);
     }
 
     public String getTableRow(String key, String value) {
-        return "<tr><th>" + key + "</th><td>" + value + "</td></tr>";
+        return appendTableRow(new StringBuilder(), key, value).toString();
+    }
+
+    /** Appends a row of the key and value, escaped as HTML. */
+    public StringBuilder appendTableRow(
+            StringBuilder sb, String key, Object value) {
+        sb.append("<tr><th>");
+        UnicodeUtil.appendHtml(sb, key).append("</th><td>");
+        UnicodeUtil.appendHtml(sb, String.valueOf(value));
+        return sb.append("</td></tr>");
     }
 
     public Component getCharacterPanel() {
@@ -139,6 +352,7 @@ public class UnicodeExplorer {
             characterAndFonts.add(bigCharacter, BorderLayout.PAGE_START);
             characterAndFonts.add(
                     new JScrollPane(supportedFonts), BorderLayout.CENTER);
+            characterAndFonts.add(supportedFontsStatus, BorderLayout.PAGE_END);
 
             JSplitPane sp = new JSplitPane(
                     JSplitPane.HORIZONTAL_SPLIT,
@@ -146,7 +360,7 @@ public class UnicodeExplorer {
                     new JScrollPane(characterDetails));
 
             characterPanel.add(sp, BorderLayout.CENTER);
-            supportedFonts.setCellRenderer(new FontCellRenderer());
+            supportedFonts.setCellRenderer(supportedFontsRenderer);
             ListSelectionListener lsl = new ListSelectionListener() {
 
                 @Override
@@ -162,17 +376,28 @@ public class UnicodeExplorer {
 
     @SuppressWarnings("unchecked")
     public void initGui(Container c) {
-        if (fontList.size() != 0) {
+        if (guiInitialized) {
             return;
         }
-
-        GraphicsEnvironment ge =
-                GraphicsEnvironment.getLocalGraphicsEnvironment();
-        String[] fontNameArray = ge.getAvailableFontFamilyNames();
+        guiInitialized = true;
+        startupTimer.begin("gui");
+        Metrics.getInstance().install();
+        UnicodeProperties.getInstance().prepare();
+        loadDatabase();
 
         codePointTable.setDefaultRenderer(Object.class, fontTableCellRenderer);
         codePointTable.setRowSelectionAllowed(false);
         codePointTable.setCellSelectionEnabled(true);
+        codePointTableModel.setWhenCollapsed(new Runnable() {
+
+            @Override
+            public void run() {
+                // the rows moved, which cleared the selection
+                if (detailCodePoint >= 0) {
+                    selectCodePoint(detailCodePoint);
+                }
+            }
+        });
         ListSelectionModel lsm = codePointTable.getSelectionModel();
         lsm.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
         ListSelectionListener codePointListSelectionListener =
@@ -211,40 +436,11 @@ public class UnicodeExplorer {
         };
         codePointTable.getColumnModel().addColumnModelListener(tcml);
 
-        Logger.getLogger(
-                UnicodeExplorer.class.getCanonicalName()).log(
-                Level.INFO, "fontNameArray: " + fontNameArray.length);
-        fontArray = new Font[fontNameArray.length];
-        String[] logicalFonts = {
-            Font.DIALOG, Font.DIALOG_INPUT,
-            Font.MONOSPACED,
-            Font.SANS_SERIF, Font.SERIF
-        };
-        for (int ii = 0; ii < logicalFonts.length; ii++) {
-            Font f = new Font(logicalFonts[ii], Font.PLAIN, 1);
-            fontArray[ii] = f;
-            fontList.add(f);
-        }
-        int count = 0;
-        for (int ii = 0; ii < fontNameArray.length; ii++) {
-            Font f = new Font(fontNameArray[ii], Font.PLAIN, 1);
-            if (!fontList.contains(f)) {
-                fontArray[logicalFonts.length + count++] = f;
-                fontList.add(f);
-            }
-        }
-
-        Logger.getLogger(
-                UnicodeExplorer.class.getCanonicalName()).log(
-                Level.INFO, "fontArray: " + fontArray.length);
-
-        fonts = new JList<Font>(fontArray);
         fonts.setCellRenderer(new FontCellRenderer());
         fonts.setVisibleRowCount(8);
-        Dimension d = fonts.getPreferredSize();
-        Dimension d1 = new Dimension(
-                (int) (d.getWidth() / 3), (int) d.getHeight());
-        fonts.setPreferredSize(d1);
+        // until the fonts are loaded and measured off the EDT
+        fonts.setFixedCellWidth(240);
+        fonts.setFixedCellHeight(32);
         ListSelectionListener lsl = new ListSelectionListener() {
 
             @Override
@@ -253,14 +449,13 @@ public class UnicodeExplorer {
                 if (index < 0) {
                     index = 0;
                 }
-                Font f = fontArray[index].deriveFont(32f);
-                fontTableCellRenderer.setDisplayFont(f);
-                codePointTable.setRowHeight(f.getSize());
-                bigCharacter.setFont(f.deriveFont(128f));
+                setDisplayFont(fontsModel.getElementAt(index));
             }
         };
         fonts.addListSelectionListener(lsl);
         JScrollPane fontScroll = new JScrollPane(fonts);
+        // the table is live before any font has been enumerated
+        setDisplayFont(defaultFont);
 
         JPanel tools = new JPanel(new FlowLayout(FlowLayout.CENTER));
 
@@ -276,33 +471,59 @@ public class UnicodeExplorer {
         };
         page.addChangeListener(cl);
 
+        blockCombo.addActionListener(new ActionListener() {
+
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                if (!navigating) {
+                    showBlock(blockCombo.getSelectedIndex() - 1);
+                }
+            }
+        });
+        scriptCombo.addItem("All scripts");
+        for (Character.UnicodeScript script : Character.UnicodeScript.values()) {
+            scriptCombo.addItem(script);
+        }
+        scriptCombo.addActionListener(new ActionListener() {
+
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                if (!navigating) {
+                    Object item = scriptCombo.getSelectedItem();
+                    showScript(item instanceof Character.UnicodeScript
+                            ? (Character.UnicodeScript) item : null);
+                }
+            }
+        });
+        tools.add(blockCombo);
+        tools.add(scriptCombo);
+        loadBlocks();
+
+        queryField.setToolTipText(
+                "<html>e.g. <code>letter block:GREEK !font</code> or "
+                + "<code>defined !control !anyfont</code>; "
+                + "empty shows everything");
+        queryField.addActionListener(new ActionListener() {
+
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                applyQuery(queryField.getText());
+            }
+        });
+        tools.add(new JLabel("Query"));
+        tools.add(queryField);
+        tools.add(queryStatus);
+
         JPanel codePointTableComponent = new JPanel(new BorderLayout(3, 3));
         codePointTableComponent.add(tools, BorderLayout.PAGE_START);
 
         JScrollPane codePointTableScroll = new JScrollPane(codePointTable);
+        glyphPrefetcher.install(codePointTableScroll.getViewport());
 
-        ArrayList<Integer> namedCodePoints = new ArrayList<Integer>();
-        final FilteredCodePointListModel namedCodePointListModel =
-                new FilteredCodePointListModel();
-        ListCellRenderer namedCodePointListeCellRenderer =
+        ListCellRenderer<Object> namedCodePointListeCellRenderer =
                 new CodePointListCellRenderer();
 
-        String s;
-        for (int ii = 0; ii < numberUnicodes; ii++) {
-            s = Character.getName(ii);
-            if (s != null) {
-                s = s.trim().toLowerCase();
-                if (!s.startsWith("null")
-                        && !s.contains("private")
-                        && !s.contains("cjk")
-                        && !s.contains("surrogate")) {
-                    namedCodePoints.add(ii);
-                    namedCodePointListModel.addElement(new Integer(ii));
-                }
-            }
-        }
-        final JList<Integer> namedCodePointList =
-                new JList<Integer>(namedCodePointListModel);
+        namedCodePointList = new JList<Integer>(namedCodePointListModel);
         ListSelectionListener namedCodePointListSelectionListener =
                 new ListSelectionListener() {
 
@@ -310,7 +531,9 @@ public class UnicodeExplorer {
                     public void valueChanged(ListSelectionEvent e) {
                         if (!e.getValueIsAdjusting()) {
                             Integer i = namedCodePointList.getSelectedValue();
-                            startPage.setValue(i);
+                            if (i != null) {
+                                startPage.setValue(i);
+                            }
                         }
                     }
                 };
@@ -318,116 +541,84 @@ public class UnicodeExplorer {
                 namedCodePointListSelectionListener);
         namedCodePointList.setCellRenderer(namedCodePointListeCellRenderer);
         namedCodePointList.setVisibleRowCount(8);
+        // keeps the list narrow while it is still empty
+        namedCodePointList.setPrototypeCellValue(
+                Integer.valueOf(prototypeCodePoint));
 
-        namedCodePointListModel.setFilter("");
-
-        HashMap<String, Integer> namePartMap = new HashMap<String, Integer>();
-        for (int ii = 0; ii < namedCodePoints.size(); ii++) {
-            String name = Character.getName(namedCodePoints.get(ii));
-            String[] parts = name.split(" ");
-            for (String part : parts) {
-                if (namePartMap.containsKey(part)) {
-                    Integer num = namePartMap.get(part);
-                    namePartMap.put(part, num.intValue() + 1);
-                } else {
-                    namePartMap.put(part, 1);
-                }
-            }
-        }
-        int namePartMapSize = namePartMap.size();
-
-        class PartNumber implements Comparable {
-
-            public String part;
-            public int number;
+        codePointNameFilterCombo = new JComboBox<String>(
+                namePartCompletionModel);
+        codePointNameFilterCombo.setEditable(true);
 
-            PartNumber(String part, int number) {
-                this.part = part;
-                this.number = number;
-            }
+        ComboBoxEditor cbe = new BasicComboBoxEditor();
+        final JTextField tf = (JTextField) cbe.getEditorComponent();
+        Document doc = tf.getDocument();
+        final Runnable refreshList = new Runnable() {
 
             @Override
-            public int compareTo(Object o) {
-                PartNumber partNumber2 = (PartNumber) o;
-                if (number == partNumber2.number) {
-                    return part.compareTo(partNumber2.part);
-                } else {
-                    return number - partNumber2.number;
-                }
+            public void run() {
+                namedCodePointList.repaint();
+                namedCodePointList.scrollRectToVisible(
+                        namedCodePointList.getCellBounds(0, 0));
             }
+        };
+        // the combo must not be changed while its document notifies
+        final Runnable complete = new Runnable() {
 
             @Override
-            public String toString() {
-                return "Part: " + part + " \tnumber: " + number;
-            }
-        }
-        ArrayList<PartNumber> partNumbers = new ArrayList<PartNumber>();
-        Set keySet = namePartMap.keySet();
-        Iterator it = keySet.iterator();
-        while (it.hasNext()) {
-            String key = (String) it.next();
-            int number = (Integer) namePartMap.get(key);
-            if (key.length() > 4 && number > 7) {
-                partNumbers.add(new PartNumber(key, number));
+            public void run() {
+                namePartCompletionModel.setText(tf.getText());
+                if (tf.isFocusOwner() && codePointNameFilterCombo.isShowing()) {
+                    codePointNameFilterCombo.setPopupVisible(
+                            namePartCompletionModel.isCompleting());
+                }
             }
-        }
-        Collections.sort(partNumbers);
-
-        partNumbers.add(new PartNumber("", 0));
-        String[] names = new String[partNumbers.size()];
-        for (int jj = 0; jj < names.length; jj++) {
-            names[jj] = partNumbers.get(jj).part;
-        }
-        Collections.sort(Arrays.asList(names));
-
-        JComboBox<String> codePointNameFilterCombo =
-                new JComboBox<String>(names);
-        codePointNameFilterCombo.setEditable(true);
-
-        ComboBoxEditor cbe = new BasicComboBoxEditor();
-        final JTextField tf = (JTextField) cbe.getEditorComponent();
-        Document doc = tf.getDocument();
+        };
         DocumentListener dl = new DocumentListener() {
 
             @Override
             public void insertUpdate(DocumentEvent e) {
-                namedCodePointListModel.setFilter(tf.getText());
-                refreshList();
+                filterChanged();
             }
 
             @Override
             public void removeUpdate(DocumentEvent e) {
-                namedCodePointListModel.setFilter(tf.getText());
-                refreshList();
+                filterChanged();
             }
 
             @Override
             public void changedUpdate(DocumentEvent e) {
-                namedCodePointListModel.setFilter(tf.getText());
-                refreshList();
+                filterChanged();
             }
 
-            private void refreshList() {
-                namedCodePointList.repaint();
-                namedCodePointList.scrollRectToVisible(
-                        namedCodePointList.getCellBounds(0, 0));
+            private void filterChanged() {
+                namedCodePointListModel.setFilterLater(
+                        tf.getText(), refreshList);
+                SwingUtilities.invokeLater(complete);
             }
         };
         doc.addDocumentListener(dl);
         codePointNameFilterCombo.setEditor(cbe);
 
-        codePointNameFilterCombo.setEditor(cbe);
+        final JCheckBox fuzzy = new JCheckBox("Fuzzy");
+        fuzzy.setToolTipText("Tolerate typos and show the "
+                + FilteredCodePointListModel.TOP_K + " best matches first");
+        fuzzy.addActionListener(new ActionListener() {
+
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                namedCodePointListModel.setRanked(fuzzy.isSelected());
+            }
+        });
+        JPanel namedCodePointFilter = new JPanel(new BorderLayout(3, 3));
+        namedCodePointFilter.add(codePointNameFilterCombo, BorderLayout.CENTER);
+        namedCodePointFilter.add(fuzzy, BorderLayout.LINE_END);
 
         namedCodePointListModel.setFilter("");
 
         //codePointNameFilterCombo
         JPanel namedCodePointPanel = new JPanel(new BorderLayout(3, 3));
         namedCodePointPanel.add(
-                codePointNameFilterCombo, BorderLayout.PAGE_START);
-        Dimension sizeOfNamedCodePointList = namedCodePointList.getPreferredSize();
-        Dimension thinnerSizeOfNamedCodePointList = new Dimension(
-                sizeOfNamedCodePointList.width / 4, sizeOfNamedCodePointList.height);
-        namedCodePointList.setPreferredSize(thinnerSizeOfNamedCodePointList);
+                namedCodePointFilter, BorderLayout.PAGE_START);
         namedCodePointPanel.add(
                 new JScrollPane(namedCodePointList), BorderLayout.CENTER);
 
@@ -441,11 +632,490 @@ public class UnicodeExplorer {
         JSplitPane split = new JSplitPane(
                 JSplitPane.HORIZONTAL_SPLIT,
                 fontScroll, codePointTableComponent);
-        selectFont(new Font(Font.SANS_SERIF, Font.PLAIN, 1));
+
+        JTabbedPane detailTabs = new JTabbedPane();
+        detailTabs.addTab("Character", getCharacterPanel());
+        detailTabs.addTab("Font Fallback", fontFallbackPanel);
+        fontComparisonPanel = new FontComparisonPanel(fontTableCellRenderer);
+        final JList<Font> comparedFonts = fontComparisonPanel.getFontList();
+        comparedFonts.addListSelectionListener(new ListSelectionListener() {
+
+            @Override
+            public void valueChanged(ListSelectionEvent e) {
+                if (!e.getValueIsAdjusting()
+                        && comparedFonts.getSelectedValue() != null) {
+                    selectFont(comparedFonts.getSelectedValue());
+                }
+            }
+        });
+        detailTabs.addTab("Font Comparison", fontComparisonPanel);
+        final JList<Integer> analyzedCodePoints =
+                textAnalysisPanel.getCodePointList();
+        analyzedCodePoints.addListSelectionListener(
+                new ListSelectionListener() {
+
+                    @Override
+                    public void valueChanged(ListSelectionEvent e) {
+                        Integer i = analyzedCodePoints.getSelectedValue();
+                        if (!e.getValueIsAdjusting() && i != null) {
+                            selectCodePoint(i);
+                        }
+                    }
+                });
+        textAnalysisPanel.addPropertyChangeListener(
+                TextAnalysisPanel.HEAT_MAP_PROPERTY,
+                new PropertyChangeListener() {
+
+                    @Override
+                    public void propertyChange(PropertyChangeEvent e) {
+                        fontTableCellRenderer.setHeatMap(
+                                (TextAnalyzer.Result) e.getNewValue());
+                        codePointTable.repaint();
+                    }
+                });
+        detailTabs.addTab("Analysis", textAnalysisPanel);
 
         JSplitPane splitTopBottom = new JSplitPane(
-                JSplitPane.VERTICAL_SPLIT, split, getCharacterPanel());
+                JSplitPane.VERTICAL_SPLIT, split, detailTabs);
         c.add(splitTopBottom, BorderLayout.CENTER);
+
+        loadFonts();
+        loadNames();
+        startupTimer.end("gui");
+    }
+
+    /**
+     * Loads the {@link UnicodeDatabase} off the EDT, if there is one, and
+     * shows its properties of the code point in the details once it is.
+     */
+    private void loadDatabase() {
+        if (UnicodeDatabase.DIRECTORY == null) {
+            return;
+        }
+        startupTimer.begin("unicode database");
+        SwingWorker<UnicodeDatabase, Void> worker =
+                new SwingWorker<UnicodeDatabase, Void>() {
+
+                    @Override
+                    protected UnicodeDatabase doInBackground() {
+                        return UnicodeDatabase.getInstance();
+                    }
+
+                    @Override
+                    protected void done() {
+                        if (detailCodePoint >= 0) {
+                            setCodePointDetailView(detailCodePoint);
+                        }
+                        startupTimer.end("unicode database");
+                    }
+                };
+        worker.execute();
+    }
+
+    /**
+     * Enumerates the installed fonts off the EDT, appending them to the
+     * font list as they are created. The coverage index is built once the
+     * full set is known.
+     */
+    private void loadFonts() {
+        startupTimer.begin("fonts");
+        SwingWorker<Font[], Font> worker = new SwingWorker<Font[], Font>() {
+
+            @Override
+            protected Font[] doInBackground() throws Exception {
+                long start = Metrics.start();
+                // the set has already dropped duplicate families
+                final String[] familyNames = FontCatalog.getFamilyNames();
+                Logger.getLogger(
+                        UnicodeExplorer.class.getCanonicalName()).log(
+                        Level.INFO, "fontNameArray: " + familyNames.length);
+                ExecutorService executor = Executors.newFixedThreadPool(
+                        Runtime.getRuntime().availableProcessors(),
+                        new ThreadFactory() {
+
+                            @Override
+                            public Thread newThread(Runnable r) {
+                                Thread t = new Thread(r, "Font loader");
+                                t.setDaemon(true);
+                                return t;
+                            }
+                        });
+                try {
+                    ArrayList<Future<Font>> futures =
+                            new ArrayList<Future<Font>>(familyNames.length);
+                    for (final String familyName : familyNames) {
+                        futures.add(executor.submit(new Callable<Font>() {
+
+                            @Override
+                            public Font call() {
+                                Font f = new Font(familyName, Font.PLAIN, 1);
+                                FontCellRenderer.prepare(f);
+                                return f;
+                            }
+                        }));
+                    }
+                    // in catalog order, each as soon as it and those before
+                    // it are ready
+                    Font[] loaded = new Font[futures.size()];
+                    for (int ii = 0; ii < loaded.length; ii++) {
+                        loaded[ii] = futures.get(ii).get();
+                        publish(loaded[ii]);
+                    }
+                    Metrics.FONT_ENUMERATION.stop(start);
+                    return loaded;
+                } finally {
+                    executor.shutdownNow();
+                }
+            }
+
+            @Override
+            protected void process(java.util.List<Font> chunk) {
+                for (Font f : chunk) {
+                    fontIndexes.put(f, fontsModel.getSize());
+                    fontsModel.add(f);
+                }
+                if (fonts.getSelectedIndex() < 0
+                        && fontIndexes.containsKey(defaultFont)) {
+                    selectFont(defaultFont);
+                }
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    fontArray = get();
+                    fontFallbackPanel.setFonts(fontArray, null);
+                    textAnalysisPanel.setFonts(fontArray, null);
+                    fontComparisonPanel.setFonts(fontArray);
+                } catch (Exception e) {
+                    Logger.getLogger(UnicodeExplorer.class.getName()).log(
+                            Level.WARNING, "Fonts not loaded", e);
+                    return;
+                }
+                Logger.getLogger(
+                        UnicodeExplorer.class.getCanonicalName()).log(
+                        Level.INFO, "fontArray: " + fontArray.length);
+                // fixed cells, so the list never measures a font on the EDT
+                int width = 0;
+                int height = 0;
+                for (Font f : fontArray) {
+                    FontCellRenderer.Preview preview =
+                            FontCellRenderer.getPreview(f);
+                    if (preview != null) {
+                        width = Math.max(width, preview.width);
+                        height = Math.max(height, preview.height);
+                    }
+                }
+                if (width > 0) {
+                    fonts.setFixedCellWidth(width + 4);
+                    fonts.setFixedCellHeight(Math.min(
+                            height, 2 * (int) FontCellRenderer.fontSize) + 2);
+                }
+                Dimension d = fonts.getPreferredSize();
+                Dimension d1 = new Dimension(
+                        (int) (d.getWidth() / 3), (int) d.getHeight());
+                fonts.setPreferredSize(d1);
+                fonts.revalidate();
+                selectFont(defaultFont);
+                if (detailCodePoint >= 0) {
+                    setFontsForThisCodePoint(detailCodePoint);
+                }
+                buildFontCoverageIndex();
+                startupTimer.end("fonts");
+            }
+        };
+        worker.execute();
+    }
+
+    /**
+     * Scans the code point names off the EDT, or maps them from the
+     * {@link NameIndexSnapshot} of an earlier launch. The named list fills
+     * in as chunks arrive, the name index and the name-part combo once the
+     * scan is complete.
+     */
+    private void loadNames() {
+        startupTimer.begin("names");
+        SwingWorker<CodePointNameIndex, int[]> worker =
+                new SwingWorker<CodePointNameIndex, int[]>() {
+
+                    @Override
+                    protected CodePointNameIndex doInBackground() {
+                        NameIndexSnapshot snapshot = new NameIndexSnapshot(
+                                NameIndexSnapshot.DEFAULT_DIRECTORY);
+                        CodePointNameIndex index = NameIndexSnapshot.ENABLED
+                                ? snapshot.load() : null;
+                        if (index != null) {
+                            return index;
+                        }
+                        long scanStart = Metrics.start();
+                        CodePointNameIndex.Builder nameIndexBuilder =
+                                new CodePointNameIndex.Builder();
+                        int chunk = 4096;
+                        for (int start = 0; start < numberUnicodes;
+                                start += chunk) {
+                            int before = nameIndexBuilder.size();
+                            scanNames(start,
+                                    Math.min(start + chunk, numberUnicodes),
+                                    nameIndexBuilder);
+                            int[] found = new int[
+                                    nameIndexBuilder.size() - before];
+                            for (int ii = 0; ii < found.length; ii++) {
+                                found[ii] = nameIndexBuilder.getCodePoint(
+                                        before + ii);
+                            }
+                            publish(found);
+                        }
+                        Metrics.NAMES_SCAN.stop(scanStart);
+                        index = nameIndexBuilder.build();
+                        if (NameIndexSnapshot.ENABLED) {
+                            snapshot.save(index);
+                        }
+                        return index;
+                    }
+
+                    @Override
+                    protected void process(java.util.List<int[]> chunks) {
+                        for (int[] codePoints : chunks) {
+                            namedCodePointListModel.add(codePoints);
+                        }
+                        namedCodePointListModel.refresh();
+                    }
+
+                    @Override
+                    protected void done() {
+                        CodePointNameIndex index;
+                        try {
+                            index = get();
+                        } catch (Exception e) {
+                            Logger.getLogger(
+                                    UnicodeExplorer.class.getName()).log(
+                                    Level.WARNING, "Names not loaded", e);
+                            return;
+                        }
+                        nameIndex = index;
+                        namedCodePointListModel.setNameIndex(index);
+                        namedCodePointListModel.refresh();
+                        namePartCompletionModel.setNameIndex(index);
+                        startupTimer.end("names");
+                    }
+                };
+        worker.execute();
+    }
+
+    /**
+     * Adds the listed (named, not private use, CJK or surrogate) code points
+     * in <code>[start, end)</code> to the builder.
+     */
+    static void scanNames(
+            int start, int end, CodePointNameIndex.Builder builder) {
+        String codePointName;
+        String s;
+        UnicodeDatabase database = UnicodeDatabase.getInstance();
+        for (int ii = start; ii < end; ii++) {
+            // unnamed code points stay unnamed, without asking the JDK
+            codePointName = database != null
+                    ? database.getName(ii) : Character.getName(ii);
+            if (codePointName != null) {
+                s = codePointName.trim().toLowerCase();
+                if (!s.startsWith("null")
+                        && !s.contains("private")
+                        && !s.contains("cjk")
+                        && !s.contains("surrogate")) {
+                    builder.add(ii, codePointName);
+                }
+            }
+        }
+    }
+
+    /**
+     * Evaluates a {@link CodePointQuery} off the EDT and limits the code
+     * point table and the named list to the result. A blank query shows
+     * everything again.
+     */
+    public void applyQuery(final String query) {
+        if (queryWorker != null) {
+            queryWorker.cancel(true);
+        }
+        if (query.trim().length() == 0) {
+            showAll();
+            return;
+        }
+        final CodePointQuery.Context context = new CodePointQuery.Context();
+        int selected = fonts.getSelectedIndex();
+        context.displayFont = selected < 0
+                ? defaultFont : fontsModel.getElementAt(selected);
+        context.fonts = fontArray;
+        context.fontCoverageIndex = fontCoverageIndex;
+        context.nameIndex = nameIndex;
+        final long start = System.nanoTime();
+        queryWorker = new SwingWorker<CodePointSet, Void>() {
+
+            @Override
+            protected CodePointSet doInBackground() {
+                long queryStart = Metrics.start();
+                CodePointSet result = CodePointQuery.evaluate(query, context);
+                Metrics.QUERY.stop(queryStart);
+                return result;
+            }
+
+            @Override
+            protected void done() {
+                if (isCancelled()) {
+                    return;
+                }
+                CodePointSet result;
+                try {
+                    result = get();
+                } catch (ExecutionException e) {
+                    queryStatus.setText(e.getCause().getMessage());
+                    return;
+                } catch (InterruptedException e) {
+                    return;
+                }
+                int[] codePoints = result.toArray();
+                resetNavigator();
+                codePointTableModel.setCodePoints(codePoints);
+                namedCodePointListModel.setRestriction(result);
+                queryStatus.setText(codePoints.length + " in "
+                        + (System.nanoTime() - start) / 1000000 + "ms");
+            }
+        };
+        queryWorker.execute();
+    }
+
+    /**
+     * Fills the block combo once the block ranges are known.
+     */
+    private void loadBlocks() {
+        SwingWorker<UnicodeBlocks, Void> worker =
+                new SwingWorker<UnicodeBlocks, Void>() {
+
+                    @Override
+                    protected UnicodeBlocks doInBackground() {
+                        return UnicodeBlocks.getInstance();
+                    }
+
+                    @Override
+                    protected void done() {
+                        UnicodeBlocks blocks;
+                        try {
+                            blocks = get();
+                        } catch (Exception e) {
+                            Logger.getLogger(
+                                    UnicodeExplorer.class.getName()).log(
+                                    Level.WARNING, "Blocks not loaded", e);
+                            return;
+                        }
+                        navigating = true;
+                        for (int ii = 0; ii < blocks.size(); ii++) {
+                            blockCombo.addItem(blocks.getBlock(ii));
+                        }
+                        navigating = false;
+                    }
+                };
+        worker.execute();
+    }
+
+    /**
+     * Limits the table to one block, or shows everything for -1.
+     */
+    public void showBlock(int blockIndex) {
+        if (blockIndex < 0) {
+            showAll();
+            return;
+        }
+        clearQuery();
+        navigating = true;
+        scriptCombo.setSelectedIndex(0);
+        navigating = false;
+        codePointTableModel.setView(viewCache.getBlockView(blockIndex));
+        selectFirstCodePoint();
+    }
+
+    /**
+     * Limits the table to one script, or shows everything for
+     * <code>null</code>. Script views are scattered over the whole range,
+     * so the first visit to one is materialized off the EDT.
+     */
+    public void showScript(final Character.UnicodeScript script) {
+        if (script == null) {
+            showAll();
+            return;
+        }
+        clearQuery();
+        navigating = true;
+        blockCombo.setSelectedIndex(0);
+        navigating = false;
+        SwingWorker<CodePointView, Void> worker =
+                new SwingWorker<CodePointView, Void>() {
+
+                    @Override
+                    protected CodePointView doInBackground() {
+                        return viewCache.getScriptView(script);
+                    }
+
+                    @Override
+                    protected void done() {
+                        if (scriptCombo.getSelectedItem() != script) {
+                            return;
+                        }
+                        try {
+                            codePointTableModel.setView(get());
+                        } catch (Exception e) {
+                            Logger.getLogger(
+                                    UnicodeExplorer.class.getName()).log(
+                                    Level.WARNING, "No view of " + script, e);
+                            return;
+                        }
+                        selectFirstCodePoint();
+                    }
+                };
+        worker.execute();
+    }
+
+    /**
+     * Shows the whole code point range, clearing any block, script or
+     * query.
+     */
+    public void showAll() {
+        clearQuery();
+        resetNavigator();
+        codePointTableModel.setView(null);
+    }
+
+    private void clearQuery() {
+        if (queryWorker != null) {
+            queryWorker.cancel(true);
+        }
+        queryField.setText("");
+        queryStatus.setText("");
+        namedCodePointListModel.setRestriction(null);
+    }
+
+    private void resetNavigator() {
+        navigating = true;
+        blockCombo.setSelectedIndex(0);
+        scriptCombo.setSelectedIndex(0);
+        navigating = false;
+    }
+
+    private void selectFirstCodePoint() {
+        for (int col = 0; col < codePointColumnWidth
+                && codePointTableModel.getRowCount() > 0; col++) {
+            int codePoint = codePointTableModel.getCodePointAt(0, col);
+            if (codePoint >= 0) {
+                startPage.setValue(codePoint);
+                return;
+            }
+        }
+    }
+
+    private void setDisplayFont(Font font) {
+        Font f = font.deriveFont(32f);
+        fontTableCellRenderer.setDisplayFont(f);
+        codePointTable.setRowHeight(f.getSize());
+        glyphPrefetcher.invalidate();
+        bigCharacter.setFont(f.deriveFont(128f));
     }
 
     public void setCharacterSpinner(Integer i) {
@@ -454,19 +1124,28 @@ public class UnicodeExplorer {
     }
 
     public void selectCodePoint(int codePoint) {
-        Logger.getLogger(UnicodeExplorer.class.getName()).log(
-                Level.INFO, "code point " + codePoint);
+        Logger logger = Logger.getLogger(UnicodeExplorer.class.getName());
+        if (logger.isLoggable(Level.FINE)) {
+            logger.log(Level.FINE, "code point " + codePoint);
+        }
         ListSelectionModel lsm = codePointTable.getSelectionModel();
-        int row = codePoint / codePointColumnWidth;
+        if (!codePointTableModel.getView().contains(codePoint)) {
+            showAll();
+        }
+        int row = codePointTableModel.getRowForCodePoint(codePoint);
+        if (row < 0 || row >= codePointTableModel.getRowCount()) {
+            return;
+        }
         lsm.setSelectionInterval(row, row);
-        int col = codePoint % codePointColumnWidth;
+        int col = codePointTableModel.getColumnForCodePoint(codePoint);
         codePointTable.setColumnSelectionInterval(col, col);
         codePointTable.scrollRectToVisible(
                 codePointTable.getCellRect(row, col, false));
     }
 
     public void selectFont(Font font) {
-        int indexDefault = fontList.indexOf(font);
+        Integer index = fontIndexes.get(font);
+        int indexDefault = index == null ? -1 : index;
         fonts.setSelectedIndex(indexDefault);
         Rectangle rect = fonts.getCellBounds(indexDefault, indexDefault);
         if (rect != null) {
@@ -475,185 +1154,135 @@ public class UnicodeExplorer {
     }
 }
 
+/**
+ * Shows a font as its family name, in the font itself, or in parentheses
+ * in a monospaced font when it cannot display its own name. That decision
+ * and the derived font are made once per font, off the EDT: by
+ * {@link #prepare(Font)} as fonts are loaded, or on a background thread the
+ * first time an unprepared font is painted, which shows the plain name
+ * until the list is repainted.
+ */
 class FontCellRenderer extends DefaultListCellRenderer {
 
-    float fontSize = 24;
-    JLabel label;
-
-    public Component getListCellRendererComponent(
-            JList list,
-            Object value,
-            int index,
-            boolean isSelected,
-            boolean cellHasFocus) {
+    private static final long serialVersionUID = 1L;
 
-        Font fontOrig = (Font) value;
-        Font temp = fontOrig;
-        String pre = "";
-        String suf = "";
-        int displayIndex = temp.canDisplayUpTo(temp.getFamily());
-        if (displayIndex > -1) {
-            temp = new Font(Font.MONOSPACED, Font.PLAIN, temp.getSize());
-            pre = "(";
-            suf = ")";
-        }
+    static final float fontSize = 24;
+    private static final ConcurrentHashMap<Font, Preview> previews =
+            new ConcurrentHashMap<Font, Preview>();
+    private static final Set<Font> pending =
+            Collections.newSetFromMap(new ConcurrentHashMap<Font, Boolean>());
+    private static final ExecutorService previewExecutor =
+            Executors.newSingleThreadExecutor(new ThreadFactory() {
 
-        label = (JLabel) super.getListCellRendererComponent(
-                list,
-                pre + fontOrig.getFamily() + suf,
-                index, isSelected, cellHasFocus);
-        label.setToolTipText(fontOrig.toString());
-        label.setFont(temp.deriveFont(fontSize));
-        return label;
-    }
-}
-
-class FontTableCellRenderer extends DefaultTableCellRenderer {
-
-    private Font displayFont;
-
-    @Override
-    public Component getTableCellRendererComponent(
-            JTable table, Object value,
-            boolean isSelected, boolean hasFocus,
-            int row, int column) {
-        Component c = super.getTableCellRendererComponent(
-                table, value, isSelected, hasFocus, row, column);
-
-        if (c instanceof JLabel) {
-            JLabel l = (JLabel) c;
-            int codePoint = ((Integer) value).intValue();
-            boolean isDefined = Character.isDefined(codePoint);
-            boolean canDisplay = displayFont.canDisplay(codePoint);
-            String s = UnicodeUtil.getCodePointString(codePoint);
-            l.setText(s);
-            if (displayFont != null) {
-                l.setFont(displayFont.deriveFont(
-                        (float) (displayFont.getSize() * .8)));
-                String tip = "<html><body style='font-size: 64px; "
-                        + "font-family: "
-                        + displayFont.getFamily()
-                        + ";'>&#" + codePoint
-                        + " " + Character.getName(codePoint);
-                l.setToolTipText(tip);
-                l.setForeground(Color.BLACK);
-                if (!canDisplay) {
-                    l.setForeground(Color.RED);
-                }
-                if (!isDefined) {
-                    l.setForeground(Color.BLUE);
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "Font previews");
+                    t.setDaemon(true);
+                    return t;
                 }
+            });
+    private static final FontRenderContext RENDER_CONTEXT =
+            new FontRenderContext(null, true, true);
+    JLabel label;
+    private int verifiedCount = Integer.MAX_VALUE;
+
+    /** How a font is shown, with the size of the text in that font. */
+    static class Preview {
+
+        final String text;
+        final Font displayFont;
+        final int width;
+        final int height;
+
+        Preview(Font font) {
+            Font displayable = font;
+            String family = font.getFamily();
+            if (font.canDisplayUpTo(family) > -1) {
+                displayable = new Font(Font.MONOSPACED, Font.PLAIN, 1);
+                family = "(" + family + ")";
             }
-        } else {
-            Logger.getLogger(
-                    UnicodeExplorer.class.getName(),
-                    "We are not getting a JLabel as expected!");
+            text = family;
+            displayFont = displayable.deriveFont(fontSize);
+            Rectangle2D bounds =
+                    displayFont.getStringBounds(text, RENDER_CONTEXT);
+            width = (int) Math.ceil(bounds.getWidth());
+            height = (int) Math.ceil(
+                    displayFont.getLineMetrics(text, RENDER_CONTEXT)
+                    .getHeight());
         }
-
-        return c;
     }
 
-    public void setDisplayFont(Font font) {
-        displayFont = font;
+    /**
+     * Makes the preview of the font, if not already made. Thread safe, and
+     * meant to be called off the EDT.
+     */
+    public static Preview prepare(Font font) {
+        Preview preview = previews.get(font);
+        if (preview == null) {
+            preview = new Preview(font);
+            previews.put(font, preview);
+        }
+        return preview;
     }
-}
 
-class UnicodeUtil {
-
-    public static String getCodePointString(int codePoint) {
-        return new String(Character.toChars(codePoint));
+    /** @return the preview, or <code>null</code> if not made yet */
+    public static Preview getPreview(Font font) {
+        return previews.get(font);
     }
-}
 
-class CodePointTableModel extends DefaultTableModel {
-
-    public static final String[] COLUMN_NAMES = {
-        "0", "1", "2", "3", "4", "5", "6", "7", "8", "9",
-        "A", "B", "C", "D", "E", "F"
-    };
+    private static void prepareLater(final Font font, final JList<?> list) {
+        if (!pending.add(font)) {
+            return;
+        }
+        previewExecutor.execute(new Runnable() {
 
-    public CodePointTableModel(int rows, int cols) {
-        super(rows, cols);
-    }
+            @Override
+            public void run() {
+                prepare(font);
+                pending.remove(font);
+                SwingUtilities.invokeLater(new Runnable() {
 
-    @Override
-    public String getColumnName(int column) {
-        return COLUMN_NAMES[column];
+                    @Override
+                    public void run() {
+                        list.repaint();
+                    }
+                });
+            }
+        });
     }
 
-    @Override
-    public Object getValueAt(int row, int col) {
-        return (row * getColumnCount()) + col;
+    /**
+     * Shows the fonts from this index on as claiming support for the code
+     * point without drawing it, as sorted by
+     * {@link GlyphVerifier#sortVerifiedFirst(int, Font[], int)}.
+     */
+    public void setVerifiedCount(int verifiedCount) {
+        this.verifiedCount = verifiedCount;
     }
-}
 
-class CodePointListCellRenderer extends DefaultListCellRenderer {
-
-    @Override
     public Component getListCellRendererComponent(
-            JList list,
+            JList<?> list,
             Object value,
             int index,
             boolean isSelected,
             boolean cellHasFocus) {
 
-        JLabel l = (JLabel) super.getListCellRendererComponent(
-                list, value, index, isSelected, cellHasFocus);
-        Integer i = (Integer) value;
-        String s = new String(
-                Character.toChars(i))
-                + " - " + Character.getName(i.intValue());
-        l.setText(s);
-
-        return l;
-    }
-}
-
-class FilteredCodePointListModel extends DefaultListModel {
-
-    public String filter = "";
-    public Object[] filteredElements = new Object[0];
-
-    public void setFilter(String filter) {
-        this.filter = filter;
-        filterList();
-    }
-
-    @SuppressWarnings("unchecked")
-    private void filterList() {
-        Object[] allElements = super.toArray();
-        if (filter.trim().length() == 0) {
-            // use entire list.
-            filteredElements = allElements;
+        Font font = (Font) value;
+        Preview preview = previews.get(font);
+        // the name the font was created with, which needs no font lookup
+        String text = preview == null ? font.getName() : preview.text;
+        label = (JLabel) super.getListCellRendererComponent(
+                list, text, index, isSelected, cellHasFocus);
+        label.setToolTipText(font.toString());
+        if (preview == null) {
+            prepareLater(font, list);
         } else {
-            // filter the list
-            ArrayList<Object> allList = new ArrayList<Object>();
-            String[] parts = filter.toUpperCase().trim().split(" ");
-            for (int ii = 0; ii < super.size(); ii++) {
-                Integer codePointInt = (Integer) super.elementAt(ii);
-                int codePointNumber = codePointInt.intValue();
-                String name = Character.getName(codePointNumber).toUpperCase();
-                boolean containsAll = true;
-                for (String part : parts) {
-                    if (name.indexOf(part) < 0) {
-                        containsAll = false;
-                    }
-                }
-                if (containsAll) {
-                    allList.add(codePointInt);
-                }
-            }
-            filteredElements = allList.toArray();
+            label.setFont(preview.displayFont);
         }
+        if (index >= verifiedCount) {
+            label.setEnabled(false);
+            label.setToolTipText(font + " draws .notdef or nothing");
+        }
+        return label;
     }
-
-    @Override
-    public int getSize() {
-        return filteredElements.length;
-    }
-
-    @Override
-    public Object getElementAt(int index) {
-        return filteredElements[index];
-    }
-}
\ No newline at end of file
+}
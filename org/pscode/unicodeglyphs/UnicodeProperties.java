@@ -0,0 +1,278 @@
+package org.pscode.unicodeglyphs;
+
+import java.util.concurrent.TimeUnit;
+import java.util.logging.*;
+
+/**
+ * The {@link Character} properties the explorer shows, precomputed for the
+ * whole code point range. Each code point has one int holding its boolean
+ * properties as flag bits and its general category, and one int holding
+ * its block and script ids; both are stored in {@link PackedIntTable}s.
+ * <p>
+ * The tables are built on a background thread by {@link #prepare()}. Until
+ * they are ready, lookups compute the same values directly, so callers never
+ * wait for the build; only {@link #getBlockIndex(int)}, whose index is into
+ * {@link UnicodeBlocks}, needs those built first, which takes a while.
+ */
+class UnicodeProperties {
+
+    public static final int DEFINED = 1;
+    public static final int ISO_CONTROL = 1 << 1;
+    public static final int MIRRORED = 1 << 2;
+    public static final int DIGIT = 1 << 3;
+    public static final int LETTER = 1 << 4;
+    public static final int ALPHABETIC = 1 << 5;
+    public static final int IDEOGRAPHIC = 1 << 6;
+    public static final int SPACE_CHAR = 1 << 7;
+    public static final int WHITESPACE = 1 << 8;
+    public static final int LOWER_CASE = 1 << 9;
+    public static final int TITLE_CASE = 1 << 10;
+    public static final int UPPER_CASE = 1 << 11;
+    public static final int CATEGORY_SHIFT = 16;
+    public static final int CATEGORY_MASK = 0x1F << CATEGORY_SHIFT;
+    /** The short names of the categories, by {@link Character#getType(int)}. */
+    public static final String[] CATEGORY_NAMES = {
+        "Cn", "Lu", "Ll", "Lt", "Lm", "Lo", "Mn", "Me", "Mc", "Nd",
+        "Nl", "No", "Zs", "Zl", "Zp", "Cc", "Cf", "", "Co", "Cs",
+        "Pd", "Ps", "Pe", "Pc", "Po", "Sm", "Sc", "Sk", "So", "Pi", "Pf"
+    };
+    private static final Character.UnicodeScript[] SCRIPTS =
+            Character.UnicodeScript.values();
+    private static final UnicodeProperties instance = new UnicodeProperties();
+    private final int numberCodePoints = UnicodeExplorer.numberUnicodes;
+    private volatile PackedIntTable properties;
+    private volatile PackedIntTable ids;
+    private boolean preparing;
+    private long buildTimeNanos;
+
+    private UnicodeProperties() {
+    }
+
+    public static UnicodeProperties getInstance() {
+        return instance;
+    }
+
+    /**
+     * Starts building the tables on a daemon thread, if that has not
+     * already been done.
+     */
+    public synchronized void prepare() {
+        if (preparing) {
+            return;
+        }
+        preparing = true;
+        Thread thread = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                build();
+            }
+        }, "UnicodeProperties");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** Builds the tables on the calling thread. */
+    void build() {
+        long start = System.nanoTime();
+        PackedIntTable.Builder propertiesBuilder = new PackedIntTable.Builder();
+        PackedIntTable.Builder idsBuilder = new PackedIntTable.Builder();
+        int[] propertiesPage = new int[PackedIntTable.PAGE_SIZE];
+        int[] idsPage = new int[PackedIntTable.PAGE_SIZE];
+        UnicodeBlocks blocks = UnicodeBlocks.getInstance();
+        for (int base = 0; base < numberCodePoints;
+                base += PackedIntTable.PAGE_SIZE) {
+            for (int ii = 0; ii < PackedIntTable.PAGE_SIZE; ii++) {
+                propertiesPage[ii] = computeProperties(base + ii);
+                idsPage[ii] = computeIds(base + ii, blocks);
+            }
+            propertiesBuilder.addPage(propertiesPage);
+            idsBuilder.addPage(idsPage);
+        }
+        ids = idsBuilder.build();
+        properties = propertiesBuilder.build();
+        buildTimeNanos = System.nanoTime() - start;
+
+        Logger.getLogger(UnicodeProperties.class.getName()).log(
+                Level.INFO, toString());
+    }
+
+    static int computeProperties(int codePoint) {
+        int p = Character.getType(codePoint) << CATEGORY_SHIFT;
+        if (Character.isDefined(codePoint)) {
+            p |= DEFINED;
+        }
+        if (Character.isISOControl(codePoint)) {
+            p |= ISO_CONTROL;
+        }
+        if (Character.isMirrored(codePoint)) {
+            p |= MIRRORED;
+        }
+        if (Character.isDigit(codePoint)) {
+            p |= DIGIT;
+        }
+        if (Character.isLetter(codePoint)) {
+            p |= LETTER;
+        }
+        if (Character.isAlphabetic(codePoint)) {
+            p |= ALPHABETIC;
+        }
+        if (Character.isIdeographic(codePoint)) {
+            p |= IDEOGRAPHIC;
+        }
+        if (Character.isSpaceChar(codePoint)) {
+            p |= SPACE_CHAR;
+        }
+        if (Character.isWhitespace(codePoint)) {
+            p |= WHITESPACE;
+        }
+        if (Character.isLowerCase(codePoint)) {
+            p |= LOWER_CASE;
+        }
+        if (Character.isTitleCase(codePoint)) {
+            p |= TITLE_CASE;
+        }
+        if (Character.isUpperCase(codePoint)) {
+            p |= UPPER_CASE;
+        }
+        return p;
+    }
+
+    /**
+     * @return the block index + 1 (0 for no block) in the low 16 bits and the
+     * script ordinal in the high 16 bits
+     */
+    static int computeIds(int codePoint, UnicodeBlocks blocks) {
+        int block = blocks.indexOf(codePoint) + 1;
+        int script = Character.UnicodeScript.of(codePoint).ordinal();
+        return block | (script << 16);
+    }
+
+    public boolean isReady() {
+        return properties != null;
+    }
+
+    /** The flags and category of the code point. */
+    public int getProperties(int codePoint) {
+        PackedIntTable table = properties;
+        return table != null
+                ? table.get(codePoint) : computeProperties(codePoint);
+    }
+
+    public boolean is(int codePoint, int flag) {
+        return (getProperties(codePoint) & flag) != 0;
+    }
+
+    /** The general category, as {@link Character#getType(int)}. */
+    public int getCategory(int codePoint) {
+        return (getProperties(codePoint) & CATEGORY_MASK) >>> CATEGORY_SHIFT;
+    }
+
+    /**
+     * @return the {@link UnicodeBlocks} index of the code point's block, or
+     * -1 when it is in none. Until the tables are ready this builds the
+     * blocks, or waits for them, so the EDT should use
+     * {@link #getBlock(int)}.
+     */
+    public int getBlockIndex(int codePoint) {
+        PackedIntTable table = ids;
+        int id = table != null
+                ? table.get(codePoint)
+                : computeIds(codePoint, UnicodeBlocks.getInstance());
+        return (id & 0xFFFF) - 1;
+    }
+
+    /**
+     * @return the code point's block, or <code>null</code> when it is in
+     * none, without waiting for the tables
+     */
+    public Character.UnicodeBlock getBlock(int codePoint) {
+        PackedIntTable table = ids;
+        if (table == null) {
+            return Character.UnicodeBlock.of(codePoint);
+        }
+        int block = (table.get(codePoint) & 0xFFFF) - 1;
+        return block < 0 ? null : UnicodeBlocks.getInstance().getBlock(block);
+    }
+
+    public Character.UnicodeScript getScript(int codePoint) {
+        return SCRIPTS[getScriptOrdinal(codePoint)];
+    }
+
+    public int getScriptOrdinal(int codePoint) {
+        PackedIntTable table = ids;
+        return table != null
+                ? table.get(codePoint) >>> 16
+                : Character.UnicodeScript.of(codePoint).ordinal();
+    }
+
+    /**
+     * Copies the flags and categories of <code>[start, end)</code> into
+     * dest, starting at destOffset.
+     */
+    public void getProperties(int start, int end, int[] dest, int destOffset) {
+        PackedIntTable table = properties;
+        if (table != null) {
+            table.get(start, end, dest, destOffset);
+        } else {
+            for (int codePoint = start; codePoint < end; codePoint++) {
+                dest[destOffset + codePoint - start] =
+                        computeProperties(codePoint);
+            }
+        }
+    }
+
+    /**
+     * @return the number of code points in <code>[start, end)</code> whose
+     * properties, masked, equal the value
+     */
+    public int count(int start, int end, int mask, int value) {
+        int count = 0;
+        int[] page = new int[PackedIntTable.PAGE_SIZE];
+        for (int from = start; from < end; from += page.length) {
+            int to = Math.min(from + page.length, end);
+            getProperties(from, to, page, 0);
+            for (int ii = 0; ii < to - from; ii++) {
+                if ((page[ii] & mask) == value) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the code points in <code>[start, end)</code> whose
+     * properties, masked, equal the value, in ascending order
+     */
+    public int[] find(int start, int end, int mask, int value) {
+        IntList found = new IntList();
+        int[] page = new int[PackedIntTable.PAGE_SIZE];
+        for (int from = start; from < end; from += page.length) {
+            int to = Math.min(from + page.length, end);
+            getProperties(from, to, page, 0);
+            for (int ii = 0; ii < to - from; ii++) {
+                if ((page[ii] & mask) == value) {
+                    found.add(from + ii);
+                }
+            }
+        }
+        return found.toArray();
+    }
+
+    /** Approximate heap retained by the tables, in bytes. */
+    public long getMemoryUsage() {
+        PackedIntTable p = properties;
+        PackedIntTable i = ids;
+        return (p == null ? 0 : p.getMemoryUsage())
+                + (i == null ? 0 : i.getMemoryUsage());
+    }
+
+    @Override
+    public String toString() {
+        return "UnicodeProperties code points: " + numberCodePoints
+                + " memory: " + (getMemoryUsage() / 1024) + "KB"
+                + " build: "
+                + TimeUnit.NANOSECONDS.toMillis(buildTimeNanos) + "ms";
+    }
+}
@@ -0,0 +1,28 @@
+package org.pscode.unicodeglyphs;
+
+class UnicodeUtil {
+
+    public static String getCodePointString(int codePoint) {
+        return new String(Character.toChars(codePoint));
+    }
+
+    /**
+     * Appends the text with <code>&amp;</code>, <code>&lt;</code> and
+     * <code>&gt;</code> escaped, so that it shows as is in HTML.
+     */
+    public static StringBuilder appendHtml(StringBuilder sb, String s) {
+        for (int ii = 0; ii < s.length(); ii++) {
+            char c = s.charAt(ii);
+            if (c == '&') {
+                sb.append("&amp;");
+            } else if (c == '<') {
+                sb.append("&lt;");
+            } else if (c == '>') {
+                sb.append("&gt;");
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb;
+    }
+}
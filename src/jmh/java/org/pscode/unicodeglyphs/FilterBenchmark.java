@@ -0,0 +1,48 @@
+package org.pscode.unicodeglyphs;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Filtering the named code point list from its name index, in one go and
+ * a keystroke at a time.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(1)
+@State(Scope.Thread)
+public class FilterBenchmark {
+
+    @Param({"LATIN", "LATIN SMALL A", "GREEK", "ARROW", "E", "WITH ACUTE",
+        "MATHEMATICAL BOLD", "ZZZ"})
+    String filter;
+    FilteredCodePointListModel model;
+
+    @Setup
+    public void setUp() {
+        model = new FilteredCodePointListModel();
+        model.setNameIndex(NameIndexBenchmark.buildNameIndex());
+    }
+
+    @Benchmark
+    public int setFilter() {
+        // from blank, so each run searches rather than refines
+        model.setFilter("");
+        model.setFilter(filter);
+        return model.getSize();
+    }
+
+    @Benchmark
+    public long typing() {
+        // one filter per keystroke, refining where it narrows
+        long size = 0;
+        model.setFilter("");
+        for (int ii = 1; ii <= filter.length(); ii++) {
+            model.setFilter(filter.substring(0, ii));
+            size += model.getSize();
+        }
+        return size;
+    }
+}
@@ -0,0 +1,34 @@
+package org.pscode.unicodeglyphs;
+
+import java.awt.Font;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/** Verifying that every installed font draws what its cmap claims. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GlyphVerifierBenchmark {
+
+    Font[] fonts;
+    FontCoverageIndex index;
+
+    @Setup
+    public void setUp() {
+        fonts = FontCatalog.getFonts();
+        index = FontCoverageIndex.build(fonts, UnicodeExplorer.numberUnicodes);
+    }
+
+    @Benchmark
+    public long verify() {
+        GlyphVerifier verifier = GlyphVerifier.build(index);
+        long rejected = 0;
+        for (int ii = 0; ii < fonts.length; ii++) {
+            rejected += verifier.getRejectedCount(ii);
+        }
+        return rejected;
+    }
+}
@@ -0,0 +1,171 @@
+package org.pscode.unicodeglyphs;
+
+import java.util.*;
+import java.util.regex.Pattern;
+import javax.swing.DefaultListModel;
+
+/**
+ * Measures the heap the explorer's models retain, rather than how fast
+ * they are. The boxed and Vector backed models are what the explorer used
+ * before its int array backed ones, built the same way, for comparison.
+ * <p>
+ * Usage:
+ * <pre>
+ * gradle heapFootprint [-Pmodels=regex]
+ * </pre>
+ * Only the models whose names match the regex are measured. Each is
+ * measured in turn in the same JVM, so run it with a heap large enough
+ * that collections do not have to shrink it meanwhile.
+ */
+public class HeapFootprint {
+
+    /** Keeps each subject's hash, so its creation cannot be skipped. */
+    static volatile long sink;
+
+    /**
+     * Something whose retained heap is measured: {@link #create()} builds
+     * it and returns the root that keeps it reachable.
+     */
+    abstract static class HeapSubject {
+
+        final String name;
+
+        HeapSubject(String name) {
+            this.name = name;
+        }
+
+        abstract Object create();
+    }
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        report(Pattern.compile(args.length > 0 ? args[0] : ".*"));
+    }
+
+    /**
+     * Prints the heap retained by each model whose name matches, as the
+     * used heap it frees after full collections.
+     */
+    static void report(Pattern include) {
+        final int[] named = NameIndexBenchmark.buildNameIndex().getCodePoints();
+        final int bmpRows = 0x10000 / UnicodeExplorer.codePointColumnWidth;
+        final int allRows = UnicodeExplorer.numberUnicodes
+                / UnicodeExplorer.codePointColumnWidth;
+        ArrayList<HeapSubject> subjects = new ArrayList<HeapSubject>();
+        subjects.add(new HeapSubject("namedList.boxed") {
+
+            @Override
+            Object create() {
+                // elements in a DefaultListModel, and the filtered copy
+                DefaultListModel<Integer> model = new DefaultListModel<Integer>();
+                for (int codePoint : named) {
+                    model.addElement(codePoint);
+                }
+                return new Object[]{model, model.toArray()};
+            }
+        });
+        subjects.add(new HeapSubject("namedList.primitive.scanning") {
+
+            @Override
+            Object create() {
+                FilteredCodePointListModel model =
+                        new FilteredCodePointListModel();
+                model.add(named);
+                model.setFilter("");
+                return model;
+            }
+        });
+        subjects.add(new HeapSubject("namedList.primitive.indexed") {
+
+            CodePointNameIndex index = NameIndexBenchmark.buildNameIndex();
+
+            @Override
+            Object create() {
+                // the code points are the index's, which is not counted
+                FilteredCodePointListModel model =
+                        new FilteredCodePointListModel();
+                model.setNameIndex(index);
+                model.setFilter("");
+                return model;
+            }
+        });
+        subjects.add(new HeapSubject("table.vectors[BMP]") {
+
+            @Override
+            Object create() {
+                return new javax.swing.table.DefaultTableModel(
+                        bmpRows, UnicodeExplorer.codePointColumnWidth);
+            }
+        });
+        subjects.add(new HeapSubject("table.vectors[all]") {
+
+            @Override
+            Object create() {
+                return new javax.swing.table.DefaultTableModel(
+                        allRows, UnicodeExplorer.codePointColumnWidth);
+            }
+        });
+        subjects.add(new HeapSubject("table.view[all]") {
+
+            @Override
+            Object create() {
+                return new CodePointTableModel(
+                        UnicodeExplorer.numberUnicodes,
+                        UnicodeExplorer.codePointColumnWidth);
+            }
+        });
+        subjects.add(new HeapSubject("table.view[named]") {
+
+            @Override
+            Object create() {
+                CodePointTableModel model = new CodePointTableModel(
+                        UnicodeExplorer.numberUnicodes,
+                        UnicodeExplorer.codePointColumnWidth);
+                model.setCodePoints(named.clone());
+                return model;
+            }
+        });
+
+        System.out.println("retained KB  model");
+        for (HeapSubject subject : subjects) {
+            if (!include.matcher(subject.name).find()) {
+                continue;
+            }
+            System.out.println(String.format(Locale.ROOT, "%11d  %s",
+                    getRetainedHeap(subject) / 1024, subject.name));
+        }
+    }
+
+    /**
+     * @return the used heap with the subject, less the used heap once it is
+     * dropped again, so caches that other code clears meanwhile do not count
+     */
+    private static long getRetainedHeap(HeapSubject subject) {
+        Object root = subject.create();
+        long with = getUsedHeap();
+        sink += root.hashCode();
+        root = null;
+        return with - getUsedHeap();
+    }
+
+    private static long getUsedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        // until a collection frees nothing more
+        for (int ii = 0; ii < 10; ii++) {
+            System.gc();
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            long now = runtime.totalMemory() - runtime.freeMemory();
+            if (now >= used) {
+                break;
+            }
+            used = now;
+        }
+        return used;
+    }
+
+}
@@ -0,0 +1,170 @@
+package org.pscode.unicodeglyphs;
+
+import java.io.File;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Building the name index, loading its snapshot, and answering
+ * completions and ranked searches from it.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NameIndexBenchmark {
+
+    /**
+     * Ranked queries, some with typos, and the code point a user typing
+     * them is looking for.
+     */
+    static final Object[][] RANKED_QUERIES = {
+        {"LATIN SMALL A", 0x61},
+        {"LATIN CAPITAL E ACUTE", 0xC9},
+        {"GREEK SMALL ALPHA", 0x3B1},
+        {"GREK SMALL ALPHA", 0x3B1},
+        {"CYRILLIC CAPITAL ZHE", 0x416},
+        {"CYRILIC CAPITAL ZHE", 0x416},
+        {"HEBREW ALEF", 0x5D0},
+        {"HEBRW ALEF", 0x5D0},
+        {"ARABIC ALEF", 0x627},
+        {"DEVANAGARI KA", 0x915},
+        {"THAI KO KAI", 0xE01},
+        {"RIGHTWARDS ARROW", 0x2192},
+        {"RIGTHWARDS ARROW", 0x2192},
+        {"WHITE SMILING FACE", 0x263A},
+        {"SNOWMAN", 0x2603},
+        {"SNOWMNA", 0x2603},
+        {"INFINITY", 0x221E},
+        {"INFINTY", 0x221E},
+        {"EURO", 0x20AC},
+        {"COPYRIGHT", 0xA9},
+        {"DEGREE", 0xB0},
+        {"MUSICAL G CLEF", 0x1D11E}
+    };
+    CodePointNameIndex nameIndex;
+    NameIndexSnapshot snapshot;
+
+    /** Name parts as typed, from nothing to a whole word. */
+    @State(Scope.Benchmark)
+    public static class Prefix {
+
+        @Param({"", "L", "LA", "LATI", "S", "SM", "CAPITAL", "Q"})
+        String prefix;
+    }
+
+    /** The text of one of the {@link #RANKED_QUERIES}. */
+    @State(Scope.Benchmark)
+    public static class RankedQuery {
+
+        @Param({"LATIN SMALL A", "GREK SMALL ALPHA", "CYRILIC CAPITAL ZHE",
+            "RIGTHWARDS ARROW", "SNOWMNA", "INFINTY", "EURO",
+            "MUSICAL G CLEF"})
+        String query;
+    }
+
+    /**
+     * Prints how well ranking finds what the queries are after, which the
+     * timings alone do not show, once before they are timed.
+     */
+    @State(Scope.Benchmark)
+    public static class RankedQuality {
+
+        @Setup
+        public void setUp(NameIndexBenchmark benchmark) {
+            benchmark.printRankedQuality();
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        nameIndex = buildNameIndex();
+        File directory = new File(
+                System.getProperty("java.io.tmpdir"), "uglys-benchmark");
+        snapshot = new NameIndexSnapshot(directory);
+        snapshot.save(nameIndex);
+    }
+
+    @TearDown
+    public void tearDown() {
+        snapshot.getFile().delete();
+    }
+
+    static CodePointNameIndex buildNameIndex() {
+        CodePointNameIndex.Builder builder = new CodePointNameIndex.Builder();
+        UnicodeExplorer.scanNames(0, UnicodeExplorer.numberUnicodes, builder);
+        return builder.build();
+    }
+
+    @Benchmark
+    public CodePointNameIndex scan() {
+        return buildNameIndex();
+    }
+
+    @Benchmark
+    public CodePointNameIndex snapshotLoad() {
+        return snapshot.load();
+    }
+
+    @Benchmark
+    public int[] complete(Prefix prefix) {
+        return nameIndex.complete(
+                prefix.prefix, NamePartCompletionModel.MAX_COMPLETIONS);
+    }
+
+    @Benchmark
+    public int[] searchRanked(RankedQuery query) {
+        return nameIndex.searchRanked(
+                query.query, FilteredCodePointListModel.TOP_K);
+    }
+
+    /** Ranks every one of the {@link #RANKED_QUERIES}. */
+    @Benchmark
+    public long searchRankedAll(RankedQuality quality) {
+        long result = 0;
+        for (Object[] query : RANKED_QUERIES) {
+            result += getRank(query);
+        }
+        return result;
+    }
+
+    /** The 1 based rank of the wanted code point, or 0. */
+    int getRank(Object[] query) {
+        int[] ranked = nameIndex.searchRanked(
+                (String) query[0], FilteredCodePointListModel.TOP_K);
+        for (int ii = 0; ii < ranked.length; ii++) {
+            if (ranked[ii] == (Integer) query[1]) {
+                return ii + 1;
+            }
+        }
+        return 0;
+    }
+
+    void printRankedQuality() {
+        int first = 0;
+        int topTen = 0;
+        double reciprocalRanks = 0;
+        for (Object[] query : RANKED_QUERIES) {
+            int rank = getRank(query);
+            if (rank == 1) {
+                first++;
+            }
+            if (rank > 0 && rank <= 10) {
+                topTen++;
+            }
+            if (rank > 0) {
+                reciprocalRanks += 1d / rank;
+            } else {
+                System.out.println("not found: " + query[0]);
+            }
+        }
+        System.out.println(String.format(Locale.ROOT,
+                "%d ranked queries, first: %d, top 10: %d, "
+                + "mean reciprocal rank: %.3f",
+                RANKED_QUERIES.length, first, topTen,
+                reciprocalRanks / RANKED_QUERIES.length));
+    }
+}
@@ -0,0 +1,68 @@
+package org.pscode.unicodeglyphs;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+import javax.swing.*;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Scrolls a code point table down by a few rows per frame, as dragging the
+ * scroll bar does, and paints the viewport each frame. The score is the
+ * paint time of a frame. The frame interval between paints is spent in an
+ * untimed invocation set up, in which a prefetcher can work.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(1)
+@State(Scope.Thread)
+public class ScrollBenchmark {
+
+    static final int ROWS_PER_FRAME = 3;
+    static final long FRAME_MILLIS = 16;
+    @Param({"false", "true"})
+    boolean prefetch;
+    JScrollPane scroll;
+    Graphics2D g;
+
+    @Setup
+    public void setUp() {
+        CodePointTableModel model = new CodePointTableModel(
+                UnicodeExplorer.numberUnicodes,
+                UnicodeExplorer.codePointColumnWidth);
+        CodePointTable table = new CodePointTable(model);
+        FontTableCellRenderer renderer = new FontTableCellRenderer();
+        renderer.setDisplayFont(
+                new Font(Font.SERIF, Font.PLAIN, 1).deriveFont(32f));
+        table.setDefaultRenderer(Object.class, renderer);
+        table.setRowHeight(32);
+        scroll = new JScrollPane(table);
+        scroll.setSize(16 * 48, 640);
+        scroll.doLayout();
+        scroll.getViewport().doLayout();
+        table.doLayout();
+        if (prefetch) {
+            new GlyphPrefetcher(table, renderer).install(scroll.getViewport());
+        }
+        g = new BufferedImage(scroll.getWidth(), scroll.getHeight(),
+                BufferedImage.TYPE_INT_ARGB).createGraphics();
+    }
+
+    /** Waits out the rest of the frame before the next one is painted. */
+    @Setup(Level.Invocation)
+    public void nextFrame() throws InterruptedException {
+        Thread.sleep(FRAME_MILLIS);
+    }
+
+    @Benchmark
+    public int frame() {
+        JViewport viewport = scroll.getViewport();
+        Point p = viewport.getViewPosition();
+        p.y += ROWS_PER_FRAME * 32;
+        viewport.setViewPosition(p);
+        viewport.paint(g);
+        return p.y;
+    }
+}
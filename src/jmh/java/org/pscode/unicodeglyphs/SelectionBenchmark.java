@@ -0,0 +1,57 @@
+package org.pscode.unicodeglyphs;
+
+import java.awt.Font;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Selecting a code point on a headless explorer: finding the fonts that
+ * support it, by scanning them or from the coverage index, and building
+ * its detail view. Cycles through a mix of Latin, Greek, CJK, symbols, an
+ * emoji and an unassigned code point.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(1)
+@State(Scope.Thread)
+public class SelectionBenchmark {
+
+    static final int[] SAMPLE_CODE_POINTS = {
+        0x41, 0xE9, 0x3B1, 0x416, 0x5D0, 0x627, 0x915, 0xE01,
+        0x2192, 0x263A, 0x4E2D, 0xAC00, 0xFB01, 0x1F600, 0x1D11E, 0x50000
+    };
+    /** Whether the explorer has a font coverage index to answer from. */
+    @Param({"false", "true"})
+    boolean indexed;
+    UnicodeExplorer explorer;
+    int next;
+
+    @Setup
+    public void setUp() {
+        Font[] fonts = FontCatalog.getFonts();
+        explorer = new UnicodeExplorer();
+        explorer.setFonts(fonts, indexed
+                ? FontCoverageIndex.build(
+                fonts, UnicodeExplorer.numberUnicodes)
+                : null);
+    }
+
+    private int nextCodePoint() {
+        next = (next + 1) % SAMPLE_CODE_POINTS.length;
+        return SAMPLE_CODE_POINTS[next];
+    }
+
+    @Benchmark
+    public int setFontsForThisCodePoint() {
+        explorer.setFontsForThisCodePoint(nextCodePoint());
+        return explorer.supportedFontsModel.getSize();
+    }
+
+    @Benchmark
+    public int setCodePointDetailView() {
+        explorer.setCodePointDetailView(nextCodePoint());
+        return explorer.characterDetails.getText().length();
+    }
+}
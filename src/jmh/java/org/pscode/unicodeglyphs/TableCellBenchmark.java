@@ -0,0 +1,82 @@
+package org.pscode.unicodeglyphs;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+import javax.swing.JComponent;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Renders and paints one row of table cells, as when a row scrolls into
+ * view, with the glyphs cached and not.
+ * <p>
+ * At 25.6pt a glyph image is about 2KB, so the cache's 32MB holds about
+ * 1000 rows of glyphs. {@link #cachedRow()} cycles through
+ * {@link #CACHED_ROWS} rows rasterized in the set up, well within that,
+ * so every glyph is a hit. {@link #uncachedRow()} cycles through every row
+ * of the table, many times what the cache holds, so a row is long evicted
+ * before it comes round again and every glyph is a miss.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(1)
+@State(Scope.Thread)
+public class TableCellBenchmark {
+
+    static final int CACHED_ROWS = 64;
+    CodePointTable table;
+    FontTableCellRenderer renderer;
+    Graphics2D g;
+    int cachedRow;
+    int uncachedRow = CACHED_ROWS;
+
+    @Setup
+    public void setUp() {
+        CodePointTableModel model = new CodePointTableModel(
+                UnicodeExplorer.numberUnicodes,
+                UnicodeExplorer.codePointColumnWidth);
+        table = new CodePointTable(model);
+        renderer = new FontTableCellRenderer();
+        renderer.setDisplayFont(
+                new Font(Font.SERIF, Font.PLAIN, 1).deriveFont(32f));
+        g = new BufferedImage(64, 64, BufferedImage.TYPE_INT_ARGB)
+                .createGraphics();
+        for (int row = 0; row < CACHED_ROWS; row++) {
+            paintRow(row);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        renderer.getGlyphCache().logStatistics();
+    }
+
+    private long paintRow(int row) {
+        long result = 0;
+        for (int col = 0; col < table.getColumnCount(); col++) {
+            JComponent c = (JComponent) renderer.getTableCellRendererComponent(
+                    table, null, false, false, row, col);
+            c.setBounds(0, 0, 40, 32);
+            c.paint(g);
+            result += c.getWidth();
+        }
+        return result;
+    }
+
+    @Benchmark
+    public long cachedRow() {
+        cachedRow = (cachedRow + 1) % CACHED_ROWS;
+        return paintRow(cachedRow);
+    }
+
+    @Benchmark
+    public long uncachedRow() {
+        uncachedRow++;
+        if (uncachedRow >= table.getRowCount()) {
+            uncachedRow = CACHED_ROWS;
+        }
+        return paintRow(uncachedRow);
+    }
+}
@@ -0,0 +1,76 @@
+package org.pscode.unicodeglyphs;
+
+import java.awt.Font;
+import java.io.*;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/** Analyzing a 32MB UTF-8 file, from the page cache. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TextAnalyzerBenchmark {
+
+    TextAnalyzer analyzer;
+    File file;
+
+    @Setup
+    public void setUp() throws IOException {
+        Font[] fonts = FontCatalog.getFonts();
+        analyzer = new TextAnalyzer(fonts, FontCoverageIndex.build(
+                fonts, UnicodeExplorer.numberUnicodes));
+        file = writeSampleText(32 << 20);
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public long analyzeFile() throws IOException, InterruptedException {
+        return analyzer.analyze(file).getTotal();
+    }
+
+    /**
+     * Writes a temporary UTF-8 file of about <code>bytes</code>, mostly
+     * ASCII with runs of one to four byte sequences from a few scripts, as
+     * multilingual text is.
+     */
+    static File writeSampleText(int bytes) throws IOException {
+        File file = File.createTempFile("uglys-analysis", ".txt");
+        file.deleteOnExit();
+        int[][] scripts = {
+            {0x20, 0x7E}, {0xC0, 0x17F}, {0x391, 0x3C9}, {0x410, 0x44F},
+            {0x5D0, 0x5EA}, {0x4E00, 0x4FFF}, {0xAC00, 0xAD00},
+            {0x1F600, 0x1F64F}
+        };
+        Random random = new Random(42);
+        StringBuilder sb = new StringBuilder();
+        try (OutputStream out = new BufferedOutputStream(
+                new FileOutputStream(file), 1 << 16)) {
+            long written = 0;
+            while (written < bytes) {
+                sb.setLength(0);
+                for (int word = 0; word < 64; word++) {
+                    int[] script = scripts[random.nextInt(4) == 0
+                            ? random.nextInt(scripts.length) : 0];
+                    int length = 2 + random.nextInt(8);
+                    for (int ii = 0; ii < length; ii++) {
+                        sb.appendCodePoint(script[0] + random.nextInt(
+                                script[1] - script[0] + 1));
+                    }
+                    sb.append(word % 16 == 15 ? '\n' : ' ');
+                }
+                byte[] utf8 = sb.toString().getBytes("UTF-8");
+                out.write(utf8);
+                written += utf8.length;
+            }
+        }
+        return file;
+    }
+}
@@ -0,0 +1,32 @@
+package org.pscode.unicodeglyphs;
+
+import java.io.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Loading the UCD files, as generated by {@link UnicodeDatabaseFixture}
+ * at about the size of the real ones.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UnicodeDatabaseBenchmark {
+
+    File directory;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = new File(System.getProperty("java.io.tmpdir"),
+                "uglys-benchmark-ucd");
+        UnicodeDatabaseFixture.write(directory);
+    }
+
+    @Benchmark
+    public int load() {
+        return UnicodeDatabase.load(directory).size();
+    }
+}
@@ -0,0 +1,143 @@
+package org.pscode.unicodeglyphs;
+
+import java.io.*;
+import java.util.Locale;
+
+/**
+ * Test data for {@link UnicodeDatabase}: a stand-in for the UCD files it
+ * reads, generated from the JDK's character data.
+ */
+class UnicodeDatabaseFixture {
+
+    /**
+     * Writes the JDK's character data as UnicodeData.txt, Blocks.txt and
+     * Scripts.txt in the UCD's formats, with First/Last ranges where the
+     * names are algorithmic, plus a small EastAsianWidth.txt. The files are
+     * about the size of the real ones, for timing {@link UnicodeDatabase}
+     * where no copy of the UCD is at hand.
+     */
+    static void write(File directory) throws IOException {
+        String[] bidiClasses = {
+            "L", "R", "AL", "EN", "ES", "ET", "AN", "CS", "NSM", "BN", "B",
+            "S", "WS", "ON", "LRE", "LRO", "RLE", "RLO", "PDF", "LRI", "RLI",
+            "FSI", "PDI"
+        };
+        directory.mkdirs();
+        try (PrintWriter out = new PrintWriter(
+                new File(directory, "UnicodeData.txt"), "US-ASCII")) {
+            int codePoint = 0;
+            while (codePoint < UnicodeExplorer.numberUnicodes) {
+                if (!Character.isDefined(codePoint)) {
+                    codePoint++;
+                    continue;
+                }
+                String range = getRangeLabel(codePoint);
+                int last = codePoint;
+                while (range != null && last + 1 < UnicodeExplorer.numberUnicodes
+                        && range.equals(getRangeLabel(last + 1))) {
+                    last++;
+                }
+                String name = range != null ? "<" + range + ", First>"
+                        : Character.getType(codePoint) == Character.CONTROL
+                        ? "<control>" : Character.getName(codePoint);
+                int type = Character.getType(codePoint);
+                int directionality = Character.getDirectionality(codePoint);
+                int numeric = Character.getNumericValue(codePoint);
+                String line = String.format(Locale.ROOT,
+                        "%04X;%s;%s;0;%s;;;;%s;%s;%s;;%s;%s;%s",
+                        codePoint, name,
+                        UnicodeProperties.CATEGORY_NAMES[type],
+                        directionality < 0 ? "L" : bidiClasses[directionality],
+                        numeric >= 0 && (type == Character.DECIMAL_DIGIT_NUMBER
+                        || type == Character.LETTER_NUMBER
+                        || type == Character.OTHER_NUMBER) ? numeric : "",
+                        Character.isMirrored(codePoint) ? "Y" : "N",
+                        type == Character.CONTROL
+                        ? Character.getName(codePoint) : "",
+                        getMapping(codePoint, Character.toUpperCase(codePoint)),
+                        getMapping(codePoint, Character.toLowerCase(codePoint)),
+                        getMapping(codePoint, Character.toTitleCase(codePoint)));
+                out.print(line + "\n");
+                if (last > codePoint) {
+                    out.print(line.replace(", First>", ", Last>").replaceFirst(
+                            "^[0-9A-F]+", String.format("%04X", last)) + "\n");
+                }
+                codePoint = last + 1;
+            }
+        }
+        try (PrintWriter out = new PrintWriter(
+                new File(directory, "Blocks.txt"), "US-ASCII")) {
+            UnicodeBlocks blocks = UnicodeBlocks.getInstance();
+            out.print("# Blocks\n\n");
+            for (int ii = 0; ii < blocks.size(); ii++) {
+                out.printf(Locale.ROOT, "%04X..%04X; %s%n",
+                        blocks.getStart(ii), blocks.getEnd(ii) - 1,
+                        blocks.getBlock(ii));
+            }
+        }
+        try (PrintWriter out = new PrintWriter(
+                new File(directory, "Scripts.txt"), "US-ASCII")) {
+            out.print("# @missing: 0000..10FFFF; Unknown\n");
+            int start = 0;
+            Character.UnicodeScript current = Character.UnicodeScript.of(0);
+            for (int codePoint = 1; codePoint <= UnicodeExplorer.numberUnicodes;
+                    codePoint++) {
+                Character.UnicodeScript script =
+                        codePoint < UnicodeExplorer.numberUnicodes
+                        ? Character.UnicodeScript.of(codePoint) : null;
+                if (script != current) {
+                    if (current != Character.UnicodeScript.UNKNOWN) {
+                        out.printf(Locale.ROOT, "%04X..%04X    ; %s # %d%n",
+                                start, codePoint - 1, current,
+                                codePoint - start);
+                    }
+                    start = codePoint;
+                    current = script;
+                }
+            }
+        }
+        try (PrintWriter out = new PrintWriter(
+                new File(directory, "EastAsianWidth.txt"), "US-ASCII")) {
+            out.print("# @missing: 0000..10FFFF; N\n"
+                    + "# @missing: 4E00..9FFF; W\n"
+                    + "0020..007E     ; Na # Zs ...\n"
+                    + "1100..115F     ; W  # Lo ...\n"
+                    + "FF01..FF60     ; F  # Po ...\n"
+                    + "FF61..FFDC     ; H  # Po ...\n");
+        }
+    }
+
+    /** The label of a UnicodeData First/Last range the code point is in. */
+    private static String getRangeLabel(int codePoint) {
+        String name = Character.getName(codePoint);
+        String hex = Integer.toHexString(codePoint).toUpperCase(Locale.ROOT);
+        switch (Character.getType(codePoint)) {
+            case Character.PRIVATE_USE:
+                return "Private Use";
+            case Character.SURROGATE:
+                return "Surrogate";
+        }
+        if (name == null) {
+            return null;
+        }
+        // the JDK names these by block, the UCD by range
+        if (!name.endsWith(" " + hex)) {
+            return null;
+        }
+        if (name.startsWith("CJK UNIFIED IDEOGRAPHS")) {
+            return "CJK Ideograph";
+        }
+        if (name.startsWith("TANGUT")) {
+            return "Tangut Ideograph";
+        }
+        if (name.startsWith("HANGUL SYLLABLES ")) {
+            return "Hangul Syllable";
+        }
+        return null;
+    }
+
+    private static String getMapping(int codePoint, int mapped) {
+        return mapped == codePoint
+                ? "" : String.format(Locale.ROOT, "%04X", mapped);
+    }
+}